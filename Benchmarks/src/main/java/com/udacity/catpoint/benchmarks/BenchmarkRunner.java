@@ -0,0 +1,54 @@
+package com.udacity.catpoint.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the benchmarks once per thread count with the gc profiler on, writing JSON results that
+ * can be compared between builds.
+ *
+ * Usage: {@code java -jar Benchmarks-jar-with-dependencies.jar [regex] [--threads 1,4] [--sensors 10,1000] [--out dir]}
+ *
+ * The regex selects benchmarks as in JMH, the sensor counts override each benchmark's
+ * sensorCount parameter and each thread count produces its own {@code jmh-threads-N.json}.
+ * Anything this doesn't cover can be run through JMH's own launcher,
+ * {@code java -cp <jar> org.openjdk.jmh.Main}, which takes the standard options.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        String include = ".*";
+        String[] threadCounts = {"1"};
+        String[] sensorCounts = null;
+        Path outputDirectory = Paths.get("target", "jmh");
+        for(int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threadCounts = args[++i].split(","); break;
+                case "--sensors": sensorCounts = args[++i].split(","); break;
+                case "--out": outputDirectory = Paths.get(args[++i]); break;
+                default: include = args[i];
+            }
+        }
+        Files.createDirectories(outputDirectory);
+
+        for(String threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(outputDirectory.resolve("jmh-threads-" + threads + ".json").toString());
+            if(sensorCounts != null) {
+                options.param("sensorCount", sensorCounts);
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.JpegFrameEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JpegFrameEncoder used for uploads with plain ImageIO, which allocates a writer and an
+ * output buffer for every frame. Both encode the full frame at the same quality, so the difference is
+ * the reuse alone. Run with the gc profiler to see the allocation difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpegFrameEncoderBenchmark {
+
+    private static final float QUALITY = 0.8f;
+
+    @Param({"640x480", "1920x1080"})
+    public String frameSize;
+
+    private BufferedImage frame;
+    private JpegFrameEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = frameSize.split("x");
+        frame = new BufferedImage(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        //blocks of noise so the encoder has something to compress
+        for(int y = 0; y < frame.getHeight(); y += 8) {
+            for(int x = 0; x < frame.getWidth(); x += 8) {
+                int rgb = random.nextInt(0xFFFFFF);
+                for(int dy = 0; dy < 8 && y + dy < frame.getHeight(); dy++) {
+                    for(int dx = 0; dx < 8 && x + dx < frame.getWidth(); dx++) {
+                        frame.setRGB(x + dx, y + dy, rgb);
+                    }
+                }
+            }
+        }
+        //large enough that the encoder never scales the frame down
+        encoder = new JpegFrameEncoder(Math.max(frame.getWidth(), frame.getHeight()), QUALITY);
+    }
+
+    @Benchmark
+    public byte[] jpegFrameEncoder() throws IOException {
+        return encoder.encode(frame);
+    }
+
+    @Benchmark
+    public byte[] imageIoWrite() throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(QUALITY);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(os)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(frame, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,51 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.LocalCatDetector;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for the LocalCatDetector to score one camera frame. Run with more than one thread to see
+ * the per-thread buffers and the shared ForkJoinPool under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalCatDetectorBenchmark {
+
+    @Param({"640x480", "1920x1080"})
+    public String frameSize;
+
+    private BufferedImage frame;
+    private LocalCatDetector detector;
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = frameSize.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        //a rough head with ears, so the classifier has an outline to find
+        Graphics2D g = frame.createGraphics();
+        g.setColor(Color.WHITE);
+        int size = height * 5 / 12;
+        int left = (width - size) / 2;
+        int top = height / 3;
+        g.fillOval(left, top, size, size);
+        g.fillPolygon(new int[]{left, left + size / 8, left + size / 3}, new int[]{top + size / 4, top - size / 3, top + size / 6}, 3);
+        g.fillPolygon(new int[]{left + size, left + size * 7 / 8, left + size * 2 / 3}, new int[]{top + size / 4, top - size / 3, top + size / 6}, 3);
+        g.dispose();
+        detector = new LocalCatDetector();
+    }
+
+    @Benchmark
+    public float confidence() {
+        return detector.confidence(frame);
+    }
+}
@@ -0,0 +1,85 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of persisting one sensor change in each repository. The preferences-backed repository is
+ * measured writing through on every change and coalescing writes in the background.
+ *
+ * The forked JVM keeps its preferences in a scratch directory so the app's saved sensors aren't
+ * touched. A single preferences value can't exceed 8 KB, which limits the preferences repository
+ * to a few dozen sensors, so larger counts only run against the journal and in-memory repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.prefs.userRoot=target/benchmark-prefs")
+public class RepositoryBenchmark {
+
+    public enum Kind { PRETEND_WRITE_THROUGH, PRETEND_WRITE_BEHIND, JOURNAL, IN_MEMORY }
+
+    @Param({"PRETEND_WRITE_THROUGH", "PRETEND_WRITE_BEHIND", "JOURNAL", "IN_MEMORY"})
+    public Kind kind;
+
+    @Param({"10", "50"})
+    public int sensorCount;
+
+    private SecurityRepository repository;
+    private Path journalDirectory;
+    private Sensor[] sensors;
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (kind) {
+            case PRETEND_WRITE_THROUGH: repository = new PretendDatabaseSecurityRepositoryImpl(); break;
+            case PRETEND_WRITE_BEHIND: repository = new PretendDatabaseSecurityRepositoryImpl(500, 64); break;
+            case JOURNAL:
+                journalDirectory = Files.createTempDirectory("catpoint-journal");
+                repository = new JournalSecurityRepositoryImpl(journalDirectory);
+                break;
+            default: repository = new InMemorySecurityRepositoryImpl();
+        }
+        //start from a clean slate whatever an earlier run left behind
+        List.copyOf(repository.getSensors()).forEach(repository::removeSensor);
+        List<Sensor> created = Sensors.create(sensorCount);
+        created.forEach(repository::addSensor);
+        sensors = created.toArray(new Sensor[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        List.copyOf(repository.getSensors()).forEach(repository::removeSensor);
+        if(repository instanceof AutoCloseable) {
+            ((AutoCloseable) repository).close();
+        }
+        if(journalDirectory != null) {
+            try (Stream<Path> files = Files.walk(journalDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public void updateSensor() {
+        Sensor sensor = sensors[ThreadLocalRandom.current().nextInt(sensors.length)];
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+    }
+
+    @Benchmark
+    public void setAlarmStatus() {
+        repository.setAlarmStatus(ThreadLocalRandom.current().nextBoolean() ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM);
+    }
+}
@@ -0,0 +1,87 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.ImageServiceInterface;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of the SecurityService against the in-memory repository, so the numbers reflect the
+ * service and the sensor store rather than storage. Run with several thread counts to see lock contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int sensorCount;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+    private Map<UUID, Boolean> activateAll;
+    private BufferedImage frame;
+
+    @Setup
+    public void setUp() {
+        ImageServiceInterface stubDetector = (image, confidenceThreshhold) -> false;
+        securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), stubDetector);
+        List<Sensor> created = Sensors.create(sensorCount);
+        created.forEach(securityService::addSensor);
+        sensors = created.toArray(new Sensor[0]);
+        activateAll = new HashMap<>();
+        created.forEach(sensor -> activateAll.put(sensor.getSensorId(), true));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        frame = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Flips one random sensor, alternating between activating and deactivating it.
+     */
+    @Benchmark
+    public void changeSensorActivationStatus() {
+        Sensor sensor = sensors[ThreadLocalRandom.current().nextInt(sensors.length)];
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    /**
+     * Activates every sensor in one batch, then arms the system, which deactivates them all again.
+     */
+    @Benchmark
+    public void armWithAllSensorsActive() {
+        securityService.changeSensorActivationStatuses(activateAll);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+    }
+
+    @Benchmark
+    public void setArmingStatusWithNoActiveSensors() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    /**
+     * Classifies a frame with a detector that returns immediately, measuring only the service's own overhead.
+     */
+    @Benchmark
+    public void processImage() {
+        securityService.processImage(frame);
+    }
+
+    @Benchmark
+    public void getSortedSensors(Blackhole blackhole) {
+        blackhole.consume(securityService.getSortedSensors());
+    }
+}
@@ -0,0 +1,55 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorStore;
+import com.udacity.catpoint.security.data.SensorTable;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single sensor event through the SecurityService, with the sensors kept in a SensorStore or in
+ * a SensorTable. Run with the gc profiler: the table path should show no allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorActivationBenchmark {
+
+    public enum Representation {
+        STORE, TABLE
+    }
+
+    @Param({"STORE", "TABLE"})
+    public Representation representation;
+
+    @Param({"100000"})
+    public int sensorCount;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        InMemorySecurityRepositoryImpl repository = new InMemorySecurityRepositoryImpl(
+                representation == Representation.TABLE ? new SensorTable() : new SensorStore());
+        securityService = new SecurityService(repository, new FakeImageService());
+        Sensors.create(sensorCount).forEach(securityService::addSensor);
+        //the service's own sensors, which for the table are its views
+        sensors = securityService.getSensors().toArray(new Sensor[0]);
+    }
+
+    @Benchmark
+    public void toggleSensor() {
+        Sensor sensor = sensors[next];
+        next = next + 1 == sensors.length ? 0 : next + 1;
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+}
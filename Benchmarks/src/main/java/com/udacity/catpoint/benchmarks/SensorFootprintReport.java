@@ -0,0 +1,48 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorStore;
+import com.udacity.catpoint.security.data.SensorTable;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.List;
+
+/**
+ * Prints the retained size of a fleet of sensors held in a SensorStore and in a SensorTable, walked
+ * with JOL. The table is measured before any views exist and again once every row has one, which
+ * is the most a caller that touches every sensor can make it cost.
+ *
+ * Usage: {@code java -cp Benchmarks-jar-with-dependencies.jar com.udacity.catpoint.benchmarks.SensorFootprintReport [sensorCount]}
+ *
+ * Add {@code -Djdk.attach.allowAttachSelf=true} if JOL warns it can't attach to the JVM.
+ */
+public class SensorFootprintReport {
+
+    public static void main(String[] args) {
+        int sensorCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Sensor> sensors = Sensors.create(sensorCount);
+
+        SensorStore store = new SensorStore(sensors);
+        GraphLayout storeLayout = GraphLayout.parseInstance(store);
+        sensors = null; //the store holds the only references now
+
+        SensorTable table = new SensorTable(store);
+        store = null;
+        GraphLayout tableLayout = GraphLayout.parseInstance(table);
+        table.forEach(Sensor::getActive); //creates every view
+        GraphLayout viewsLayout = GraphLayout.parseInstance(table);
+
+        System.out.printf("%,d sensors%n", sensorCount);
+        print("SensorStore", storeLayout, sensorCount);
+        print("SensorTable", tableLayout, sensorCount);
+        print("SensorTable, all views", viewsLayout, sensorCount);
+        System.out.println();
+        System.out.println(storeLayout.toFootprint());
+        System.out.println(viewsLayout.toFootprint());
+    }
+
+    private static void print(String label, GraphLayout layout, int sensorCount) {
+        System.out.printf("%-24s %,14d bytes %,10d objects %8.1f bytes/sensor%n",
+                label, layout.totalSize(), layout.totalCount(), layout.totalSize() / (double) sensorCount);
+    }
+}
@@ -0,0 +1,110 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorStore;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the SensorStore with the TreeSet the repository used to keep, for the operations the
+ * service and the sensor panel perform.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorStoreBenchmark {
+
+    @Param({"10000", "100000"})
+    public int sensorCount;
+
+    private SensorStore store;
+    private TreeSet<Sensor> treeSet;
+    private Sensor[] sensors;
+
+    @Setup
+    public void setUp() {
+        List<Sensor> created = Sensors.create(sensorCount);
+        store = new SensorStore(created);
+        treeSet = new TreeSet<>(created);
+        sensors = created.toArray(new Sensor[0]);
+    }
+
+    private Sensor randomSensor() {
+        return sensors[ThreadLocalRandom.current().nextInt(sensors.length)];
+    }
+
+    @Benchmark
+    public void updateStore() {
+        Sensor sensor = randomSensor();
+        sensor.setActive(!sensor.getActive());
+        store.update(sensor);
+    }
+
+    /**
+     * What updating a sensor used to cost: remove and re-add to keep the set ordered.
+     */
+    @Benchmark
+    public void updateTreeSet() {
+        Sensor sensor = randomSensor();
+        treeSet.remove(sensor);
+        sensor.setActive(!sensor.getActive());
+        treeSet.add(sensor);
+    }
+
+    @Benchmark
+    public boolean containsStore() {
+        return store.contains(randomSensor());
+    }
+
+    @Benchmark
+    public boolean containsTreeSet() {
+        return treeSet.contains(randomSensor());
+    }
+
+    @Benchmark
+    public int activeCountStore() {
+        return store.activeCount(SensorType.DOOR);
+    }
+
+    @Benchmark
+    public long activeCountTreeSet() {
+        return treeSet.stream().filter(s -> s.getActive() && s.getSensorType() == SensorType.DOOR).count();
+    }
+
+    @Benchmark
+    public void sortedStore(Blackhole blackhole) {
+        blackhole.consume(store.sortedByName());
+    }
+
+    @Benchmark
+    public void sortedTreeSet(Blackhole blackhole) {
+        blackhole.consume(new ArrayList<>(treeSet));
+    }
+
+    @Benchmark
+    public void iterateStore(Blackhole blackhole) {
+        iterate(store, blackhole);
+    }
+
+    @Benchmark
+    public void iterateTreeSet(Blackhole blackhole) {
+        iterate(treeSet, blackhole);
+    }
+
+    private static void iterate(Set<Sensor> sensors, Blackhole blackhole) {
+        for(Sensor sensor : sensors) {
+            blackhole.consume(sensor);
+        }
+    }
+}
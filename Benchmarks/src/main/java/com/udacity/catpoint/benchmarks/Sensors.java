@@ -0,0 +1,30 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds repeatable sensor sets for the benchmarks.
+ */
+final class Sensors {
+
+    private Sensors() {
+    }
+
+    /**
+     * @return count sensors with shuffled names and types, the same for every call with the same count
+     */
+    static List<Sensor> create(int count) {
+        Random random = new Random(count);
+        SensorType[] types = SensorType.values();
+        List<Sensor> sensors = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            sensors.add(new Sensor("Sensor " + random.nextInt(count * 10), types[random.nextInt(types.length)]));
+        }
+        return sensors;
+    }
+}
@@ -0,0 +1,81 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.MultiSiteEngine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures what each site costs a {@link MultiSiteEngine}: retained heap per site, with and without
+ * sensors, and the rate at which sensor batches are routed to their shards.
+ *
+ * Usage: {@code java -cp Benchmarks-jar-with-dependencies.jar com.udacity.catpoint.benchmarks.SiteFootprintReport [sites] [sensorsPerSite] [shards]}
+ *
+ * Heap figures come from the used heap after a full collection, so run with a fixed heap
+ * ({@code -Xms2g -Xmx2g}) and nothing else in the JVM for stable numbers.
+ */
+public class SiteFootprintReport {
+
+    public static void main(String[] args) throws Exception {
+        int siteCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int sensorsPerSite = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int shardCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        long baseline = usedHeapAfterGc();
+        MultiSiteEngine engine = new MultiSiteEngine(shardCount, new FakeImageService());
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for(int i = 0; i < siteCount; i++) {
+            pending.add(engine.addSite("site-" + i));
+        }
+        join(pending);
+        long emptySites = usedHeapAfterGc();
+
+        Map<String, List<Sensor>> sensorsBySite = new HashMap<>();
+        for(int i = 0; i < siteCount; i++) {
+            String siteId = "site-" + i;
+            List<Sensor> sensors = Sensors.create(sensorsPerSite);
+            sensorsBySite.put(siteId, sensors);
+            sensors.forEach(sensor -> pending.add(engine.addSensor(siteId, sensor)));
+        }
+        join(pending);
+        sensorsBySite.clear(); //the sites still hold their sensors
+        long withSensors = usedHeapAfterGc();
+
+        System.out.printf("%d sites on %d shards%n", siteCount, shardCount);
+        System.out.printf("empty site:            %,8d bytes%n", (emptySites - baseline) / siteCount);
+        System.out.printf("site with %3d sensors: %,8d bytes%n", sensorsPerSite, (withSensors - baseline) / siteCount);
+
+        int batches = siteCount * 10;
+        long start = System.nanoTime();
+        for(int i = 0; i < batches; i++) {
+            String siteId = "site-" + (i % siteCount);
+            pending.add(engine.changeSensorActivationStatuses(siteId, Map.of(UUID.randomUUID(), i % 2 == 0)));
+        }
+        join(pending);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("routed %,d batches in %.2f s, %,.0f batches/s%n", batches, seconds, batches / seconds);
+        engine.close();
+    }
+
+    private static void join(List<CompletableFuture<Void>> futures) {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        futures.clear();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for(int i = 0; i < 3; i++) {
+            memory.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,79 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorSnapshotCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading the sensor set with Gson, as the repositories used to, and with the
+ * SensorSnapshotCodec. The encoded size of each is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotCodecBenchmark {
+
+    public enum Format {
+        GSON, BINARY
+    }
+
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    @Param({"1000", "10000", "100000"})
+    public int sensorCount;
+
+    @Param({"GSON", "BINARY"})
+    public Format format;
+
+    private final Gson gson = new Gson();
+    private Set<Sensor> sensors;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Sensor> created = Sensors.create(sensorCount);
+        for(int i = 0; i < created.size(); i += 3) {
+            created.get(i).setActive(true);
+        }
+        sensors = new HashSet<>(created);
+        encoded = serialize();
+        System.out.printf("%n%s, %,d sensors: %,d bytes (%.1f bytes/sensor)%n",
+                format, sensorCount, encoded.length, encoded.length / (double) sensorCount);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        if(format == Format.GSON) {
+            return gson.toJson(sensors).getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sensorCount * 32);
+        SensorSnapshotCodec.write(out, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, sensors);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        if(format == Format.GSON) {
+            return gson.fromJson(new String(encoded, StandardCharsets.UTF_8), SENSOR_SET);
+        }
+        return SensorSnapshotCodec.readAll(new SensorSnapshotCodec.Reader(new ByteArrayInputStream(encoded)));
+    }
+}
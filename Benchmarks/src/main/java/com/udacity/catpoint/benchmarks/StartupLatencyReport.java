@@ -0,0 +1,93 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.prefs.Preferences;
+
+/**
+ * Prints how long the preferences repository takes from construction until the first sensor event
+ * has been turned into an alarm decision, and until every sensor is loaded, loading eagerly and lazily.
+ * Each is the median of several fresh repositories over the same stored fleet.
+ *
+ * Usage: {@code java -cp Benchmarks-jar-with-dependencies.jar com.udacity.catpoint.benchmarks.StartupLatencyReport [sensorCount]}
+ *
+ * The repository's preferences are replaced while the report runs and restored afterwards.
+ */
+public class StartupLatencyReport {
+
+    private static final int ROUNDS = 7;
+
+    public static void main(String[] args) throws Exception {
+        int sensorCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        prefs.exportNode(saved);
+        try {
+            prefs.clear();
+            List<Sensor> sensors = Sensors.create(sensorCount);
+            try(PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(60_000, Integer.MAX_VALUE)) {
+                sensors.forEach(repository::addSensor);
+                repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+                repository.setAlarmStatus(AlarmStatus.NO_ALARM);
+            }
+            UUID trigger = sensors.get(sensorCount / 2).getSensorId();
+
+            System.out.printf("%,d sensors, median of %d starts%n", sensorCount, ROUNDS);
+            System.out.printf("%-6s %16s %16s %16s%n", "", "constructed ms", "first alarm ms", "all loaded ms");
+            for(boolean lazy : new boolean[] {false, true}) {
+                measure(lazy, trigger); //warm up
+                long[][] rounds = new long[3][ROUNDS];
+                for(int round = 0; round < ROUNDS; round++) {
+                    long[] times = measure(lazy, trigger);
+                    for(int i = 0; i < times.length; i++) {
+                        rounds[i][round] = times[i];
+                    }
+                }
+                System.out.printf("%-6s %16.2f %16.2f %16.2f%n", lazy ? "lazy" : "eager",
+                        median(rounds[0]), median(rounds[1]), median(rounds[2]));
+            }
+        } finally {
+            prefs.clear();
+            Preferences.importPreferences(new ByteArrayInputStream(saved.toByteArray()));
+        }
+    }
+
+    /**
+     * @return Nanoseconds from the start until the constructor returned, the first alarm decision and the end of loading
+     */
+    private static long[] measure(boolean lazy, UUID trigger) {
+        long start = System.nanoTime();
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(60_000, Integer.MAX_VALUE, lazy);
+        long constructed = System.nanoTime();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        securityService.changeSensorActivationStatuses(Map.of(trigger, true));
+        if(securityService.getAlarmStatus() != AlarmStatus.PENDING_ALARM) {
+            throw new IllegalStateException("Expected a pending alarm, got " + securityService.getAlarmStatus());
+        }
+        long decided = System.nanoTime();
+        repository.sensorsLoaded().join();
+        long loaded = System.nanoTime();
+
+        //put everything back for the next start
+        securityService.changeSensorActivationStatuses(Map.of(trigger, false));
+        repository.close();
+        return new long[] {constructed - start, decided - start, loaded - start};
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+}
@@ -7,17 +7,22 @@ import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 /**
@@ -32,17 +37,51 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ *
+ * Batches go through the asynchronous client: each frame is uploaded as soon as it is encoded, with up
+ * to {@value #MAX_IN_FLIGHT_REQUESTS} requests outstanding, so encoding overlaps with the network round trips.
  */
 public class AwsImageService implements ImageServiceInterface {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
     //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    private RekognitionClient rekognitionClient;
+    private RekognitionAsyncClient rekognitionAsyncClient;
+
+    private static final int MAX_IN_FLIGHT_REQUESTS = 8;
+
+    private final JpegFrameEncoder encoder;
 
     public AwsImageService() {
+        this(1024, 0.8f);
+    }
+
+    /**
+     * @param maxDimension Images are scaled down so their longest side is at most this many pixels before upload
+     * @param jpegQuality JPEG quality, between 0 and 1, used for the upload
+     */
+    public AwsImageService(int maxDimension, float jpegQuality) {
+        encoder = new JpegFrameEncoder(maxDimension, jpegQuality);
+        loadClients();
+    }
+
+    /**
+     * Creates a service over the given clients and encoder instead of the ones config.properties describes.
+     */
+    AwsImageService(RekognitionClient rekognitionClient, RekognitionAsyncClient rekognitionAsyncClient, JpegFrameEncoder encoder) {
+        this.rekognitionClient = rekognitionClient;
+        this.rekognitionAsyncClient = rekognitionAsyncClient;
+        this.encoder = encoder;
+    }
+
+    private void loadClients() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
+            if(is == null) {
+                log.error("Unable to initialize AWS Rekognition, no properties file found");
+                return;
+            }
             props.load(is);
         } catch (IOException ioe ) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
@@ -58,6 +97,10 @@ public class AwsImageService implements ImageServiceInterface {
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                 .region(Region.of(awsRegion))
                 .build();
+        rekognitionAsyncClient = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .region(Region.of(awsRegion))
+                .build();
     }
 
     /**
@@ -65,20 +108,99 @@ public class AwsImageService implements ImageServiceInterface {
      * @param image Image to scan
      * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
      * @return
+     * @throws UncheckedIOException if the image couldn't be encoded, since it was never checked
      */
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        Image awsImage;
+        try {
+            awsImage = toAwsImage(image);
         } catch (IOException ioe) {
-            log.error("Error building image byte array", ioe);
-            return false;
+            throw new UncheckedIOException("Error building image byte array", ioe);
         }
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        DetectLabelsResponse response = requireConfigured(rekognitionClient).detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        return toCatDetection(response).containsCat();
+    }
+
+    /**
+     * Checks a batch of images with overlapping requests. If any request fails, the requests still
+     * outstanding are cancelled and the failure is thrown, so callers don't get a made-up verdict.
+     * @param images Images to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return One verdict per image, in order, with the confidence of the most likely cat label, or 0 if no
+     *         cat label reached the threshhold. Images that couldn't be encoded are never sent and come back
+     *         as {@link CatDetection#unknown()}.
+     */
+    @Override
+    public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+        RekognitionAsyncClient client = requireConfigured(rekognitionAsyncClient);
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_REQUESTS);
+        List<CompletableFuture<DetectLabelsResponse>> requests = new ArrayList<>(images.size());
+        List<CompletableFuture<CatDetection>> results = new ArrayList<>(images.size());
+        try {
+            for(BufferedImage image : images) {
+                Image awsImage;
+                try {
+                    awsImage = toAwsImage(image);
+                } catch (IOException ioe) {
+                    log.error("Error building image byte array", ioe);
+                    results.add(CompletableFuture.completedFuture(CatDetection.unknown()));
+                    continue;
+                }
+                DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+                inFlight.acquireUninterruptibly();
+                CompletableFuture<DetectLabelsResponse> request;
+                try {
+                    request = client.detectLabels(detectLabelsRequest);
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                requests.add(request);
+                results.add(request
+                        .whenComplete((response, error) -> inFlight.release())
+                        .thenApply(response -> {
+                            logLabelsForFun(response);
+                            return toCatDetection(response);
+                        }));
+            }
+            List<CatDetection> detections = new ArrayList<>(results.size());
+            for(CompletableFuture<CatDetection> result : results) {
+                detections.add(result.join());
+            }
+            return detections;
+        } catch (RuntimeException e) {
+            requests.forEach(request -> request.cancel(true));
+            if(e instanceof CompletionException && e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if config.properties couldn't be loaded, so there is no client to call
+     */
+    private static <T> T requireConfigured(T client) {
+        if(client == null) {
+            throw new IllegalStateException("AWS Rekognition is not configured; see config.properties");
+        }
+        return client;
+    }
+
+    private Image toAwsImage(BufferedImage image) throws IOException {
+        //the encoder hands over a fresh array, so the sdk can use it without another copy
+        return Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(encoder.encode(image))).build();
+    }
+
+    private static CatDetection toCatDetection(DetectLabelsResponse response) {
+        //labels below the requested confidence have already been left out by the service
+        return response.labels().stream()
+                .filter(l -> l.name().toLowerCase().contains("cat"))
+                .map(l -> new CatDetection(true, l.confidence()))
+                .max((a, b) -> Float.compare(a.getConfidence(), b.getConfidence()))
+                .orElse(new CatDetection(false, 0f));
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
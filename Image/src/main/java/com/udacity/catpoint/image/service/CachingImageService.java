@@ -0,0 +1,246 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Image service decorator that remembers recent verdicts. Each image is reduced to a 64-bit
+ * difference hash (dHash), and an image whose hash is within a small Hamming distance of a
+ * cached one gets the cached verdict without calling the wrapped service. Consecutive frames
+ * from a static camera hash almost identically, so quiet scenes rarely reach the real detector.
+ *
+ * The cache holds at most maxEntries verdicts, evicting the least recently used, and forgets
+ * verdicts older than the time-to-live. Lookups scan the cache, so keep it small.
+ *
+ * Batches are answered from the cache where possible, and the remaining images are passed to the
+ * wrapped service as one smaller batch.
+ */
+public class CachingImageService implements ImageServiceInterface {
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    private static final int SAMPLES_PER_CELL = 4;
+
+    private final ImageServiceInterface delegate;
+    private final int maxDistance;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    //guarded by this; access-ordered, so iteration starts at the least recently used verdict
+    private final LinkedHashMap<CacheKey, CachedVerdict> cache;
+
+    /**
+     * Verdicts depend on the confidence threshold as well as the image, so the same hash can be cached once per threshold.
+     */
+    private static final class CacheKey {
+        private final long hash;
+        private final float confidenceThreshhold;
+
+        private CacheKey(long hash, float confidenceThreshhold) {
+            this.hash = hash;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash && Float.compare(confidenceThreshhold, other.confidenceThreshhold) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(hash) + Float.hashCode(confidenceThreshhold);
+        }
+    }
+
+    private static class CachedVerdict {
+        private final CacheKey key;
+        private final CatDetection detection;
+        private final long createdNanos;
+
+        private CachedVerdict(CacheKey key, CatDetection detection, long createdNanos) {
+            this.key = key;
+            this.detection = detection;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    /**
+     * @param delegate Service to ask when there's no usable cached verdict
+     * @param maxDistance Largest Hamming distance, out of 64 bits, at which two images count as the same
+     * @param maxEntries Most verdicts to keep
+     * @param ttl How long a verdict stays usable
+     * @param ttlUnit Unit of ttl
+     */
+    public CachingImageService(ImageServiceInterface delegate, int maxDistance, int maxEntries, long ttl, TimeUnit ttlUnit) {
+        if(maxDistance < 0 || maxEntries < 1) {
+            throw new IllegalArgumentException("maxDistance must not be negative and maxEntries must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxDistance = maxDistance;
+        this.ttlNanos = ttlUnit.toNanos(ttl);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedVerdict> eldest) {
+                if(size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long hash = differenceHash(image);
+        long now = System.nanoTime();
+        synchronized (this) {
+            CachedVerdict cached = findSimilar(hash, confidenceThreshhold, now);
+            if(cached != null) {
+                hits.increment();
+                return cached.detection.containsCat();
+            }
+        }
+        misses.increment();
+        boolean containsCat = delegate.imageContainsCat(image, confidenceThreshhold);
+        synchronized (this) {
+            remember(new CacheKey(hash, confidenceThreshhold), new CatDetection(containsCat, Float.NaN), now);
+        }
+        return containsCat;
+    }
+
+    @Override
+    public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+        long now = System.nanoTime();
+        long[] hashes = new long[images.size()];
+        CatDetection[] detections = new CatDetection[images.size()];
+        List<BufferedImage> missedImages = new ArrayList<>();
+        List<Integer> missedIndexes = new ArrayList<>();
+        for(int i = 0; i < images.size(); i++) {
+            hashes[i] = differenceHash(images.get(i));
+        }
+        synchronized (this) {
+            for(int i = 0; i < images.size(); i++) {
+                CachedVerdict cached = findSimilar(hashes[i], confidenceThreshhold, now);
+                if(cached != null) {
+                    detections[i] = cached.detection;
+                } else {
+                    missedImages.add(images.get(i));
+                    missedIndexes.add(i);
+                }
+            }
+        }
+        hits.add(images.size() - missedImages.size());
+        misses.add(missedImages.size());
+        if(!missedImages.isEmpty()) {
+            List<CatDetection> fresh = delegate.detectCats(missedImages, confidenceThreshhold);
+            synchronized (this) {
+                for(int m = 0; m < fresh.size(); m++) {
+                    int i = missedIndexes.get(m);
+                    detections[i] = fresh.get(m);
+                    if(detections[i].isKnown()) {
+                        remember(new CacheKey(hashes[i], confidenceThreshhold), detections[i], now);
+                    }
+                }
+            }
+        }
+        return List.of(detections);
+    }
+
+    private CachedVerdict findSimilar(long hash, float confidenceThreshhold, long now) {
+        CachedVerdict best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        Iterator<CachedVerdict> it = cache.values().iterator();
+        while(it.hasNext()) {
+            CachedVerdict candidate = it.next();
+            if(now - candidate.createdNanos > ttlNanos) {
+                it.remove();
+                evictions.increment();
+                continue;
+            }
+            if(Float.compare(candidate.key.confidenceThreshhold, confidenceThreshhold) != 0) {
+                continue;
+            }
+            int distance = Long.bitCount(candidate.key.hash ^ hash);
+            if(distance <= maxDistance && distance < bestDistance) {
+                best = candidate;
+                bestDistance = distance;
+            }
+        }
+        if(best != null) {
+            cache.get(best.key); //mark as recently used
+        }
+        return best;
+    }
+
+    private void remember(CacheKey key, CatDetection detection, long now) {
+        cache.put(key, new CachedVerdict(key, detection, now));
+    }
+
+    /**
+     * Computes a 64-bit difference hash: the image is shrunk to a 9x8 grayscale grid and each bit
+     * records whether a cell is brighter than its right-hand neighbour. Each cell is estimated from
+     * a few sample points rather than every pixel, which keeps this cheap for large frames.
+     */
+    static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] cells = new int[HASH_WIDTH * HASH_HEIGHT];
+        for(int cy = 0; cy < HASH_HEIGHT; cy++) {
+            for(int cx = 0; cx < HASH_WIDTH; cx++) {
+                int sum = 0;
+                for(int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = (int) (((cy * SAMPLES_PER_CELL + sy + 0.5) * height) / (HASH_HEIGHT * SAMPLES_PER_CELL));
+                    for(int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = (int) (((cx * SAMPLES_PER_CELL + sx + 0.5) * width) / (HASH_WIDTH * SAMPLES_PER_CELL));
+                        int rgb = image.getRGB(x, y);
+                        sum += (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+                    }
+                }
+                cells[cy * HASH_WIDTH + cx] = sum;
+            }
+        }
+        long hash = 0;
+        for(int cy = 0; cy < HASH_HEIGHT; cy++) {
+            for(int cx = 0; cx < HASH_WIDTH - 1; cx++) {
+                hash <<= 1;
+                if(cells[cy * HASH_WIDTH + cx] > cells[cy * HASH_WIDTH + cx + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,58 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Verdict for one image from {@link ImageServiceInterface#detectCats}.
+ */
+public class CatDetection {
+
+    private static final CatDetection UNKNOWN = new CatDetection(false, Float.NaN, false);
+
+    private final boolean containsCat;
+    private final float confidence;
+    private final boolean known;
+
+    /**
+     * @param containsCat Whether a cat was seen with at least the requested confidence
+     * @param confidence Confidence, from 0 to 100, of the most likely cat in the image, or NaN if the service doesn't report one
+     */
+    public CatDetection(boolean containsCat, float confidence) {
+        this(containsCat, confidence, true);
+    }
+
+    private CatDetection(boolean containsCat, float confidence, boolean known) {
+        this.containsCat = containsCat;
+        this.confidence = confidence;
+        this.known = known;
+    }
+
+    /**
+     * @return A verdict for an image no service could classify. It reports no cat, but callers that
+     *         remember an earlier verdict for the same camera should keep that instead.
+     */
+    public static CatDetection unknown() {
+        return UNKNOWN;
+    }
+
+    /**
+     * @return false if no service could classify the image
+     */
+    public boolean isKnown() {
+        return known;
+    }
+
+    public boolean containsCat() {
+        return containsCat;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public String toString() {
+        if(!known) {
+            return "CatDetection{unknown}";
+        }
+        return String.format("CatDetection{containsCat=%s, confidence=%.1f}", containsCat, confidence);
+    }
+}
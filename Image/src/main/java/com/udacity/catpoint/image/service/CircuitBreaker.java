@@ -0,0 +1,136 @@
+package com.udacity.catpoint.image.service;
+
+import java.time.Duration;
+
+/**
+ * Tracks the outcome of the last few calls to a service and stops calls to it once too many have
+ * failed or been slow. After the open time a single trial call is let through: if it succeeds
+ * quickly the breaker closes again, otherwise it stays open for another open time.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final long slowCallNanos;
+    private final float slowCallRateThreshold;
+    private final long openNanos;
+
+    //guarded by this; a ring of the most recent outcomes
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    /**
+     * Trips when half of the last 20 calls, and at least 10, failed or took over a second, and waits 30 seconds before a trial call.
+     */
+    public CircuitBreaker() {
+        this(20, 10, 50f, Duration.ofSeconds(1), 50f, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param windowSize How many of the most recent calls are considered
+     * @param minimumCalls Fewest calls in the window before the breaker may trip
+     * @param failureRateThreshold Percentage of failed calls that trips the breaker
+     * @param slowCallThreshold Calls taking longer than this count as slow
+     * @param slowCallRateThreshold Percentage of slow calls that trips the breaker
+     * @param openDuration How long calls are refused once tripped
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, float failureRateThreshold,
+                          Duration slowCallThreshold, float slowCallRateThreshold, Duration openDuration) {
+        if(windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+        }
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    /**
+     * Asks to make a call. Every permitted call must be followed by {@link #record(long, boolean)}.
+     * @return Whether the call may go ahead
+     */
+    public synchronized boolean tryAcquire() {
+        switch(state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if(System.nanoTime() - openUntil < 0) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if(trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * @param elapsedNanos How long the call took
+     * @param success Whether it returned a result in time
+     */
+    public synchronized void record(long elapsedNanos, boolean success) {
+        boolean wasSlow = elapsedNanos > slowCallNanos;
+        if(state == State.HALF_OPEN) {
+            trialInFlight = false;
+            if(success && !wasSlow) {
+                state = State.CLOSED;
+                reset();
+            } else {
+                open();
+            }
+            return;
+        }
+        if(recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = !success;
+        slow[next] = wasSlow;
+        failures += success ? 0 : 1;
+        slowCalls += wasSlow ? 1 : 0;
+        next = (next + 1) % failed.length;
+
+        if(state == State.CLOSED && recorded >= minimumCalls
+                && (failures * 100f / recorded >= failureRateThreshold || slowCalls * 100f / recorded >= slowCallRateThreshold)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.nanoTime() + openNanos;
+        reset();
+    }
+
+    private void reset() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
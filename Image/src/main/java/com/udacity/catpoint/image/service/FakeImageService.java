@@ -1,15 +1,29 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
-import java.util.Random;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
- * Service that tries to guess if an image displays a cat.
+ * Service that pretends to tell whether an image displays a cat.
+ *
+ * Verdicts are deterministic: each image gets a confidence derived from its perceptual hash, so the
+ * same picture always gets the same verdict, whether it is checked on its own or in a batch. Useful
+ * for repeatable tests and benchmarks.
  */
 public class FakeImageService implements ImageServiceInterface {
-    private final Random r = new Random();
 
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        return r.nextBoolean();
+        return detectCat(image, confidenceThreshhold).containsCat();
+    }
+
+    @Override
+    public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+        return images.stream().map(image -> detectCat(image, confidenceThreshhold)).collect(Collectors.toList());
+    }
+
+    private static CatDetection detectCat(BufferedImage image, float confidenceThreshhold) {
+        float confidence = Long.remainderUnsigned(CachingImageService.differenceHash(image), 1001) / 10f;
+        return new CatDetection(confidence >= confidenceThreshhold, confidence);
     }
 }
@@ -0,0 +1,21 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Cheap check that runs on each frame before it is sent to an image service. Lets callers skip
+ * the expensive detector when a frame shows nothing new.
+ */
+public interface FramePreFilter {
+
+    /**
+     * Filter that treats every frame as changed.
+     */
+    FramePreFilter NONE = frame -> true;
+
+    /**
+     * @param frame The latest camera frame
+     * @return true if the frame differs enough from what came before to be worth analyzing
+     */
+    boolean hasSignificantChange(BufferedImage frame);
+}
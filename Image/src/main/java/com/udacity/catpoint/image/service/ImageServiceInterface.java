@@ -1,7 +1,24 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public interface ImageServiceInterface {
     boolean imageContainsCat(BufferedImage currentCameraImage, float v);
+
+    /**
+     * Checks several images, for example the latest frame of each camera, in one call. Services that
+     * can overlap or combine requests should override this; by default each image is checked in turn
+     * and no confidence is reported.
+     * @param images Images to scan
+     * @param confidenceThreshhold Minimum confidence, from 0 to 100, to report a cat
+     * @return One verdict per image, in the same order. Images that couldn't be classified may be
+     *         reported as {@link CatDetection#unknown()}.
+     */
+    default List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+        return images.stream()
+                .map(image -> new CatDetection(imageContainsCat(image, confidenceThreshhold), Float.NaN))
+                .collect(Collectors.toList());
+    }
 }
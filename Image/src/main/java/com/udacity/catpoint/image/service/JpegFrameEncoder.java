@@ -0,0 +1,126 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes camera frames as JPEG for upload to an image service. Frames larger than the maximum
+ * dimension are scaled down first, since detectors gain nothing from extra resolution and every
+ * byte has to be uploaded. Each thread keeps its own ImageWriter, write parameters, frame buffer and
+ * output stream, so after the first frame the encoder itself only allocates the returned byte array
+ * and a small IIOImage wrapper; whatever the JPEG writer allocates internally comes on top of that.
+ */
+public class JpegFrameEncoder {
+
+    private final int maxDimension;
+    private final float quality;
+    private final ThreadLocal<EncoderState> state = ThreadLocal.withInitial(() -> new EncoderState(getQuality()));
+
+    /**
+     * Output buffer whose backing array can be read without copying.
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        private ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        private byte[] copyOfContents() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+
+    private static class EncoderState {
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        private final ImageWriteParam param = writer.getDefaultWriteParam();
+        private final ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream(64 * 1024);
+        //each frame is flushed through to out, so the stream never holds on to an earlier frame's bytes
+        private final ImageOutputStream ios = new MemoryCacheImageOutputStream(out);
+        private BufferedImage frame;
+
+        private EncoderState(float quality) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+
+        private BufferedImage frameBuffer(int width, int height) {
+            if(frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+                frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            }
+            return frame;
+        }
+    }
+
+    /**
+     * @param maxDimension Longest side, in pixels, of the encoded image
+     * @param quality JPEG quality between 0 and 1
+     */
+    public JpegFrameEncoder(int maxDimension, float quality) {
+        if(maxDimension < 1 || quality < 0 || quality > 1) {
+            throw new IllegalArgumentException("maxDimension must be positive and quality between 0 and 1");
+        }
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+    }
+
+    /**
+     * @param image Frame to encode
+     * @return The JPEG bytes. The array is newly allocated and owned by the caller.
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        EncoderState encoder = state.get();
+        BufferedImage frame = toEncodableFrame(encoder, image);
+
+        encoder.ios.flush(); //drops whatever a failed frame left behind
+        encoder.out.reset();
+        try {
+            encoder.writer.setOutput(encoder.ios);
+            encoder.writer.write(null, new IIOImage(frame, null, null), encoder.param);
+            encoder.ios.flush();
+        } finally {
+            encoder.writer.reset();
+        }
+        return encoder.out.copyOfContents();
+    }
+
+    /**
+     * Internal method that draws the image into this thread's reusable 3-byte BGR frame, scaling it
+     * down if needed. This also strips any alpha channel, which the JPEG writer can't encode.
+     */
+    private BufferedImage toEncodableFrame(EncoderState encoder, BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        if(scale == 1.0 && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage frame = encoder.frameBuffer(targetWidth, targetHeight);
+        Graphics2D g = frame.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return frame;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+}
@@ -0,0 +1,338 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Image service that runs entirely on the local CPU, with no network round trip. The frame is
+ * reduced to a {@value #WIDTH}x{@value #HEIGHT} grayscale image and described by histograms of
+ * oriented gradients (HOG) over 8x8 pixel cells. A linear classifier is then slid over windows of
+ * {@value #WINDOW}x{@value #WINDOW} cells at three scales, and the best-matching window gives the
+ * confidence. The per-pixel stages are split into bands of rows and run on a ForkJoinPool. Each
+ * frame borrows image and histogram buffers from a small free list and hands them to its tasks, so a
+ * frame takes a few milliseconds and only allocates the small fork/join tasks that split the work.
+ * The buffers are not tied to a thread: a pool thread that waits on one frame's tasks may pick up
+ * another frame's {@link #confidence(BufferedImage)}, and that frame must not write into the first
+ * one's buffers.
+ *
+ * The default weights are not a trained model. They are a hand-built template of a cat's head seen
+ * from the front, a rounded outline with two pointed ears, which is enough to exercise the alarm path
+ * offline but will miss cats in other poses and fire on other round, eared shapes. Weights from a
+ * linear classifier trained on real HOG features can be loaded with {@link #load(InputStream)}.
+ */
+public class LocalCatDetector implements ImageServiceInterface {
+
+    public static final int WIDTH = 192;
+    public static final int HEIGHT = 144;
+    public static final int WINDOW = 6;
+
+    private static final int CELL = 8;
+    private static final int BINS = 9;
+    private static final int CELLS_X = WIDTH / CELL;
+    private static final int CELLS_Y = HEIGHT / CELL;
+    private static final int[] SCALES = {1, 2, 3};
+    private static final int FEATURES = WINDOW * WINDOW * BINS;
+    private static final int ROWS_PER_TASK = 3 * CELL;
+
+    //orientation bin boundaries, every 180/BINS degrees
+    private static final float[] BOUNDARY_SIN = new float[BINS - 1];
+    private static final float[] BOUNDARY_COS = new float[BINS - 1];
+
+    static {
+        for(int k = 1; k < BINS; k++) {
+            double angle = Math.PI * k / BINS;
+            BOUNDARY_SIN[k - 1] = (float) Math.sin(angle);
+            BOUNDARY_COS[k - 1] = (float) Math.cos(angle);
+        }
+    }
+
+    private final float[] weights;
+    private final float scale;
+    private final float bias;
+    private final ForkJoinPool pool;
+    //buffers not in use by a frame; extra ones made under heavy load are dropped once the list is full
+    private final BlockingQueue<Buffers> spareBuffers = new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    private static class Buffers {
+        private final float[] gray = new float[WIDTH * HEIGHT];
+        private final float[][] cells = new float[SCALES.length][];
+
+        private Buffers() {
+            for(int s = 0; s < SCALES.length; s++) {
+                cells[s] = new float[(CELLS_X / SCALES[s]) * (CELLS_Y / SCALES[s]) * BINS];
+            }
+        }
+    }
+
+    /**
+     * Work on a band of rows [from, to).
+     */
+    private interface BandWork {
+        void run(int from, int to);
+    }
+
+    private static class BandTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final BandWork work;
+
+        private BandTask(int from, int to, BandWork work) {
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= ROWS_PER_TASK) {
+                work.run(from, to);
+                return;
+            }
+            //split on a cell boundary so no two tasks write to the same cell
+            int middle = from + (to - from) / 2 / CELL * CELL;
+            invokeAll(new BandTask(from, middle, work), new BandTask(middle, to, work));
+        }
+    }
+
+    /**
+     * Creates a detector with the built-in template on the common pool.
+     */
+    public LocalCatDetector() {
+        this(defaultTemplate(), 60f, -6.5f, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param weights {@value #WINDOW}x{@value #WINDOW} cells of {@value #BINS} orientation bins, row by row,
+     *                applied to L2-normalized window features
+     * @param scale Multiplies the classifier output before the logistic function
+     * @param bias Added to the scaled output before the logistic function
+     * @param pool Pool the per-pixel stages run on
+     */
+    public LocalCatDetector(float[] weights, float scale, float bias, ForkJoinPool pool) {
+        if(weights.length != FEATURES) {
+            throw new IllegalArgumentException("Expected " + FEATURES + " weights, got " + weights.length);
+        }
+        this.weights = normalized(weights);
+        this.scale = scale;
+        this.bias = bias;
+        this.pool = pool;
+    }
+
+    /**
+     * Reads weights written as a big-endian int count, that many floats, then the scale and the bias.
+     * @throws IOException if the count isn't the {@value #WINDOW}x{@value #WINDOW}x{@value #BINS} weights the
+     *                     detector needs, or the stream ends early
+     */
+    public static LocalCatDetector load(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int count = data.readInt();
+        if(count != FEATURES) {
+            //checked before allocating, so a corrupt count can't ask for a huge or negative array
+            throw new IOException("Expected " + FEATURES + " weights, got " + count);
+        }
+        float[] weights = new float[count];
+        for(int i = 0; i < weights.length; i++) {
+            weights[i] = data.readFloat();
+        }
+        return new LocalCatDetector(weights, data.readFloat(), data.readFloat(), ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return confidence(image) >= confidenceThreshhold;
+    }
+
+    @Override
+    public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+        CatDetection[] detections = new CatDetection[images.size()];
+        for(int i = 0; i < detections.length; i++) {
+            float confidence = confidence(images.get(i));
+            detections[i] = new CatDetection(confidence >= confidenceThreshhold, confidence);
+        }
+        return List.of(detections);
+    }
+
+    /**
+     * @return How sure the detector is that the image shows a cat, from 0 to 100
+     */
+    public float confidence(BufferedImage image) {
+        Buffers spare = spareBuffers.poll();
+        Buffers b = spare != null ? spare : new Buffers();
+        try {
+            pool.invoke(new BandTask(0, HEIGHT, (from, to) -> downsample(image, b.gray, from, to)));
+            Arrays.fill(b.cells[0], 0f);
+            pool.invoke(new BandTask(0, HEIGHT, (from, to) -> histograms(b.gray, b.cells[0], from, to)));
+
+            float best = -1f;
+            for(int s = 0; s < SCALES.length; s++) {
+                if(s > 0) {
+                    pool(b.cells[0], b.cells[s], SCALES[s]);
+                }
+                best = Math.max(best, bestWindow(b.cells[s], CELLS_X / SCALES[s], CELLS_Y / SCALES[s]));
+            }
+            return (float) (100 / (1 + Math.exp(-(scale * best + bias))));
+        } finally {
+            spareBuffers.offer(b);
+        }
+    }
+
+    /**
+     * Nearest-neighbour grayscale samples of the rows [from, to) of the working image.
+     */
+    private static void downsample(BufferedImage image, float[] gray, int from, int to) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for(int y = from; y < to; y++) {
+            int sy = (int) ((y + 0.5) * height / HEIGHT);
+            for(int x = 0; x < WIDTH; x++) {
+                int rgb = image.getRGB((int) ((x + 0.5) * width / WIDTH), sy);
+                gray[y * WIDTH + x] = (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+            }
+        }
+    }
+
+    /**
+     * Adds the gradient magnitude of each pixel in rows [from, to) to its cell's orientation bin.
+     */
+    private static void histograms(float[] gray, float[] cells, int from, int to) {
+        for(int y = from; y < to; y++) {
+            int up = Math.max(y - 1, 0) * WIDTH;
+            int down = Math.min(y + 1, HEIGHT - 1) * WIDTH;
+            int cellRow = (y / CELL) * CELLS_X;
+            for(int x = 0; x < WIDTH; x++) {
+                float gx = gray[y * WIDTH + Math.min(x + 1, WIDTH - 1)] - gray[y * WIDTH + Math.max(x - 1, 0)];
+                float gy = gray[down + x] - gray[up + x];
+                if(gy < 0 || (gy == 0 && gx < 0)) {
+                    //orientation is unsigned: fold into the upper half plane
+                    gx = -gx;
+                    gy = -gy;
+                }
+                int bin = 0;
+                for(int k = 0; k < BINS - 1; k++) {
+                    if(gx * BOUNDARY_SIN[k] - gy * BOUNDARY_COS[k] < 0) {
+                        bin++;
+                    }
+                }
+                cells[(cellRow + x / CELL) * BINS + bin] += (float) Math.sqrt(gx * gx + gy * gy);
+            }
+        }
+    }
+
+    /**
+     * Sums factor x factor blocks of cells into the coarser grid.
+     */
+    private static void pool(float[] cells, float[] pooled, int factor) {
+        int pooledX = CELLS_X / factor;
+        int pooledY = CELLS_Y / factor;
+        Arrays.fill(pooled, 0f);
+        for(int py = 0; py < pooledY; py++) {
+            for(int px = 0; px < pooledX; px++) {
+                int target = (py * pooledX + px) * BINS;
+                for(int dy = 0; dy < factor; dy++) {
+                    for(int dx = 0; dx < factor; dx++) {
+                        int source = ((py * factor + dy) * CELLS_X + px * factor + dx) * BINS;
+                        for(int bin = 0; bin < BINS; bin++) {
+                            pooled[target + bin] += cells[source + bin];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The highest cosine similarity between the weights and any window of the grid
+     */
+    private float bestWindow(float[] cells, int cellsX, int cellsY) {
+        float best = -1f;
+        for(int wy = 0; wy + WINDOW <= cellsY; wy++) {
+            for(int wx = 0; wx + WINDOW <= cellsX; wx++) {
+                float dot = 0f;
+                float norm = 0f;
+                int w = 0;
+                for(int cy = 0; cy < WINDOW; cy++) {
+                    int offset = ((wy + cy) * cellsX + wx) * BINS;
+                    for(int i = offset; i < offset + WINDOW * BINS; i++, w++) {
+                        float f = cells[i];
+                        dot += weights[w] * f;
+                        norm += f * f;
+                    }
+                }
+                if(norm > 0) {
+                    best = Math.max(best, dot / (float) Math.sqrt(norm));
+                }
+            }
+        }
+        return Math.max(best, 0f);
+    }
+
+    private static float[] normalized(float[] weights) {
+        double norm = 0;
+        for(float w : weights) {
+            norm += w * w;
+        }
+        float[] result = weights.clone();
+        if(norm > 0) {
+            for(int i = 0; i < result.length; i++) {
+                result[i] /= (float) Math.sqrt(norm);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Hand-built template of a cat's head: gradients pointing across a round outline, and edges at
+     * about 30 and 150 degrees where the ears are, with slightly negative weights for texture inside the face.
+     * Outline cells only reward a dominant orientation, not edge energy as such.
+     */
+    static float[] defaultTemplate() {
+        float[] template = new float[FEATURES];
+        double centerX = (WINDOW - 1) / 2.0;
+        double centerY = WINDOW / 2.0;
+        for(int cy = 0; cy < WINDOW; cy++) {
+            for(int cx = 0; cx < WINDOW; cx++) {
+                int cell = (cy * WINDOW + cx) * BINS;
+                double dx = cx - centerX;
+                double dy = cy - centerY;
+                double distance = Math.hypot(dx, dy);
+                if(cy == 0 && (cx <= 1 || cx >= WINDOW - 2)) {
+                    template[cell + orientationBin(Math.PI / 6)] += 1f;
+                    template[cell + orientationBin(5 * Math.PI / 6)] += 1f;
+                } else if(distance >= 1.5 && distance <= 2.8) {
+                    int bin = orientationBin(Math.atan2(dy, dx));
+                    template[cell + bin] += 1f;
+                    template[cell + (bin + 1) % BINS] += 0.5f;
+                    template[cell + (bin + BINS - 1) % BINS] += 0.5f;
+                } else if(distance < 1.5) {
+                    for(int bin = 0; bin < BINS; bin++) {
+                        template[cell + bin] -= 0.2f;
+                    }
+                }
+                //zero mean within the outline cells, so texture with no preferred orientation scores nothing
+                float mean = 0f;
+                for(int bin = 0; bin < BINS; bin++) {
+                    mean += template[cell + bin] / BINS;
+                }
+                if(mean > 0) {
+                    for(int bin = 0; bin < BINS; bin++) {
+                        template[cell + bin] -= mean;
+                    }
+                }
+            }
+        }
+        return template;
+    }
+
+    private static int orientationBin(double angle) {
+        double unsigned = ((angle % Math.PI) + Math.PI) % Math.PI;
+        return Math.min((int) (unsigned / (Math.PI / BINS)), BINS - 1);
+    }
+}
@@ -0,0 +1,134 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+
+/**
+ * Frame pre-filter based on frame differencing. Each frame is reduced to a small grayscale
+ * thumbnail and compared against a background model, a running average of earlier thumbnails.
+ * A frame counts as changed when enough thumbnail cells differ from the background by more than
+ * the pixel threshold. The background slowly absorbs each frame, so gradual lighting changes
+ * don't register as motion.
+ *
+ * Pixels are read straight from the image's Raster into reused buffers, so checking a frame
+ * allocates nothing once the filter is warmed up.
+ */
+public class MotionDetectionPreFilter implements FramePreFilter {
+
+    private static final int SAMPLES_PER_CELL = 2;
+
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+    private final int pixelThreshold;
+    private final int changedCellsThreshold;
+    private final float backgroundWeight;
+
+    //reused between frames, guarded by this
+    private final int[] thumbnail;
+    private final float[] background;
+    private int[] pixel = new int[4];
+    private boolean hasBackground;
+
+    public MotionDetectionPreFilter() {
+        this(64, 48, 25, 0.01f, 0.05f);
+    }
+
+    /**
+     * @param thumbnailWidth Width of the grayscale thumbnail frames are compared at
+     * @param thumbnailHeight Height of the grayscale thumbnail frames are compared at
+     * @param pixelThreshold Brightness difference, 0-255, at which a thumbnail cell counts as changed
+     * @param changedFraction Fraction of cells that must change for the frame to count as changed
+     * @param backgroundWeight How much each frame contributes to the background model, between 0 and 1
+     */
+    public MotionDetectionPreFilter(int thumbnailWidth, int thumbnailHeight, int pixelThreshold,
+                                    float changedFraction, float backgroundWeight) {
+        if(thumbnailWidth < 1 || thumbnailHeight < 1 || backgroundWeight <= 0 || backgroundWeight > 1) {
+            throw new IllegalArgumentException("Thumbnail must be at least 1x1 and backgroundWeight in (0, 1]");
+        }
+        this.thumbnailWidth = thumbnailWidth;
+        this.thumbnailHeight = thumbnailHeight;
+        this.pixelThreshold = pixelThreshold;
+        this.changedCellsThreshold = Math.max(1, Math.round(changedFraction * thumbnailWidth * thumbnailHeight));
+        this.backgroundWeight = backgroundWeight;
+        this.thumbnail = new int[thumbnailWidth * thumbnailHeight];
+        this.background = new float[thumbnailWidth * thumbnailHeight];
+    }
+
+    @Override
+    public synchronized boolean hasSignificantChange(BufferedImage frame) {
+        if(frame == null) {
+            return true;
+        }
+        buildThumbnail(frame);
+        if(!hasBackground) {
+            for(int i = 0; i < thumbnail.length; i++) {
+                background[i] = thumbnail[i];
+            }
+            hasBackground = true;
+            return true;
+        }
+        int changedCells = 0;
+        for(int i = 0; i < thumbnail.length; i++) {
+            if(Math.abs(thumbnail[i] - background[i]) > pixelThreshold) {
+                changedCells++;
+            }
+            background[i] += (thumbnail[i] - background[i]) * backgroundWeight;
+        }
+        return changedCells >= changedCellsThreshold;
+    }
+
+    /**
+     * Forgets the background model, so the next frame is always treated as changed.
+     */
+    public synchronized void reset() {
+        hasBackground = false;
+    }
+
+    /**
+     * Internal method that fills the thumbnail with the average luma of a few samples per cell.
+     */
+    private void buildThumbnail(BufferedImage frame) {
+        Raster raster = frame.getRaster();
+        ColorModel colorModel = frame.getColorModel();
+        IndexColorModel palette = colorModel instanceof IndexColorModel ? (IndexColorModel) colorModel : null;
+        int bands = raster.getNumBands();
+        if(pixel.length < bands) {
+            pixel = new int[bands];
+        }
+        int shift = Math.max(0, raster.getSampleModel().getSampleSize(0) - 8);
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int minX = raster.getMinX();
+        int minY = raster.getMinY();
+        int gridWidth = thumbnailWidth * SAMPLES_PER_CELL;
+        int gridHeight = thumbnailHeight * SAMPLES_PER_CELL;
+
+        for(int ty = 0; ty < thumbnailHeight; ty++) {
+            for(int tx = 0; tx < thumbnailWidth; tx++) {
+                int sum = 0;
+                for(int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = minY + (int) ((long) (ty * SAMPLES_PER_CELL + sy) * height / gridHeight);
+                    for(int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = minX + (int) ((long) (tx * SAMPLES_PER_CELL + sx) * width / gridWidth);
+                        raster.getPixel(x, y, pixel);
+                        sum += luma(palette, bands, shift);
+                    }
+                }
+                thumbnail[ty * thumbnailWidth + tx] = sum / (SAMPLES_PER_CELL * SAMPLES_PER_CELL);
+            }
+        }
+    }
+
+    private int luma(IndexColorModel palette, int bands, int shift) {
+        if(palette != null) {
+            int index = pixel[0];
+            return (palette.getRed(index) * 77 + palette.getGreen(index) * 150 + palette.getBlue(index) * 29) >> 8;
+        }
+        if(bands >= 3) {
+            return ((pixel[0] >> shift) * 77 + (pixel[1] >> shift) * 150 + (pixel[2] >> shift) * 29) >> 8;
+        }
+        return pixel[0] >> shift;
+    }
+}
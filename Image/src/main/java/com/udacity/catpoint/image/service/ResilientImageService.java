@@ -0,0 +1,233 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Image service decorator that bounds how long a slow or broken detector can hold up the caller.
+ * Each call to the primary service runs on a separate thread and is abandoned at the deadline. If it
+ * hasn't answered by the hedge delay, a second identical call is made and whichever answers first
+ * is used, which also retries calls that failed quickly. Timeouts, errors and slow answers are fed
+ * to a {@link CircuitBreaker}; while it is open the primary isn't called at all.
+ *
+ * When the primary gives no answer, the fallbacks are asked in order, for example a
+ * {@link LocalCatDetector}. They are called directly, so they should be local and fast. If every
+ * fallback fails too, a batch reports each of its images as {@link CatDetection#unknown()} and a single
+ * image fails with an IllegalStateException. There is no shared last verdict to repeat, since
+ * consecutive calls may come from different cameras; callers keep their own previous verdict per camera.
+ */
+public class ResilientImageService implements ImageServiceInterface, AutoCloseable {
+
+    private static final int MAX_CALLER_THREADS = 32;
+
+    private final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageServiceInterface primary;
+    private final List<ImageServiceInterface> fallbacks;
+    private final long deadlineNanos;
+    private final long hedgeDelayNanos;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolExecutor callers;
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder hedgedCalls = new LongAdder();
+    private final LongAdder shortCircuitedCalls = new LongAdder();
+    private final LongAdder fallbackVerdicts = new LongAdder();
+    private final LongAdder unansweredCalls = new LongAdder();
+
+    /**
+     * Gives the primary 1.5 seconds, hedging after 400 milliseconds, behind a default {@link CircuitBreaker}.
+     */
+    public ResilientImageService(ImageServiceInterface primary, List<ImageServiceInterface> fallbacks) {
+        this(primary, fallbacks, Duration.ofMillis(1500), Duration.ofMillis(400), new CircuitBreaker());
+    }
+
+    /**
+     * @param primary Service to ask first
+     * @param fallbacks Services to ask, in order, when the primary gives no answer
+     * @param deadline Longest the primary is waited for, hedge included
+     * @param hedgeDelay When to send a second call to the primary. Zero, or at least the deadline, never hedges.
+     * @param circuitBreaker Decides whether the primary is called
+     */
+    public ResilientImageService(ImageServiceInterface primary, List<ImageServiceInterface> fallbacks,
+                                 Duration deadline, Duration hedgeDelay, CircuitBreaker circuitBreaker) {
+        if(deadline.isNegative() || deadline.isZero() || hedgeDelay.isNegative()) {
+            throw new IllegalArgumentException("deadline must be positive and hedgeDelay must not be negative");
+        }
+        this.primary = primary;
+        this.fallbacks = List.copyOf(fallbacks);
+        this.deadlineNanos = deadline.toNanos();
+        this.hedgeDelayNanos = hedgeDelay.isZero() || hedgeDelay.compareTo(deadline) >= 0 ? 0 : hedgeDelay.toNanos();
+        this.circuitBreaker = circuitBreaker;
+        AtomicInteger threadCount = new AtomicInteger();
+        //calls stuck past their deadline keep a thread; the breaker stops that from growing without bound
+        this.callers = new ThreadPoolExecutor(0, MAX_CALLER_THREADS, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "image-service-call-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        Boolean containsCat = callPrimary(() -> primary.imageContainsCat(image, confidenceThreshhold));
+        for(int i = 0; containsCat == null && i < fallbacks.size(); i++) {
+            ImageServiceInterface fallback = fallbacks.get(i);
+            containsCat = callFallback(() -> fallback.imageContainsCat(image, confidenceThreshhold), fallback);
+        }
+        if(containsCat == null) {
+            unansweredCalls.increment();
+            throw new IllegalStateException("No image service could classify the image");
+        }
+        return containsCat;
+    }
+
+    @Override
+    public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+        if(images.isEmpty()) {
+            return List.of();
+        }
+        List<CatDetection> detections = callPrimary(() -> primary.detectCats(images, confidenceThreshhold));
+        for(int i = 0; detections == null && i < fallbacks.size(); i++) {
+            ImageServiceInterface fallback = fallbacks.get(i);
+            detections = callFallback(() -> fallback.detectCats(images, confidenceThreshhold), fallback);
+        }
+        if(detections == null) {
+            unansweredCalls.increment();
+            return Collections.nCopies(images.size(), CatDetection.unknown());
+        }
+        return detections;
+    }
+
+    /**
+     * @return The primary's answer, or null if it was not called, failed or missed the deadline
+     */
+    private <T> T callPrimary(Callable<T> call) {
+        if(!circuitBreaker.tryAcquire()) {
+            shortCircuitedCalls.increment();
+            return null;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        //the result only fails once every planned call has failed
+        AtomicInteger outstanding = new AtomicInteger(hedgeDelayNanos > 0 ? 2 : 1);
+        Future<?> first = attempt(call, result, outstanding);
+        Future<?> hedge = null;
+        try {
+            if(hedgeDelayNanos > 0) {
+                try {
+                    T value = result.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                    circuitBreaker.record(System.nanoTime() - start, true);
+                    return value;
+                } catch (TimeoutException e) {
+                    hedgedCalls.increment();
+                    hedge = attempt(call, result, outstanding);
+                }
+            }
+            T value = result.get(deadlineNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            circuitBreaker.record(System.nanoTime() - start, true);
+            return value;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("Image service gave no answer within {} ms", TimeUnit.NANOSECONDS.toMillis(deadlineNanos));
+            circuitBreaker.record(System.nanoTime() - start, false);
+        } catch (ExecutionException e) {
+            failures.increment();
+            log.warn("Image service failed", e.getCause());
+            circuitBreaker.record(System.nanoTime() - start, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.record(System.nanoTime() - start, false);
+        } finally {
+            first.cancel(true);
+            if(hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+        return null;
+    }
+
+    private <T> Future<?> attempt(Callable<T> call, CompletableFuture<T> result, AtomicInteger outstanding) {
+        try {
+            return callers.submit(() -> {
+                try {
+                    result.complete(call.call());
+                } catch (Exception e) {
+                    if(outstanding.decrementAndGet() == 0) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if(outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private <T> T callFallback(Callable<T> call, ImageServiceInterface fallback) {
+        try {
+            T value = call.call();
+            fallbackVerdicts.increment();
+            return value;
+        } catch (Exception e) {
+            log.warn("Fallback image service " + fallback + " failed", e);
+            return null;
+        }
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return Calls for which a second request was sent to the primary
+     */
+    public long getHedgedCalls() {
+        return hedgedCalls.sum();
+    }
+
+    /**
+     * @return Calls that skipped the primary because the circuit breaker was open
+     */
+    public long getShortCircuitedCalls() {
+        return shortCircuitedCalls.sum();
+    }
+
+    public long getFallbackVerdicts() {
+        return fallbackVerdicts.sum();
+    }
+
+    /**
+     * @return Calls that neither the primary nor any fallback answered
+     */
+    public long getUnansweredCalls() {
+        return unansweredCalls.sum();
+    }
+
+    /**
+     * Abandons any calls to the primary still running.
+     */
+    @Override
+    public void close() {
+        callers.shutdownNow();
+    }
+}
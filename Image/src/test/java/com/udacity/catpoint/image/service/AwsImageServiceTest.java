@@ -0,0 +1,75 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class AwsImageServiceTest {
+
+    private static final BufferedImage IMAGE = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+    //no frame gets as far as a request
+    private final JpegFrameEncoder failingEncoder = new JpegFrameEncoder(64, 0.8f) {
+        @Override
+        public byte[] encode(BufferedImage image) throws IOException {
+            throw new IOException("cannot encode");
+        }
+    };
+
+    private final RekognitionClient client = new RekognitionClient() {
+        @Override
+        public DetectLabelsResponse detectLabels(DetectLabelsRequest request) {
+            throw new AssertionError("frames that couldn't be encoded should not be sent");
+        }
+
+        @Override
+        public String serviceName() {
+            return "rekognition";
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final RekognitionAsyncClient asyncClient = new RekognitionAsyncClient() {
+        @Override
+        public CompletableFuture<DetectLabelsResponse> detectLabels(DetectLabelsRequest request) {
+            throw new AssertionError("frames that couldn't be encoded should not be sent");
+        }
+
+        @Override
+        public String serviceName() {
+            return "rekognition";
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Test
+    public void framesThatCannotBeEncodedAreUnknownInABatch() {
+        AwsImageService service = new AwsImageService(client, asyncClient, failingEncoder);
+        List<CatDetection> detections = service.detectCats(List.of(IMAGE, IMAGE), 50);
+        Assertions.assertEquals(2, detections.size());
+        for(CatDetection detection : detections) {
+            Assertions.assertFalse(detection.isKnown());
+        }
+    }
+
+    @Test
+    public void frameThatCannotBeEncodedFailsASingleCheck() {
+        AwsImageService service = new AwsImageService(client, asyncClient, failingEncoder);
+        Assertions.assertThrows(UncheckedIOException.class, () -> service.imageContainsCat(IMAGE, 50));
+    }
+}
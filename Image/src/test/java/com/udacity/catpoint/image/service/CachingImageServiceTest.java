@@ -0,0 +1,159 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class CachingImageServiceTest {
+
+    //answers with the threshold it was asked about, so a verdict cached for the wrong threshold shows up
+    private final List<BufferedImage> asked = new ArrayList<>();
+    private final ImageServiceInterface delegate = (image, confidenceThreshhold) -> {
+        asked.add(image);
+        return confidenceThreshhold < 60;
+    };
+
+    private static BufferedImage noise(long seed) {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for(int y = 0; y < image.getHeight(); y++) {
+            for(int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setData(image.getData());
+        return copy;
+    }
+
+    @Test
+    public void repeatedImageIsAnsweredFromTheCache() {
+        CachingImageService service = new CachingImageService(delegate, 4, 8, 1, TimeUnit.MINUTES);
+        BufferedImage image = noise(1);
+
+        Assertions.assertTrue(service.imageContainsCat(image, 50));
+        Assertions.assertTrue(service.imageContainsCat(copy(image), 50));
+        Assertions.assertEquals(1, asked.size());
+        Assertions.assertEquals(1, service.getHits());
+        Assertions.assertEquals(1, service.getMisses());
+    }
+
+    @Test
+    public void similarImageUsesTheNearestCachedVerdict() {
+        CachingImageService service = new CachingImageService(delegate, 4, 8, 1, TimeUnit.MINUTES);
+        BufferedImage image = noise(1);
+        BufferedImage similar = copy(image);
+        similar.setRGB(10, 10, 0xFFFFFF);
+        BufferedImage different = noise(2);
+        Assertions.assertTrue(Long.bitCount(CachingImageService.differenceHash(image) ^ CachingImageService.differenceHash(similar)) <= 4);
+        Assertions.assertTrue(Long.bitCount(CachingImageService.differenceHash(image) ^ CachingImageService.differenceHash(different)) > 4);
+
+        service.imageContainsCat(image, 50);
+        service.imageContainsCat(similar, 50);
+        Assertions.assertEquals(List.of(image), asked);
+
+        service.imageContainsCat(different, 50);
+        Assertions.assertEquals(List.of(image, different), asked);
+        Assertions.assertEquals(1, service.getHits());
+        Assertions.assertEquals(2, service.getMisses());
+    }
+
+    @Test
+    public void verdictsAreCachedPerThreshold() {
+        CachingImageService service = new CachingImageService(delegate, 4, 8, 1, TimeUnit.MINUTES);
+        BufferedImage image = noise(1);
+
+        Assertions.assertTrue(service.imageContainsCat(image, 50));
+        Assertions.assertFalse(service.imageContainsCat(image, 80));
+        Assertions.assertEquals(2, service.size());
+
+        Assertions.assertTrue(service.imageContainsCat(image, 50));
+        Assertions.assertFalse(service.imageContainsCat(image, 80));
+        Assertions.assertEquals(2, asked.size());
+        Assertions.assertEquals(2, service.getHits());
+    }
+
+    @Test
+    public void expiredVerdictsAreForgotten() throws InterruptedException {
+        CachingImageService service = new CachingImageService(delegate, 4, 8, 1, TimeUnit.MILLISECONDS);
+        BufferedImage image = noise(1);
+
+        service.imageContainsCat(image, 50);
+        Thread.sleep(10);
+        service.imageContainsCat(image, 50);
+        Assertions.assertEquals(2, asked.size());
+        Assertions.assertEquals(0, service.getHits());
+        Assertions.assertEquals(1, service.getEvictions());
+        Assertions.assertEquals(1, service.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedVerdictIsEvicted() {
+        CachingImageService service = new CachingImageService(delegate, 4, 2, 1, TimeUnit.MINUTES);
+        BufferedImage first = noise(1);
+        BufferedImage second = noise(2);
+        BufferedImage third = noise(3);
+
+        service.imageContainsCat(first, 50);
+        service.imageContainsCat(second, 50);
+        service.imageContainsCat(first, 50); //first is now more recently used than second
+        service.imageContainsCat(third, 50);
+        Assertions.assertEquals(2, service.size());
+        Assertions.assertEquals(1, service.getEvictions());
+
+        asked.clear();
+        service.imageContainsCat(first, 50);
+        Assertions.assertEquals(List.of(), asked);
+        service.imageContainsCat(second, 50);
+        Assertions.assertEquals(List.of(second), asked);
+    }
+
+    @Test
+    public void batchSendsOnlyTheMissesAsOneSmallerBatch() {
+        List<List<BufferedImage>> batches = new ArrayList<>();
+        ImageServiceInterface batchingDelegate = new ImageServiceInterface() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                throw new AssertionError("batches should stay batches");
+            }
+
+            @Override
+            public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+                batches.add(images);
+                List<CatDetection> detections = new ArrayList<>();
+                for(BufferedImage image : images) {
+                    //frames are told apart by their width
+                    detections.add(new CatDetection(image.getWidth() % 2 == 0, image.getWidth()));
+                }
+                return detections;
+            }
+        };
+        CachingImageService service = new CachingImageService(batchingDelegate, 4, 8, 1, TimeUnit.MINUTES);
+        List<BufferedImage> frames = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            BufferedImage frame = new BufferedImage(64 + i, 48, BufferedImage.TYPE_INT_RGB);
+            frame.setData(noise(i).getData().createChild(0, 0, 64, 48, 0, 0, null));
+            frames.add(frame);
+        }
+
+        service.detectCats(List.of(frames.get(0), frames.get(2)), 50);
+        List<CatDetection> detections = service.detectCats(frames, 50);
+
+        Assertions.assertEquals(List.of(List.of(frames.get(0), frames.get(2)), List.of(frames.get(1), frames.get(3))), batches);
+        for(int i = 0; i < frames.size(); i++) {
+            Assertions.assertEquals(64 + i, detections.get(i).getConfidence(), 0);
+            Assertions.assertEquals(i % 2 == 0, detections.get(i).containsCat());
+        }
+        Assertions.assertEquals(2, service.getHits());
+        Assertions.assertEquals(4, service.getMisses());
+    }
+}
@@ -0,0 +1,88 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = 0;
+    private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+    //trips when half of at least 2 of the last 4 calls failed or were slow
+    private static CircuitBreaker breaker(Duration openDuration) {
+        return new CircuitBreaker(4, 2, 50f, Duration.ofSeconds(1), 50f, openDuration);
+    }
+
+    @Test
+    public void failuresOpenTheBreaker() {
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.record(FAST, false);
+        //one call is below the minimum
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.record(FAST, true);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void slowCallsOpenTheBreaker() {
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        breaker.record(SLOW, true);
+        breaker.record(SLOW, true);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void onlyTheWindowCounts() {
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        breaker.record(FAST, true);
+        breaker.record(FAST, true);
+        breaker.record(FAST, true);
+        breaker.record(FAST, false);
+        breaker.record(FAST, true);
+        //the window now holds true, true, false, true
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.record(FAST, false);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void successfulTrialClosesTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = breaker(Duration.ofMillis(20));
+        breaker.record(FAST, false);
+        breaker.record(FAST, false);
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(40);
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        //only one trial at a time
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        breaker.record(FAST, true);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        //the old failures are forgotten
+        breaker.record(FAST, false);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void failedOrSlowTrialReopensTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = breaker(Duration.ofMillis(20));
+        breaker.record(FAST, false);
+        breaker.record(FAST, false);
+
+        for(long trial : new long[] {FAST, SLOW}) {
+            Thread.sleep(40);
+            Assertions.assertTrue(breaker.tryAcquire());
+            breaker.record(trial, trial == SLOW);
+            Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            Assertions.assertFalse(breaker.tryAcquire());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FakeImageServiceTest {
+
+    private static List<BufferedImage> noiseFrames(int count) {
+        Random random = new Random(5);
+        List<BufferedImage> frames = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            BufferedImage frame = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+            for(int y = 0; y < frame.getHeight(); y++) {
+                for(int x = 0; x < frame.getWidth(); x++) {
+                    frame.setRGB(x, y, random.nextInt(0x1000000));
+                }
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    @Test
+    public void batchVerdictsDependOnlyOnTheImage() {
+        List<BufferedImage> frames = noiseFrames(20);
+        List<CatDetection> detections = new FakeImageService().detectCats(frames, 50);
+        Assertions.assertEquals(frames.size(), detections.size());
+
+        //another instance, with the frames in reverse order and one at a time, agrees
+        FakeImageService other = new FakeImageService();
+        for(int i = frames.size() - 1; i >= 0; i--) {
+            CatDetection single = other.detectCats(List.of(frames.get(i)), 50).get(0);
+            Assertions.assertEquals(detections.get(i).containsCat(), single.containsCat());
+            Assertions.assertEquals(detections.get(i).getConfidence(), single.getConfidence(), 0);
+        }
+    }
+
+    @Test
+    public void verdictFollowsTheThreshold() {
+        List<BufferedImage> frames = noiseFrames(50);
+        FakeImageService service = new FakeImageService();
+        boolean sawCat = false;
+        boolean sawNoCat = false;
+        for(float threshold : new float[] {0, 25, 50, 75, 100}) {
+            for(CatDetection detection : service.detectCats(frames, threshold)) {
+                Assertions.assertTrue(detection.getConfidence() >= 0 && detection.getConfidence() <= 100);
+                Assertions.assertEquals(detection.getConfidence() >= threshold, detection.containsCat());
+                sawCat |= detection.containsCat();
+                sawNoCat |= !detection.containsCat();
+            }
+        }
+        Assertions.assertTrue(sawCat);
+        Assertions.assertTrue(sawNoCat);
+    }
+
+    @Test
+    public void singleAndBatchVerdictsAgree() {
+        List<BufferedImage> frames = noiseFrames(50);
+        FakeImageService service = new FakeImageService();
+        for(float threshold : new float[] {0, 50, 100}) {
+            List<CatDetection> detections = service.detectCats(frames, threshold);
+            for(int i = 0; i < frames.size(); i++) {
+                Assertions.assertEquals(detections.get(i).containsCat(), service.imageContainsCat(frames.get(i), threshold));
+                Assertions.assertEquals(detections.get(i).containsCat(), new FakeImageService().imageContainsCat(frames.get(i), threshold));
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+public class JpegFrameEncoderTest {
+
+    private static BufferedImage frame(int width, int height, int rgb) {
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                frame.setRGB(x, y, (x + y) % 2 == 0 ? rgb : 0xFF000000);
+            }
+        }
+        return frame;
+    }
+
+    @Test
+    public void largeFramesAreScaledDown() throws IOException {
+        JpegFrameEncoder encoder = new JpegFrameEncoder(100, 0.8f);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoder.encode(frame(400, 200, 0xFFFF0000))));
+        Assertions.assertEquals(100, decoded.getWidth());
+        Assertions.assertEquals(50, decoded.getHeight());
+    }
+
+    @Test
+    public void reusedStreamEncodesEachFrameOnItsOwn() throws IOException {
+        JpegFrameEncoder encoder = new JpegFrameEncoder(100, 0.8f);
+        BufferedImage red = frame(64, 48, 0xFFFF0000);
+        BufferedImage blue = frame(32, 32, 0xFF0000FF);
+        byte[] first = encoder.encode(red);
+
+        //a frame in between must not leave anything behind in the thread's stream
+        encoder.encode(blue);
+        Assertions.assertArrayEquals(first, encoder.encode(red));
+        Assertions.assertArrayEquals(first, new JpegFrameEncoder(100, 0.8f).encode(red));
+        Assertions.assertEquals(32, ImageIO.read(new ByteArrayInputStream(encoder.encode(blue))).getWidth());
+    }
+}
@@ -0,0 +1,130 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class LocalCatDetectorTest {
+
+    private final LocalCatDetector detector = new LocalCatDetector();
+
+    private static BufferedImage blank() {
+        return new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static BufferedImage noise() {
+        BufferedImage image = blank();
+        Random random = new Random(3);
+        for(int y = 0; y < image.getHeight(); y++) {
+            for(int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    //a round head with two pointed ears, like the built-in template
+    private static BufferedImage catHead(int radius) {
+        BufferedImage image = blank();
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setColor(Color.DARK_GRAY);
+        int cx = 320;
+        int cy = 260;
+        g.fillOval(cx - radius, cy - radius, 2 * radius, 2 * radius);
+        int[] earY = {cy - radius / 3, cy - radius + radius / 6, cy - radius - radius / 2};
+        g.fillPolygon(new int[] {cx - radius, cx - radius / 4, cx - radius - radius / 6}, earY, 3);
+        g.fillPolygon(new int[] {cx + radius, cx + radius / 4, cx + radius + radius / 6}, earY, 3);
+        g.dispose();
+        return image;
+    }
+
+    private static byte[] weights(int count, float[] weights, float scale, float bias) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(count);
+        for(float weight : weights) {
+            out.writeFloat(weight);
+        }
+        out.writeFloat(scale);
+        out.writeFloat(bias);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void framesWithoutACatScoreLow() {
+        Assertions.assertTrue(detector.confidence(blank()) < 50);
+        Assertions.assertTrue(detector.confidence(noise()) < 50);
+        Assertions.assertFalse(detector.imageContainsCat(noise(), 50));
+    }
+
+    @Test
+    public void catHeadMatchesTheBuiltInTemplate() {
+        for(int radius : new int[] {40, 80, 120}) {
+            Assertions.assertTrue(detector.confidence(catHead(radius)) > 50, "radius " + radius);
+        }
+        Assertions.assertTrue(detector.imageContainsCat(catHead(80), 50));
+    }
+
+    @Test
+    public void frameStartedWhileAnotherIsBeingScoredKeepsItsOwnBuffers() {
+        //a single worker runs every band, so it is the thread that picks up the second frame
+        ForkJoinPool pool = new ForkJoinPool(1);
+        LocalCatDetector pooled = new LocalCatDetector(LocalCatDetector.defaultTemplate(), 60f, -6.5f, pool);
+        BufferedImage cat = catHead(80);
+        float expected = pooled.confidence(cat);
+        float noiseConfidence = pooled.confidence(noise());
+        float[] nested = new float[1];
+        //scores another frame from inside its own last row, as a pool thread waiting on other tasks might
+        BufferedImage interrupted = new BufferedImage(cat.getColorModel(), cat.copyData(null), false, null) {
+            private boolean started;
+
+            @Override
+            public int getRGB(int x, int y) {
+                if(!started && y >= getHeight() - 2) {
+                    started = true;
+                    nested[0] = pooled.confidence(noise());
+                }
+                return super.getRGB(x, y);
+            }
+        };
+
+        try {
+            Assertions.assertEquals(expected, pool.submit(() -> pooled.confidence(interrupted)).join(), 0.0);
+            Assertions.assertEquals(noiseConfidence, nested[0], 0.0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void loadedWeightsMatchTheOriginal() throws IOException {
+        float[] template = LocalCatDetector.defaultTemplate();
+        LocalCatDetector loaded = LocalCatDetector.load(new ByteArrayInputStream(weights(template.length, template, 60f, -6.5f)));
+        for(BufferedImage image : new BufferedImage[] {blank(), noise(), catHead(80)}) {
+            Assertions.assertEquals(detector.confidence(image), loaded.confidence(image), 0);
+        }
+    }
+
+    @Test
+    public void loadRejectsBadWeightCounts() throws IOException {
+        float[] template = LocalCatDetector.defaultTemplate();
+        for(int count : new int[] {-1, 0, template.length - 1, template.length + 1, Integer.MAX_VALUE}) {
+            byte[] bytes = weights(count, template, 60f, -6.5f);
+            Assertions.assertThrows(IOException.class, () -> LocalCatDetector.load(new ByteArrayInputStream(bytes)));
+        }
+        byte[] truncated = weights(template.length, new float[template.length / 2], 60f, -6.5f);
+        Assertions.assertThrows(EOFException.class, () -> LocalCatDetector.load(new ByteArrayInputStream(truncated)));
+    }
+}
@@ -0,0 +1,84 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+public class MotionDetectionPreFilterTest {
+
+    private static final int SIZE = 80;
+
+    private static BufferedImage gray(int brightness) {
+        return withStrip(brightness, 0, brightness);
+    }
+
+    //a frame of the given brightness with a vertical strip of another brightness along its left edge
+    private static BufferedImage withStrip(int brightness, int stripWidth, int stripBrightness) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        for(int y = 0; y < SIZE; y++) {
+            for(int x = 0; x < SIZE; x++) {
+                int value = x < stripWidth ? stripBrightness : brightness;
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void firstFrameIsAlwaysChanged() {
+        MotionDetectionPreFilter filter = new MotionDetectionPreFilter(8, 8, 25, 0.25f, 0.5f);
+        Assertions.assertTrue(filter.hasSignificantChange(gray(100)));
+        Assertions.assertFalse(filter.hasSignificantChange(gray(100)));
+
+        filter.reset();
+        Assertions.assertTrue(filter.hasSignificantChange(gray(100)));
+        Assertions.assertTrue(filter.hasSignificantChange(null));
+    }
+
+    @Test
+    public void brightnessChangeMustExceedThePixelThreshold() {
+        MotionDetectionPreFilter filter = new MotionDetectionPreFilter(8, 8, 25, 0.25f, 0.01f);
+        filter.hasSignificantChange(gray(100));
+        Assertions.assertFalse(filter.hasSignificantChange(gray(125)));
+        Assertions.assertTrue(filter.hasSignificantChange(gray(130)));
+        Assertions.assertTrue(filter.hasSignificantChange(gray(60)));
+    }
+
+    @Test
+    public void enoughCellsMustChange() {
+        //8x8 cells of 10x10 pixels, so a quarter of the frame is 16 cells, or two columns
+        MotionDetectionPreFilter filter = new MotionDetectionPreFilter(8, 8, 25, 0.25f, 0.01f);
+        filter.hasSignificantChange(gray(100));
+        Assertions.assertFalse(filter.hasSignificantChange(withStrip(100, 10, 255)));
+        Assertions.assertTrue(filter.hasSignificantChange(withStrip(100, 20, 255)));
+    }
+
+    @Test
+    public void backgroundAbsorbsGradualChanges() {
+        MotionDetectionPreFilter learning = new MotionDetectionPreFilter(8, 8, 25, 0.25f, 0.5f);
+        MotionDetectionPreFilter slow = new MotionDetectionPreFilter(8, 8, 25, 0.25f, 0.01f);
+        learning.hasSignificantChange(gray(100));
+        slow.hasSignificantChange(gray(100));
+
+        boolean learningChanged = false;
+        boolean slowChanged = false;
+        for(int brightness = 110; brightness <= 200; brightness += 10) {
+            learningChanged |= learning.hasSignificantChange(gray(brightness));
+            slowChanged |= slow.hasSignificantChange(gray(brightness));
+        }
+        Assertions.assertFalse(learningChanged);
+        Assertions.assertTrue(slowChanged);
+
+        //a sudden change still counts
+        Assertions.assertTrue(learning.hasSignificantChange(gray(100)));
+    }
+
+    @Test
+    public void objectThatStaysBecomesBackground() {
+        MotionDetectionPreFilter filter = new MotionDetectionPreFilter(8, 8, 25, 0.25f, 1f);
+        filter.hasSignificantChange(gray(100));
+        Assertions.assertTrue(filter.hasSignificantChange(withStrip(100, 40, 255)));
+        Assertions.assertFalse(filter.hasSignificantChange(withStrip(100, 40, 255)));
+    }
+}
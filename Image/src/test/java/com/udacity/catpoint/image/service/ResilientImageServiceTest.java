@@ -0,0 +1,172 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResilientImageServiceTest {
+
+    private static final BufferedImage IMAGE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+    private final AtomicInteger primaryCalls = new AtomicInteger();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final List<String> fallbackCalls = Collections.synchronizedList(new ArrayList<>());
+    private ResilientImageService service;
+
+    @AfterEach
+    void close() {
+        released.countDown();
+        if(service != null) {
+            service.close();
+        }
+    }
+
+    //never answers until the test is over
+    private final ImageServiceInterface hangingPrimary = (image, confidence) -> {
+        primaryCalls.incrementAndGet();
+        try {
+            released.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    };
+
+    private final ImageServiceInterface failingPrimary = (image, confidence) -> {
+        primaryCalls.incrementAndGet();
+        throw new IllegalStateException("primary failed");
+    };
+
+    private ImageServiceInterface fallback(String name, boolean containsCat) {
+        return (image, confidence) -> {
+            fallbackCalls.add(name);
+            return containsCat;
+        };
+    }
+
+    private ImageServiceInterface failingFallback(String name) {
+        return (image, confidence) -> {
+            fallbackCalls.add(name);
+            throw new IllegalStateException(name + " failed");
+        };
+    }
+
+    private static ImageServiceInterface unused() {
+        return (image, confidence) -> {
+            throw new AssertionError("should not have been called");
+        };
+    }
+
+    @Test
+    public void slowPrimaryTimesOutAndFallsBack() {
+        service = new ResilientImageService(hangingPrimary, List.of(fallback("local", false)),
+                Duration.ofMillis(100), Duration.ZERO, new CircuitBreaker());
+        long start = System.nanoTime();
+
+        Assertions.assertFalse(service.imageContainsCat(IMAGE, 50));
+        Assertions.assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+        Assertions.assertEquals(1, service.getTimeouts());
+        Assertions.assertEquals(1, service.getFallbackVerdicts());
+        Assertions.assertEquals(List.of("local"), fallbackCalls);
+    }
+
+    @Test
+    public void fastFailureIsRetriedByTheHedge() {
+        ImageServiceInterface failsOnce = (image, confidence) -> {
+            if(primaryCalls.incrementAndGet() == 1) {
+                throw new IllegalStateException("primary failed");
+            }
+            return true;
+        };
+        service = new ResilientImageService(failsOnce, List.of(unused()),
+                Duration.ofSeconds(5), Duration.ofMillis(20), new CircuitBreaker());
+
+        Assertions.assertTrue(service.imageContainsCat(IMAGE, 50));
+        Assertions.assertEquals(2, primaryCalls.get());
+        Assertions.assertEquals(1, service.getHedgedCalls());
+        Assertions.assertEquals(0, service.getFailures());
+        Assertions.assertEquals(0, service.getFallbackVerdicts());
+    }
+
+    @Test
+    public void breakerOpensShortCircuitsAndClosesAgain() throws InterruptedException {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        ImageServiceInterface primary = (image, confidence) -> {
+            primaryCalls.incrementAndGet();
+            if(failing.get()) {
+                throw new IllegalStateException("primary failed");
+            }
+            return true;
+        };
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 50f, Duration.ofSeconds(1), 50f, Duration.ofMillis(50));
+        service = new ResilientImageService(primary, List.of(fallback("local", false)),
+                Duration.ofSeconds(5), Duration.ZERO, breaker);
+
+        Assertions.assertFalse(service.imageContainsCat(IMAGE, 50));
+        Assertions.assertFalse(service.imageContainsCat(IMAGE, 50));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, service.getCircuitState());
+        Assertions.assertEquals(2, service.getFailures());
+
+        //open: the primary isn't called at all
+        Assertions.assertFalse(service.imageContainsCat(IMAGE, 50));
+        Assertions.assertEquals(2, primaryCalls.get());
+        Assertions.assertEquals(1, service.getShortCircuitedCalls());
+
+        //after the open time a trial call goes through, and its success closes the breaker
+        Thread.sleep(80);
+        failing.set(false);
+        Assertions.assertTrue(service.imageContainsCat(IMAGE, 50));
+        Assertions.assertEquals(3, primaryCalls.get());
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState());
+        Assertions.assertTrue(service.imageContainsCat(IMAGE, 50));
+        Assertions.assertEquals(4, primaryCalls.get());
+    }
+
+    @Test
+    public void fallbacksAreAskedInOrder() {
+        service = new ResilientImageService(failingPrimary, List.of(failingFallback("first"), fallback("second", true), unused()),
+                Duration.ofSeconds(5), Duration.ZERO, new CircuitBreaker());
+
+        Assertions.assertTrue(service.imageContainsCat(IMAGE, 50));
+        List<CatDetection> detections = service.detectCats(List.of(IMAGE, IMAGE), 50);
+        Assertions.assertTrue(detections.get(0).containsCat());
+        Assertions.assertTrue(detections.get(1).isKnown());
+        Assertions.assertEquals(List.of("first", "second", "first", "second", "second"), fallbackCalls);
+        Assertions.assertEquals(2, service.getFallbackVerdicts());
+        Assertions.assertEquals(0, service.getUnansweredCalls());
+    }
+
+    @Test
+    public void unansweredImagesAreUnknownRatherThanAnotherCamerasVerdict() {
+        AtomicBoolean fallbackWorks = new AtomicBoolean(true);
+        ImageServiceInterface fallback = (image, confidence) -> {
+            if(!fallbackWorks.get()) {
+                throw new IllegalStateException("fallback failed");
+            }
+            return true;
+        };
+        service = new ResilientImageService(failingPrimary, List.of(fallback),
+                Duration.ofSeconds(5), Duration.ZERO, new CircuitBreaker());
+        Assertions.assertTrue(service.detectCats(List.of(IMAGE), 50).get(0).containsCat());
+
+        fallbackWorks.set(false);
+        List<CatDetection> detections = service.detectCats(List.of(IMAGE, IMAGE), 50);
+        Assertions.assertEquals(2, detections.size());
+        for(CatDetection detection : detections) {
+            Assertions.assertFalse(detection.isKnown());
+            Assertions.assertFalse(detection.containsCat());
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> service.imageContainsCat(IMAGE, 50));
+        Assertions.assertEquals(2, service.getUnansweredCalls());
+        Assertions.assertEquals(List.of(), service.detectCats(List.of(), 50));
+    }
+}
@@ -1,11 +1,38 @@
 package com.udacity.catpoint.security.application;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * This is the main class that launches the application.
+ *
+ * With no arguments it opens the Swing GUI. With {@code --headless} it instead runs a
+ * {@link CatpointServer} that takes sensor events from the network:
+ * {@code --headless [--port N] [--data DIR] [--register-unknown]}
  */
 public class CatpointApp {
-    public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
-        gui.setVisible(true);
+    public static void main(String[] args) throws Exception {
+        boolean headless = false;
+        int port = CatpointServer.DEFAULT_PORT;
+        Path dataDirectory = Paths.get("catpoint-data");
+        boolean registerUnknownSensors = false;
+        for(int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--headless": headless = true; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--data": dataDirectory = Paths.get(args[++i]); break;
+                case "--register-unknown": registerUnknownSensors = true; break;
+                default: throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if(headless) {
+            CatpointServer server = new CatpointServer(dataDirectory, port, registerUnknownSensors);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close, "catpoint-shutdown"));
+            server.awaitClose();
+        } else {
+            CatpointGui gui = new CatpointGui();
+            gui.setVisible(true);
+        }
     }
 }
@@ -4,10 +4,15 @@ import com.udacity.catpoint.image.service.FakeImageService;
 import com.udacity.catpoint.image.service.ImageServiceInterface;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.metrics.InstrumentedSecurityRepository;
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import com.udacity.catpoint.security.service.ImageAnalysisPipeline;
 import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -16,9 +21,10 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+    private MetricsRegistry metrics = MetricsRegistry.fromSystemProperties();
+    private SecurityRepository securityRepository = createSecurityRepository();
     private ImageServiceInterface imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
+    private SecurityService securityService = createSecurityService();
     private DisplayPanel displayPanel = new DisplayPanel(securityService);
     private ControlPanel controlPanel = new ControlPanel(securityService);
     private SensorPanel sensorPanel = new SensorPanel(securityService);
@@ -29,6 +35,12 @@ public class CatpointGui extends JFrame {
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                securityRepository.flush();
+            }
+        });
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
@@ -40,4 +52,20 @@ public class CatpointGui extends JFrame {
         getContentPane().add(mainPanel);
 
     }
+
+    private SecurityRepository createSecurityRepository() {
+        //sensors load and writes are coalesced in the background, so make sure they get flushed when the window closes
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(500, 64, true);
+        repository.setMetrics(metrics);
+        return new InstrumentedSecurityRepository(repository, metrics);
+    }
+
+    private SecurityService createSecurityService() {
+        SecurityService service = new SecurityService(securityRepository, imageService);
+        service.setMetrics(metrics);
+        //analyze pictures off the EDT. Results can be applied there too, since the panels receive
+        //their status updates on the EDT through their own listener executors
+        service.setImageAnalysisPipeline(new ImageAnalysisPipeline(2, 4, true, Runnable::run));
+        return service;
+    }
 }
@@ -0,0 +1,119 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageServiceInterface;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.JournalSecurityRepositoryImpl;
+import com.udacity.catpoint.security.metrics.InstrumentedSecurityRepository;
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless counterpart of {@link CatpointGui}. Constructs the same service, backed by a journal in
+ * a data directory, and feeds it from a {@link SensorEventServer} instead of the sensor panel.
+ * Alarm changes and event throughput are written to the log. Run with {@code -Dcatpoint.metrics=true}
+ * for detailed metrics over JMX.
+ */
+public class CatpointServer implements StatusListener {
+
+    public static final int DEFAULT_PORT = 7070;
+
+    private static final System.Logger log = System.getLogger(CatpointServer.class.getName());
+    private static final long STATS_INTERVAL_SECONDS = 10;
+
+    private final JournalSecurityRepositoryImpl securityRepository;
+    private final ImageServiceInterface imageService = new FakeImageService();
+    private final MetricsRegistry metrics = MetricsRegistry.fromSystemProperties();
+    private final SecurityService securityService;
+    private final SensorEventServer eventServer;
+    private final ScheduledExecutorService statsReporter;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private long lastEventsReceived;
+
+    /**
+     * @param dataDirectory Where the journal is kept. Created if missing.
+     * @param port TCP and UDP port for sensor events
+     * @param registerUnknownSensors Whether events from unknown sensors add them
+     */
+    public CatpointServer(Path dataDirectory, int port, boolean registerUnknownSensors) throws IOException {
+        Files.createDirectories(dataDirectory);
+        securityRepository = new JournalSecurityRepositoryImpl(dataDirectory);
+        securityService = new SecurityService(new InstrumentedSecurityRepository(securityRepository, metrics), imageService);
+        securityService.setMetrics(metrics);
+        securityService.addStatusListener(this);
+        eventServer = new SensorEventServer(securityService, port, registerUnknownSensors);
+
+        statsReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catpoint-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        statsReporter.scheduleAtFixedRate(this::reportStats, STATS_INTERVAL_SECONDS, STATS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        log.log(System.Logger.Level.INFO, "Listening for sensor events on port " + eventServer.getPort()
+                + " with " + securityService.getSensors().size() + " sensors, " + securityService.getArmingStatus());
+    }
+
+    public SecurityService getSecurityService() {
+        return securityService;
+    }
+
+    public int getPort() {
+        return eventServer.getPort();
+    }
+
+    private void reportStats() {
+        long received = eventServer.getEventsReceived();
+        log.log(System.Logger.Level.INFO, String.format("%d events/s, %d received, %d stale, %d batches, %d failed batches, %d active sensors, %s",
+                (received - lastEventsReceived) / STATS_INTERVAL_SECONDS, received, eventServer.getStaleEvents(),
+                eventServer.getBatchesApplied(), eventServer.getFailedBatches(), securityService.getActiveSensorCount(), securityService.getAlarmStatus()));
+        lastEventsReceived = received;
+    }
+
+    /**
+     * Blocks until the server has been closed.
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stops taking events and closes the journal, leaving a snapshot for a quick restart.
+     */
+    public synchronized void close() {
+        if(closed.getCount() == 0) {
+            return;
+        }
+        statsReporter.shutdownNow();
+        try {
+            eventServer.close();
+        } catch (IOException ioe) {
+            log.log(System.Logger.Level.WARNING, "Could not close sensor event server", ioe);
+        }
+        securityRepository.close();
+        closed.countDown();
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        log.log(System.Logger.Level.INFO, "Alarm status: " + status);
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        log.log(System.Logger.Level.INFO, "Cat detected: " + catDetected);
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        //too frequent to log; covered by the periodic stats
+    }
+}
@@ -11,11 +11,16 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
  */
 public class ImagePanel extends JPanel implements StatusListener {
+    private static final System.Logger log = System.getLogger(ImagePanel.class.getName());
+
     private SecurityService securityService;
 
     private JLabel cameraHeader;
@@ -29,7 +34,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        securityService.addStatusListener(this, SwingUtilities::invokeLater);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
@@ -59,10 +64,22 @@ public class ImagePanel extends JPanel implements StatusListener {
             repaint();
         });
 
-        //button that sends the image to the image service
+        //button that sends the image to the image service. The scan runs in the background so a
+        //slow image service can't freeze the window
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            securityService.processImageAsync(currentCameraImage).whenComplete((cat, error) -> {
+                if(error == null || error instanceof CancellationException) {
+                    //a newer scan took over
+                    return;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if(cause instanceof RejectedExecutionException) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Still busy scanning, try again shortly."));
+                } else {
+                    log.log(System.Logger.Level.WARNING, "Could not scan the camera image", cause);
+                }
+            });
         });
 
         add(cameraHeader, "span 3, wrap");
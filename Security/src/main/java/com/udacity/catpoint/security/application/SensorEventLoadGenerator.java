@@ -0,0 +1,118 @@
+package com.udacity.catpoint.security.application;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load-generator client for {@link SensorEventServer}. Opens a number of connections, each
+ * pretending to be its own group of devices, and sends random sensor events as fast as it can or
+ * at a target rate. Every sensor is only sent from one connection, as a real device would be. Run the server with {@code --register-unknown} so the generated sensors exist.
+ *
+ * Usage: {@code SensorEventLoadGenerator host port connections sensors seconds [eventsPerSecond] [--udp]}
+ */
+public class SensorEventLoadGenerator {
+
+    private static final int EVENTS_PER_WRITE = 512;
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 5 || Integer.parseInt(args[3]) < Integer.parseInt(args[2])) {
+            System.err.println("Usage: SensorEventLoadGenerator host port connections sensors seconds [eventsPerSecond] [--udp]");
+            System.err.println("There must be at least as many sensors as connections.");
+            System.exit(1);
+        }
+        InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        int connections = Integer.parseInt(args[2]);
+        int sensors = Integer.parseInt(args[3]);
+        long seconds = Long.parseLong(args[4]);
+        long eventsPerSecond = args.length > 5 && !args[5].equals("--udp") ? Long.parseLong(args[5]) : 0;
+        boolean udp = args[args.length - 1].equals("--udp");
+
+        UUID[] sensorIds = new UUID[sensors];
+        for(int i = 0; i < sensors; i++) {
+            sensorIds[i] = UUID.randomUUID();
+        }
+
+        LongAdder sent = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long ratePerConnection = eventsPerSecond / connections;
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < connections; i++) {
+            UUID[] devices = new UUID[(sensors - i + connections - 1) / connections];
+            for(int d = 0; d < devices.length; d++) {
+                devices[d] = sensorIds[i + d * connections];
+            }
+            Thread t = new Thread(() -> {
+                try {
+                    send(address, udp, devices, deadline, ratePerConnection, sent);
+                } catch (IOException ioe) {
+                    System.err.println("Connection failed: " + ioe);
+                }
+            }, "load-generator-" + i);
+            t.start();
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+        long lastSent = 0;
+        while(System.nanoTime() < deadline) {
+            Thread.sleep(1000);
+            long total = sent.sum();
+            System.out.printf("%d events/s%n", total - lastSent);
+            lastSent = total;
+        }
+        for(Thread t : threads) {
+            t.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Sent %d events over %d %s connections in %.1fs, %.0f events/s%n",
+                sent.sum(), connections, udp ? "UDP" : "TCP", elapsed, sent.sum() / elapsed);
+    }
+
+    private static void send(InetSocketAddress address, boolean udp, UUID[] sensorIds, long deadline,
+                             long eventsPerSecond, LongAdder sent) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EVENTS_PER_WRITE * SensorEventServer.EVENT_SIZE);
+        long nanosPerWrite = eventsPerSecond > 0 ? EVENTS_PER_WRITE * 1_000_000_000L / eventsPerSecond : 0;
+        long nextWrite = System.nanoTime();
+
+        try (WritableByteChannel channel = udp ? DatagramChannel.open().connect(address) : SocketChannel.open(address)) {
+            while(System.nanoTime() < deadline) {
+                buffer.clear();
+                long now = System.currentTimeMillis();
+                for(int i = 0; i < EVENTS_PER_WRITE; i++) {
+                    UUID sensorId = sensorIds[random.nextInt(sensorIds.length)];
+                    buffer.putLong(sensorId.getMostSignificantBits());
+                    buffer.putLong(sensorId.getLeastSignificantBits());
+                    buffer.put((byte) (random.nextBoolean() ? 1 : 0));
+                    buffer.putLong(now);
+                }
+                buffer.flip();
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                sent.add(EVENTS_PER_WRITE);
+
+                if(nanosPerWrite > 0) {
+                    nextWrite += nanosPerWrite;
+                    long wait = nextWrite - System.nanoTime();
+                    if(wait > 0) {
+                        try {
+                            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accepts sensor events from devices over the network and feeds them to the SecurityService.
+ * A single thread runs a non-blocking selector over a TCP listener, every TCP connection and a
+ * UDP socket on the same port, so thousands of devices can stay connected without a thread each.
+ * Every connection is read through one direct buffer owned by that thread; a connection only holds
+ * a small heap buffer of its own while part of an event is still to come.
+ *
+ * Each event is a fixed {@value #EVENT_SIZE}-byte big-endian record: the sensor UUID as two longs,
+ * one byte that is non-zero for active, and the device's timestamp in epoch milliseconds. A UDP
+ * datagram may carry any number of whole records. Events older than the last one applied for the
+ * same sensor are discarded, since UDP may reorder them. Events for sensors the service doesn't know
+ * are dropped unless unknown sensors are registered.
+ *
+ * Everything decoded in one pass over the ready channels is applied as a single batch through
+ * {@link SecurityService#changeSensorActivationStatuses(Map)}. A batch holds at most one event per
+ * sensor, so a second event for a sensor first applies the batch so far; every event goes through
+ * the alarm rules in arrival order.
+ *
+ * A connection that fails is closed on its own and a batch the service rejects is logged and
+ * dropped; neither stops the server.
+ */
+public class SensorEventServer implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(SensorEventServer.class.getName());
+
+    public static final int EVENT_SIZE = 2 * Long.BYTES + Byte.BYTES + Long.BYTES;
+
+    private static final int READ_BUFFER_SIZE = EVENT_SIZE * 2048;
+
+    //timestamps of removed sensors are forgotten once the map has grown this much beyond the live sensors
+    private static final int MIN_TIMESTAMPS_TO_PRUNE = 1024;
+
+    private final SecurityService securityService;
+    private final boolean registerUnknownSensors;
+    private final Selector selector;
+    private final ServerSocketChannel tcpChannel;
+    private final DatagramChannel udpChannel;
+    private final ByteBuffer datagram = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    //only touched by the selector thread
+    private final Map<UUID, Boolean> batch = new LinkedHashMap<>();
+    private final Map<UUID, Long> lastTimestamps = new HashMap<>();
+    private int timestampsToPrune = MIN_TIMESTAMPS_TO_PRUNE;
+
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder staleEvents = new LongAdder();
+    private final LongAdder batchesApplied = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    /**
+     * Binds the listeners and starts accepting events.
+     * @param securityService Service that receives the events
+     * @param port TCP and UDP port to listen on. 0 picks a free port.
+     * @param registerUnknownSensors Whether an event from an unknown sensor id adds it as a motion sensor
+     *                               instead of being ignored
+     */
+    public SensorEventServer(SecurityService securityService, int port, boolean registerUnknownSensors) throws IOException {
+        this.securityService = securityService;
+        this.registerUnknownSensors = registerUnknownSensors;
+        this.selector = Selector.open();
+
+        tcpChannel = ServerSocketChannel.open();
+        tcpChannel.bind(new InetSocketAddress(port));
+        tcpChannel.configureBlocking(false);
+        tcpChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        int boundPort = ((InetSocketAddress) tcpChannel.getLocalAddress()).getPort();
+        udpChannel = DatagramChannel.open();
+        udpChannel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+        udpChannel.bind(new InetSocketAddress(boundPort));
+        udpChannel.configureBlocking(false);
+        udpChannel.register(selector, SelectionKey.OP_READ);
+
+        selectorThread = new Thread(this::run, "sensor-event-server");
+        selectorThread.start();
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) tcpChannel.getLocalAddress()).getPort();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived.sum();
+    }
+
+    public long getStaleEvents() {
+        return staleEvents.sum();
+    }
+
+    public long getBatchesApplied() {
+        return batchesApplied.sum();
+    }
+
+    /**
+     * @return Batches the service threw on. Their events are dropped.
+     */
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * @return false once the server has been closed or its selector has failed
+     */
+    public boolean isRunning() {
+        return running && selectorThread.isAlive();
+    }
+
+    private void run() {
+        while(running) {
+            try {
+                selector.select();
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException ioe) {
+                if(running) {
+                    log.log(System.Logger.Level.ERROR, "Sensor event server stopped, selector failed", ioe);
+                    running = false;
+                }
+                return;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if(!key.isValid()) {
+                    continue;
+                }
+                handle(key);
+            }
+            applyBatch();
+        }
+    }
+
+    /**
+     * Internal method that serves one ready channel. A failure is logged and only affects that channel.
+     */
+    private void handle(SelectionKey key) {
+        try {
+            if(key.isAcceptable()) {
+                accept();
+            } else if(key.channel() == udpChannel) {
+                receiveDatagrams();
+            } else if(key.isReadable()) {
+                readConnection(key);
+            }
+        } catch (IOException | RuntimeException e) {
+            if(key.channel() == tcpChannel || key.channel() == udpChannel) {
+                log.log(System.Logger.Level.WARNING, "Could not serve " + key.channel(), e);
+            } else {
+                log.log(System.Logger.Level.WARNING, "Closing sensor connection after failure", e);
+                closeConnection(key);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel connection;
+        while((connection = tcpChannel.accept()) != null) {
+            connection.configureBlocking(false);
+            connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connection.register(selector, SelectionKey.OP_READ);
+        }
+    }
+
+    private void readConnection(SelectionKey key) {
+        SocketChannel connection = (SocketChannel) key.channel();
+        //the start of an event from the last read, if it ended partway through one
+        ByteBuffer partial = (ByteBuffer) key.attachment();
+        readBuffer.clear();
+        if(partial != null) {
+            readBuffer.put(partial);
+        }
+        try {
+            int read = connection.read(readBuffer);
+            readBuffer.flip();
+            decodeEvents(readBuffer);
+            if(readBuffer.hasRemaining()) {
+                ByteBuffer leftover = partial != null ? partial.clear() : ByteBuffer.allocate(EVENT_SIZE);
+                key.attach(leftover.put(readBuffer).flip());
+            } else {
+                key.attach(null);
+            }
+            if(read < 0) {
+                closeConnection(key);
+            }
+        } catch (IOException ioe) {
+            closeConnection(key);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            //nothing more to do with a connection that won't close
+        }
+    }
+
+    private void receiveDatagrams() throws IOException {
+        datagram.clear();
+        while(udpChannel.receive(datagram) != null) {
+            datagram.flip();
+            decodeEvents(datagram);
+            datagram.clear();
+        }
+    }
+
+    private void decodeEvents(ByteBuffer buffer) {
+        while(buffer.remaining() >= EVENT_SIZE) {
+            UUID sensorId = new UUID(buffer.getLong(), buffer.getLong());
+            boolean active = buffer.get() != 0;
+            long timestamp = buffer.getLong();
+            eventsReceived.increment();
+
+            Long last = lastTimestamps.get(sensorId);
+            if(last != null && timestamp < last) {
+                staleEvents.increment();
+                continue;
+            }
+            if(!registerUnknownSensors && securityService.getSensor(sensorId) == null) {
+                lastTimestamps.remove(sensorId); //removed since its last event
+                continue;
+            }
+            if(batch.containsKey(sensorId)) {
+                applyBatch();
+            }
+            lastTimestamps.put(sensorId, timestamp);
+            batch.put(sensorId, active);
+        }
+    }
+
+    private void applyBatch() {
+        if(batch.isEmpty()) {
+            return;
+        }
+        try {
+            if(registerUnknownSensors) {
+                batch.keySet().forEach(sensorId -> {
+                    if(securityService.getSensor(sensorId) == null) {
+                        Sensor sensor = new Sensor(sensorId.toString().substring(0, 8), SensorType.MOTION);
+                        sensor.setSensorId(sensorId);
+                        securityService.addSensor(sensor);
+                    }
+                });
+            }
+            securityService.changeSensorActivationStatuses(batch);
+            batchesApplied.increment();
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            log.log(System.Logger.Level.ERROR, "Dropped a batch of " + batch.size() + " sensor events", e);
+        } finally {
+            batch.clear();
+        }
+        if(lastTimestamps.size() >= timestampsToPrune) {
+            pruneTimestamps();
+        }
+    }
+
+    /**
+     * Internal method that forgets the timestamps of sensors that have been removed, so the map stays
+     * in proportion to the sensors that exist.
+     */
+    private void pruneTimestamps() {
+        lastTimestamps.keySet().removeIf(sensorId -> securityService.getSensor(sensorId) == null);
+        timestampsToPrune = Math.max(MIN_TIMESTAMPS_TO_PRUNE, 2 * lastTimestamps.size());
+    }
+
+    /**
+     * Stops accepting events and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for(SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+}
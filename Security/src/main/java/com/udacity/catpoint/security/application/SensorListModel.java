@@ -0,0 +1,171 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Table model over the sensors in display order. Rows show what each sensor looked like at the last
+ * {@link #refresh(List)}, which compares against that and tells the table only about the rows that
+ * changed, so the table repaints just those rows if they are visible.
+ *
+ * Refreshes only happen on frames in which some sensor changed, and then compare every row: a few
+ * array reads per sensor, well below what painting costs, and it needs nothing from the service
+ * beyond the sorted list it already keeps.
+ */
+class SensorListModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int ACTIVE_COLUMN = 2;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Active"};
+
+    private final BiConsumer<Sensor, Boolean> activationChanger;
+
+    private List<Sensor> sensors = List.of();
+    private String[] names = new String[0];
+    private SensorType[] sensorTypes = new SensorType[0];
+    private boolean[] active = new boolean[0];
+
+    /**
+     * @param activationChanger Called when the active checkbox of a row is clicked
+     */
+    SensorListModel(BiConsumer<Sensor, Boolean> activationChanger) {
+        this.activationChanger = activationChanger;
+    }
+
+    /**
+     * Brings the rows up to date with the given sensors. If they are the same sensors in the same order,
+     * only rows whose name, type or active state changed are reported; otherwise the whole table is.
+     * @param current Sensors in display order
+     * @return Whether rows were added, removed or reordered, which clears the table's selection
+     */
+    boolean refresh(List<Sensor> current) {
+        if(!sameRows(current)) {
+            sensors = current;
+            names = new String[current.size()];
+            sensorTypes = new SensorType[current.size()];
+            active = new boolean[current.size()];
+            for(int row = 0; row < current.size(); row++) {
+                record(row, current.get(row));
+            }
+            fireTableDataChanged();
+            return true;
+        }
+
+        sensors = current;
+        int firstChanged = -1;
+        for(int row = 0; row < current.size(); row++) {
+            Sensor sensor = current.get(row);
+            boolean changed = !Objects.equals(sensor.getName(), names[row]) || sensor.getSensorType() != sensorTypes[row]
+                    || sensor.getActive() != active[row];
+            if(changed) {
+                record(row, sensor);
+                if(firstChanged < 0) {
+                    firstChanged = row;
+                }
+            } else if(firstChanged >= 0) {
+                fireTableRowsUpdated(firstChanged, row - 1);
+                firstChanged = -1;
+            }
+        }
+        if(firstChanged >= 0) {
+            fireTableRowsUpdated(firstChanged, current.size() - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Selects the rows of the given sensors, for instance to restore a selection that a
+     * {@link #refresh(List)} cleared. Sensors that are no longer listed are ignored.
+     */
+    void selectRows(ListSelectionModel selection, Set<Sensor> selected) {
+        if(selected.isEmpty()) {
+            return;
+        }
+        selection.setValueIsAdjusting(true);
+        for(int row = 0; row < sensors.size(); row++) {
+            if(selected.contains(sensors.get(row))) {
+                selection.addSelectionInterval(row, row);
+            }
+        }
+        selection.setValueIsAdjusting(false);
+    }
+
+    private boolean sameRows(List<Sensor> current) {
+        if(current == sensors) {
+            return true;
+        }
+        if(current.size() != sensors.size()) {
+            return false;
+        }
+        for(int row = 0; row < current.size(); row++) {
+            if(!current.get(row).equals(sensors.get(row))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void record(int row, Sensor sensor) {
+        names[row] = sensor.getName();
+        sensorTypes[row] = sensor.getSensorType();
+        active[row] = sensor.getActive();
+    }
+
+    Sensor getSensorAt(int row) {
+        return sensors.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return sensors.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case TYPE_COLUMN: return SensorType.class;
+            case ACTIVE_COLUMN: return Boolean.class;
+            default: return String.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case TYPE_COLUMN: return sensorTypes[row];
+            case ACTIVE_COLUMN: return active[row];
+            default: return names[row];
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == ACTIVE_COLUMN;
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if(column == ACTIVE_COLUMN) {
+            activationChanger.accept(sensors.get(row), (Boolean) value);
+        }
+    }
+}
@@ -8,13 +8,25 @@ import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.*;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ *
+ * Sensors are listed in a table, which only renders the rows in view. Sensor changes are applied to
+ * it at most once per display refresh, and only rows that changed are repainted.
  */
 public class SensorPanel extends JPanel implements StatusListener {
 
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
     private SecurityService securityService;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
@@ -24,14 +36,25 @@ public class SensorPanel extends JPanel implements StatusListener {
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private JLabel sensorCountLabel = new JLabel("Loading sensors...");
+    private JButton activateButton = new JButton("Activate");
+    private JButton deactivateButton = new JButton("Deactivate");
+    private JButton removeButton = new JButton("Remove Sensor");
+
+    private SensorListModel sensorListModel = new SensorListModel(this::setSensorActivity);
+    private JTable sensorTable = new JTable(sensorListModel);
+    //coalesces sensor changes into one table update per frame
+    private Timer refreshTimer = new Timer(1000 / refreshRate(), e -> updateSensorList());
+
     private JPanel newSensorPanel;
 
+    private static final System.Logger log = System.getLogger(SensorPanel.class.getName());
+
     public SensorPanel(SecurityService securityService) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        securityService.addStatusListener(this, SwingUtilities::invokeLater);
 
         panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
@@ -39,14 +62,33 @@ public class SensorPanel extends JPanel implements StatusListener {
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
-
-        updateSensorList(sensorListPanel);
+        refreshTimer.setRepeats(false);
+
+        sensorTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        sensorTable.setFillsViewportHeight(true);
+        sensorTable.setPreferredScrollableViewportSize(new Dimension(500, 300));
+        sensorTable.getColumnModel().getColumn(SensorListModel.ACTIVE_COLUMN).setMaxWidth(60);
+        sensorTable.getSelectionModel().addListSelectionListener(e -> updateButtons());
+        activateButton.addActionListener(e -> setSelectedSensorsActivity(true));
+        deactivateButton.addActionListener(e -> setSelectedSensorsActivity(false));
+        removeButton.addActionListener(e -> removeSelectedSensors());
+        updateButtons();
+
+        if(securityService.sensorsLoaded().isDone()) {
+            sensorsLoaded(null);
+        } else {
+            //the repository is still loading sensors in the background, list them once it's done
+            addNewSensorButton.setEnabled(false);
+            securityService.sensorsLoaded().whenComplete((done, failure) -> SwingUtilities.invokeLater(() -> sensorsLoaded(failure)));
+        }
 
         add(panelLabel, "wrap");
-        add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(newSensorPanel, "span, wrap");
+        add(sensorCountLabel, "wrap");
+        add(new JScrollPane(sensorTable), "span, wrap");
+        add(activateButton, "split 3");
+        add(deactivateButton);
+        add(removeButton);
     }
 
     /**
@@ -64,60 +106,115 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * @return Frames per second of the screen, or 60 if it can't be told
+     */
+    private static int refreshRate() {
+        if(GraphicsEnvironment.isHeadless()) {
+            return DEFAULT_REFRESH_RATE;
+        }
+        int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDisplayMode().getRefreshRate();
+        return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : refreshRate;
+    }
+
+    /**
+     * Lists the sensors once the repository has loaded them, or says why it couldn't.
+     * @param failure What stopped the load, or null if it finished
+     */
+    private void sensorsLoaded(Throwable failure) {
+        if(failure != null) {
+            log.log(System.Logger.Level.ERROR, "Sensors could not be loaded", failure);
+            sensorCountLabel.setText("Sensors could not be loaded");
+            return;
+        }
+        addNewSensorButton.setEnabled(true);
+        updateSensorList();
+    }
+
+    /**
+     * Updates the table at the end of the current frame, together with any other changes made until then.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
-        });
-
-        repaint();
-        revalidate();
+    private void scheduleSensorListUpdate() {
+        if(!refreshTimer.isRunning()) {
+            refreshTimer.start();
+        }
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Brings the table up to date with the current sensors, keeping the selected sensors selected even
+     * if their rows moved.
+     */
+    private void updateSensorList() {
+        if(!securityService.sensorsLoaded().isDone() || securityService.sensorsLoaded().isCompletedExceptionally()) {
+            return; //listed once loading finishes
+        }
+        Set<Sensor> selected = new HashSet<>(selectedSensors());
+        List<Sensor> sensors = securityService.getSortedSensors();
+        if(sensorListModel.refresh(sensors)) {
+            sensorListModel.selectRows(sensorTable.getSelectionModel(), selected);
+        }
+        sensorCountLabel.setText(sensors.size() + (sensors.size() == 1 ? " sensor" : " sensors"));
+    }
+
+    private List<Sensor> selectedSensors() {
+        int[] rows = sensorTable.getSelectedRows();
+        Sensor[] sensors = new Sensor[rows.length];
+        for(int i = 0; i < rows.length; i++) {
+            sensors[i] = sensorListModel.getSensorAt(rows[i]);
+        }
+        return List.of(sensors);
+    }
+
+    private void updateButtons() {
+        boolean anySelected = sensorTable.getSelectedRowCount() > 0;
+        activateButton.setEnabled(anySelected);
+        deactivateButton.setEnabled(anySelected);
+        removeButton.setEnabled(anySelected);
+    }
+
+    /**
+     * Asks the securityService to change a sensor activation status and then updates the sensor list
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        scheduleSensorListUpdate();
+    }
+
+    /**
+     * Changes the activation status of every selected sensor in one batch
+     * @param isActive The sensors' new activation status
+     */
+    private void setSelectedSensorsActivity(boolean isActive) {
+        Map<UUID, Boolean> activations = new LinkedHashMap<>();
+        selectedSensors().forEach(sensor -> activations.put(sensor.getSensorId(), isActive));
+        securityService.changeSensorActivationStatuses(activations);
+        scheduleSensorListUpdate();
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then updates the sensor list
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
+        if(!securityService.sensorsLoaded().isDone()) {
+            return; //the button is disabled until then; counting the sensors before that would block the EDT
+        }
         if(securityService.getSensors().size() < 4) {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
+            scheduleSensorListUpdate();
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
-     * @param sensor The sensor to remove
+     * Removes the selected sensors from the securityService and then updates the sensor list
      */
-    private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+    private void removeSelectedSensors() {
+        selectedSensors().forEach(securityService::removeSensor);
+        scheduleSensorListUpdate();
     }
 
     @Override
@@ -132,6 +229,6 @@ public class SensorPanel extends JPanel implements StatusListener {
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        scheduleSensorListUpdate();
     }
 }
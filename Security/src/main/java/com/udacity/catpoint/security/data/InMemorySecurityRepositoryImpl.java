@@ -0,0 +1,87 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository that keeps all state in memory and never persists it. Useful for tests and for
+ * running systems whose state lives somewhere else.
+ */
+public class InMemorySecurityRepositoryImpl implements SecurityRepository {
+
+    private final IndexedSensorSet sensors;
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    public InMemorySecurityRepositoryImpl() {
+        this(new SensorStore());
+    }
+
+    /**
+     * @param sensors Where the sensors are kept, for example a {@link SensorTable} for large fleets
+     */
+    public InMemorySecurityRepositoryImpl(IndexedSensorSet sensors) {
+        this.sensors = sensors;
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        sensors.update(sensor);
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this.sensors::update);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return sensors.activeCount(sensorType);
+    }
+}
@@ -0,0 +1,41 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Set of sensors that can also find a sensor by id and keeps the views the service and the sensor
+ * panel ask for, so they don't have to scan or sort the whole set.
+ */
+public interface IndexedSensorSet extends Set<Sensor> {
+
+    /**
+     * @return The sensor with the given id, or null if there isn't one
+     */
+    Sensor get(UUID sensorId);
+
+    /**
+     * Stores the current state of the sensor, adding it if it isn't known yet.
+     */
+    void update(Sensor sensor);
+
+    /**
+     * @return All sensors in their natural display order. The list is shared and must not be modified.
+     */
+    List<Sensor> sortedByName();
+
+    /**
+     * @return All sensors of the given type. The set is shared and must not be modified.
+     */
+    Set<Sensor> byType(SensorType sensorType);
+
+    /**
+     * @return A live, read-only view of the sensors that are currently active
+     */
+    Set<Sensor> active();
+
+    int activeCount();
+
+    int activeCount(SensorType sensorType);
+}
@@ -0,0 +1,428 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Repository that stores state as an append-only journal of compact binary records in a
+ * memory-mapped log file. Every change is a single O(1) append rather than a rewrite of the
+ * whole sensor set. Every so often the current state is written to a snapshot file and the
+ * log is cleared, so startup only has to load the snapshot and replay the tail of the log.
+ *
+ * Each log record is laid out as [int payload length][byte record type][payload][int crc32].
+ * Replay stops at the first record that is incomplete or fails its checksum, which is what a
+ * crash in the middle of an append leaves behind; the log is then continued from that point.
+ * Records are idempotent, so replaying a log against a snapshot that already contains it is harmless.
+ * Snapshots are written with the {@link SensorSnapshotCodec}.
+ */
+public class JournalSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    private static final String LOG_FILE = "security.journal";
+    private static final String SNAPSHOT_FILE = "security.snapshot";
+    private static final String JOURNAL = "security journal"; //for error messages
+
+    private static final int LOG_MAGIC = 0xCA7905E1;
+    //snapshots from before the SensorSnapshotCodec, still read so existing data directories load
+    private static final int LEGACY_SNAPSHOT_MAGIC = 0xCA7905E2;
+    private static final int LEGACY_SNAPSHOT_VERSION = 1;
+    private static final int LOG_HEADER_SIZE = Integer.BYTES;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+
+    //record types
+    private static final byte SENSOR_ADDED = 1;
+    private static final byte SENSOR_REMOVED = 2;
+    private static final byte SENSOR_UPDATED = 3;
+    private static final byte ALARM_STATUS = 4;
+    private static final byte ARMING_STATUS = 5;
+
+    private final Path logFile;
+    private final Path snapshotFile;
+    private final int snapshotEveryRecords;
+    private final int initialLogCapacity;
+
+    private final SensorStore sensors = new SensorStore();
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private int recordsSinceSnapshot;
+    private int recordStart;
+
+    private final CRC32 crc = new CRC32();
+
+    public JournalSecurityRepositoryImpl(Path directory) {
+        this(directory, 10_000, 1 << 20);
+    }
+
+    /**
+     * @param directory Directory holding the log and snapshot files. Created if missing.
+     * @param snapshotEveryRecords Number of appended records after which a snapshot is taken and the log cleared.
+     * @param initialLogCapacity Initial size in bytes of the mapped log. The mapping grows as needed.
+     */
+    public JournalSecurityRepositoryImpl(Path directory, int snapshotEveryRecords, int initialLogCapacity) {
+        if(snapshotEveryRecords < 1 || initialLogCapacity <= LOG_HEADER_SIZE) {
+            throw new IllegalArgumentException("snapshotEveryRecords must be positive and initialLogCapacity larger than the log header");
+        }
+        this.logFile = directory.resolve(LOG_FILE);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        this.initialLogCapacity = initialLogCapacity;
+        try {
+            Files.createDirectories(directory);
+            readSnapshot();
+            openLog();
+            replayLog();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open security journal in " + directory, ioe);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+        appendSensor(SENSOR_ADDED, sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        UUID id = sensor.getSensorId();
+        ByteBuffer record = beginRecord(SENSOR_REMOVED, 2 * Long.BYTES);
+        record.putLong(id.getMostSignificantBits());
+        record.putLong(id.getLeastSignificantBits());
+        endRecord(record);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.update(sensor);
+        appendSensor(SENSOR_UPDATED, sensor);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        ByteBuffer record = beginRecord(ALARM_STATUS, Byte.BYTES);
+        record.put((byte) alarmStatus.ordinal());
+        endRecord(record);
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        ByteBuffer record = beginRecord(ARMING_STATUS, Byte.BYTES);
+        record.put((byte) armingStatus.ordinal());
+        endRecord(record);
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return sensors.activeCount(sensorType);
+    }
+
+    /**
+     * Forces appended records out of the page cache onto the storage device.
+     */
+    @Override
+    public synchronized void flush() {
+        log.force();
+    }
+
+    /**
+     * Writes a snapshot of the current state and clears the log, so the next startup has nothing to replay.
+     */
+    public synchronized void snapshot() {
+        try {
+            writeSnapshot();
+            resetLog();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to write security snapshot", ioe);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        snapshot();
+        try {
+            logChannel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close security journal", ioe);
+        }
+    }
+
+    private void appendSensor(byte type, Sensor sensor) {
+        byte[] name = encodeName(sensor.getName());
+        ByteBuffer record = beginRecord(type, 2 * Long.BYTES + 2 * Byte.BYTES + Integer.BYTES + name.length);
+        writeSensor(record, sensor, name);
+        endRecord(record);
+    }
+
+    /**
+     * Internal method that reserves room for a record in the log and writes its header. The returned
+     * buffer is positioned at the start of the payload.
+     */
+    private ByteBuffer beginRecord(byte type, int payloadLength) {
+        if(recordsSinceSnapshot >= snapshotEveryRecords) {
+            snapshot();
+        }
+        ensureCapacity(RECORD_OVERHEAD + payloadLength);
+        recordStart = log.position();
+        log.putInt(payloadLength);
+        log.put(type);
+        return log;
+    }
+
+    /**
+     * Internal method that checksums the record just written by {@link #beginRecord(byte, int)}.
+     */
+    private void endRecord(ByteBuffer record) {
+        ByteBuffer checked = record.duplicate();
+        checked.position(recordStart + Integer.BYTES).limit(record.position());
+        crc.reset();
+        crc.update(checked);
+        record.putInt((int) crc.getValue());
+        recordsSinceSnapshot++;
+    }
+
+    private void ensureCapacity(int recordLength) {
+        if(log.remaining() >= recordLength) {
+            return;
+        }
+        try {
+            int position = log.position();
+            long capacity = Math.max((long) log.capacity() * 2, (long) position + recordLength);
+            if(capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Security journal is full");
+            }
+            log.force();
+            log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            log.position(position);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to grow security journal", ioe);
+        }
+    }
+
+    private void openLog() throws IOException {
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(logChannel.size(), initialLogCapacity);
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        int magic = log.getInt(0);
+        if(magic != LOG_MAGIC) {
+            if(magic != 0) {
+                throw new IOException("Not a security journal: " + logFile);
+            }
+            log.putInt(0, LOG_MAGIC);
+        }
+        log.position(LOG_HEADER_SIZE);
+    }
+
+    /**
+     * Internal method that applies every intact record in the log and leaves the log positioned
+     * after the last one. A truncated or corrupt record ends the replay, and everything after it
+     * is cleared so later appends can't be confused with leftovers.
+     */
+    private void replayLog() {
+        while(log.remaining() >= RECORD_OVERHEAD) {
+            int start = log.position();
+            int payloadLength = log.getInt(start);
+            byte type = log.get(start + Integer.BYTES);
+            if(type == 0 && payloadLength == 0) {
+                return; //reached the unwritten, zero-filled part of the log
+            }
+            if(payloadLength < 0 || payloadLength > log.limit() - start - RECORD_OVERHEAD
+                    || !checksumMatches(start, payloadLength)) {
+                truncateLog(start);
+                return;
+            }
+            log.position(start + Integer.BYTES + Byte.BYTES);
+            try {
+                applyRecord(type, log);
+            } catch (IOException ioe) {
+                //intact but unreadable, so treated like any other corrupt record
+                truncateLog(start);
+                return;
+            }
+            log.position(start + RECORD_OVERHEAD + payloadLength);
+            recordsSinceSnapshot++;
+        }
+    }
+
+    private boolean checksumMatches(int start, int payloadLength) {
+        ByteBuffer checked = log.duplicate();
+        checked.position(start + Integer.BYTES).limit(start + Integer.BYTES + Byte.BYTES + payloadLength);
+        crc.reset();
+        crc.update(checked);
+        return (int) crc.getValue() == log.getInt(start + Integer.BYTES + Byte.BYTES + payloadLength);
+    }
+
+    private void truncateLog(int start) {
+        for(int i = start; i < log.limit(); i++) {
+            log.put(i, (byte) 0);
+        }
+        log.position(start);
+    }
+
+    private void applyRecord(byte type, ByteBuffer payload) throws IOException {
+        switch(type) {
+            case SENSOR_ADDED, SENSOR_UPDATED -> sensors.update(readSensor(payload));
+            case SENSOR_REMOVED -> {
+                Sensor sensor = new Sensor();
+                sensor.setSensorId(new UUID(payload.getLong(), payload.getLong()));
+                sensors.remove(sensor);
+            }
+            case ALARM_STATUS -> alarmStatus = SensorSnapshotCodec.ordinal(AlarmStatus.values(), payload.get(), JOURNAL);
+            case ARMING_STATUS -> armingStatus = SensorSnapshotCodec.ordinal(ArmingStatus.values(), payload.get(), JOURNAL);
+            default -> {
+                //unknown record types come from a newer version; skip them
+            }
+        }
+    }
+
+    /**
+     * Internal method that clears the records in place. The file keeps its size: truncating it while it
+     * is mapped fails on some platforms. Replay stops at the first zeroed record, and everything after
+     * the last record is zero already.
+     */
+    private void resetLog() {
+        int end = log.position();
+        int i = LOG_HEADER_SIZE;
+        for(; i + Long.BYTES <= end; i += Long.BYTES) {
+            log.putLong(i, 0);
+        }
+        for(; i < end; i++) {
+            log.put(i, (byte) 0);
+        }
+        log.force();
+        log.position(LOG_HEADER_SIZE);
+        recordsSinceSnapshot = 0;
+    }
+
+    private void readSnapshot() throws IOException {
+        if(!Files.exists(snapshotFile)) {
+            return;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshotFile))) {
+            in.mark(Integer.BYTES);
+            int magic = new DataInputStream(in).readInt();
+            in.reset();
+            if(magic == LEGACY_SNAPSHOT_MAGIC) {
+                readLegacySnapshot(in);
+                return;
+            }
+            SensorSnapshotCodec.Reader reader = new SensorSnapshotCodec.Reader(in);
+            alarmStatus = reader.getAlarmStatus();
+            armingStatus = reader.getArmingStatus();
+            Sensor sensor;
+            while((sensor = reader.next()) != null) {
+                sensors.add(sensor);
+            }
+        } catch (IOException ioe) {
+            throw new IOException("Unable to read security snapshot " + snapshotFile, ioe);
+        }
+    }
+
+    private void readLegacySnapshot(InputStream snapshot) throws IOException {
+        CRC32 snapshotCrc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(snapshot, snapshotCrc));
+        if(in.readInt() != LEGACY_SNAPSHOT_MAGIC || in.readInt() != LEGACY_SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported security snapshot: " + snapshotFile);
+        }
+        alarmStatus = SensorSnapshotCodec.ordinal(AlarmStatus.values(), in.readByte(), JOURNAL);
+        armingStatus = SensorSnapshotCodec.ordinal(ArmingStatus.values(), in.readByte(), JOURNAL);
+        int count = in.readInt();
+        ByteBuffer record = ByteBuffer.allocate(1024);
+        for(int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if(record.capacity() < length) {
+                record = ByteBuffer.allocate(length);
+            }
+            record.clear().limit(length);
+            in.readFully(record.array(), 0, length);
+            sensors.add(readSensor(record));
+        }
+        int expected = (int) snapshotCrc.getValue();
+        if(in.readInt() != expected) {
+            throw new IOException("Security snapshot failed its checksum: " + snapshotFile);
+        }
+    }
+
+    /**
+     * Internal method that writes the snapshot to a temporary file first and then moves it into
+     * place, so a crash part way through never leaves a half-written snapshot behind.
+     */
+    private void writeSnapshot() throws IOException {
+        Path tmp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            SensorSnapshotCodec.write(fos, alarmStatus, armingStatus, sensors);
+            fos.getFD().sync();
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeSensor(ByteBuffer buffer, Sensor sensor, byte[] name) {
+        buffer.putLong(sensor.getSensorId().getMostSignificantBits());
+        buffer.putLong(sensor.getSensorId().getLeastSignificantBits());
+        buffer.put((byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0));
+        buffer.put((byte) sensor.getSensorType().ordinal());
+        buffer.putInt(sensor.getName() == null ? -1 : name.length);
+        buffer.put(name);
+    }
+
+    private static Sensor readSensor(ByteBuffer buffer) throws IOException {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(buffer.getLong(), buffer.getLong()));
+        sensor.setActive(buffer.get() != 0);
+        sensor.setSensorType(SensorSnapshotCodec.ordinal(SensorType.values(), buffer.get(), JOURNAL));
+        int nameLength = buffer.getInt();
+        if(nameLength < -1 || nameLength > buffer.remaining()) {
+            throw new IOException("Malformed sensor name in " + JOURNAL);
+        }
+        if(nameLength >= 0) {
+            byte[] name = new byte[nameLength];
+            buffer.get(name);
+            sensor.setName(new String(name, StandardCharsets.UTF_8));
+        }
+        return sensor;
+    }
+
+    private static byte[] encodeName(String name) {
+        return name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -2,81 +2,213 @@ package com.udacity.catpoint.security.data;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import com.udacity.catpoint.security.metrics.Timer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ *
+ * By default every sensor change is written straight through to preferences. When constructed
+ * with a flush interval, the repository runs in write-behind mode instead: sensor changes only
+ * mark the repository dirty and a background flusher writes one coalesced snapshot per interval,
+ * or as soon as the configured number of changes has piled up. Call {@link #flush()} or
+ * {@link #close()} before shutdown so no pending changes are lost.
+ *
+ * Sensors are stored as a {@link SensorSnapshotCodec} snapshot, split into chunks small enough for
+ * preference values. Each write goes to the other of two key generations and then switches a single
+ * pointer key over, so an interrupted write leaves the previous snapshot intact. Sensors saved as JSON
+ * by earlier versions are read once with Gson and rewritten in the binary format. The alarm and arming
+ * statuses keep their own keys, which take precedence over the copies in the snapshot.
+ *
+ * In lazy mode the constructor only reads the statuses. A background thread then indexes the snapshot
+ * by sensor id and moves the sensors into memory in batches. Until it finishes, sensors asked for by id,
+ * or changed, are decoded on their own straight from the snapshot, and active counts add up the ones
+ * still waiting; {@link #getSensors()} waits for the whole set. Changes made while loading are written
+ * once it completes.
  */
-public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
+public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
 
-    private Set<Sensor> sensors;
-    private AlarmStatus alarmStatus;
-    private ArmingStatus armingStatus;
+    private final SensorStore sensors = new SensorStore();
+    private volatile AlarmStatus alarmStatus;
+    private volatile ArmingStatus armingStatus;
+
+    //write-behind state, guarded by this
+    private final ScheduledExecutorService flusher;
+    private final int maxPendingWrites;
+    private int pendingWrites;
+    private boolean dirty;
+
+    //serializes writes to prefs so an older snapshot can never overwrite a newer one
+    private final Object flushLock = new Object();
+    private volatile Timer persistTimer = MetricsRegistry.disabled().timer("repository.persist");
+
+    //loading state, guarded by this. pending holds the stored sensors not yet in the store and is
+    // null before indexing and after loading
+    private final CompletableFuture<Void> sensorsLoaded = new CompletableFuture<>();
+    private boolean indexed;
+    private PendingSensors pending;
 
     //preference keys
-    private static final String SENSORS = "SENSORS";
+    private static final String SENSORS = "SENSORS"; //JSON, before the binary snapshot
+    private static final String SENSOR_SNAPSHOT = "SENSOR_SNAPSHOT"; //"generation:chunk count" of the current snapshot
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
     private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private static final Gson gson = new Gson(); //used to read sensors saved as JSON
+    private static final System.Logger log = System.getLogger(PretendDatabaseSecurityRepositoryImpl.class.getName());
+
+    //preferences encode byte arrays as base64, which has to fit in a value
+    private static final int CHUNK_SIZE = Preferences.MAX_VALUE_LENGTH / 4 * 3;
+    //sensors moved into the store per hold of the lock while loading in the background
+    private static final int LOAD_BATCH = 1024;
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(0, 1);
+    }
+
+    /**
+     * Creates a repository that coalesces sensor writes.
+     * @param flushIntervalMillis How often pending sensor changes are written. Zero or less writes every change immediately.
+     * @param maxPendingWrites Number of pending sensor changes that triggers a flush before the interval elapses.
+     */
+    public PretendDatabaseSecurityRepositoryImpl(long flushIntervalMillis, int maxPendingWrites) {
+        this(flushIntervalMillis, maxPendingWrites, false);
+    }
+
+    /**
+     * Creates a repository that coalesces sensor writes and may load its sensors in the background.
+     * @param flushIntervalMillis How often pending sensor changes are written. Zero or less writes every change immediately.
+     * @param maxPendingWrites Number of pending sensor changes that triggers a flush before the interval elapses.
+     * @param lazyLoad Whether to return as soon as the statuses are read and load sensors on a background thread.
+     */
+    public PretendDatabaseSecurityRepositoryImpl(long flushIntervalMillis, int maxPendingWrites, boolean lazyLoad) {
+        //the indexing and the batches each get a thread of their own, which is gone once it's done
+        this(flushIntervalMillis, maxPendingWrites, lazyLoad ? task -> {
+            Thread loader = new Thread(task, "sensor-loader");
+            loader.setDaemon(true);
+            loader.start();
+        } : Runnable::run);
+    }
+
+    /**
+     * Creates a repository that loads its sensors in two steps on the given executor: reading and indexing
+     * the snapshot, then moving the sensors into memory.
+     */
+    PretendDatabaseSecurityRepositoryImpl(long flushIntervalMillis, int maxPendingWrites, Executor loader) {
+        if(maxPendingWrites < 1) {
+            throw new IllegalArgumentException("maxPendingWrites must be at least 1");
+        }
+        this.maxPendingWrites = maxPendingWrites;
+
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
-        //we've serialized our sensor objects for storage, which should be a good warning sign that
-        // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
+        if(flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sensor-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
         } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+            flusher = null;
         }
+
+        //we've serialized our sensor objects for storage, which should be a good warning sign that
+        // this is likely an impractical solution for a real system
+        loader.execute(() -> indexSensors(loader));
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        boolean writeThrough;
+        synchronized (this) {
+            pageIn(sensor.getSensorId());
+            sensors.add(sensor);
+            writeThrough = sensorsChanged();
+        }
+        if(writeThrough) {
+            flush();
+        }
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        boolean writeThrough;
+        synchronized (this) {
+            pageIn(sensor.getSensorId());
+            sensors.remove(sensor);
+            writeThrough = sensorsChanged();
+        }
+        if(writeThrough) {
+            flush();
+        }
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        boolean writeThrough;
+        synchronized (this) {
+            pageIn(sensor.getSensorId());
+            sensors.update(sensor);
+            writeThrough = sensorsChanged();
+        }
+        if(writeThrough) {
+            flush();
+        }
     }
 
     @Override
-    public void setAlarmStatus(AlarmStatus alarmStatus) {
+    public void updateSensors(Collection<Sensor> sensors) {
+        boolean writeThrough;
+        synchronized (this) {
+            for(Sensor sensor : sensors) {
+                pageIn(sensor.getSensorId());
+                this.sensors.update(sensor);
+            }
+            writeThrough = sensorsChanged();
+        }
+        if(writeThrough) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
         prefs.put(ALARM_STATUS, this.alarmStatus.toString());
     }
 
     @Override
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
         prefs.put(ARMING_STATUS, this.armingStatus.toString());
     }
 
+    /**
+     * Waits for the background load, if it is still running. If that fails, the sensors loaded so far are returned.
+     */
     @Override
     public Set<Sensor> getSensors() {
+        awaitSensors();
         return sensors;
     }
 
@@ -89,4 +221,375 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     public ArmingStatus getArmingStatus() {
         return armingStatus;
     }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        Sensor sensor = sensors.get(sensorId);
+        if(sensor != null || sensorsLoaded.isDone()) {
+            return sensor;
+        }
+        synchronized (this) {
+            return pageIn(sensorId);
+        }
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        if(sensorsLoaded.isDone()) {
+            return sensors.activeCount();
+        }
+        synchronized (this) {
+            awaitIndex();
+            return sensors.activeCount() + (pending == null ? 0 : pending.activeCount);
+        }
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        if(sensorsLoaded.isDone()) {
+            return sensors.activeCount(sensorType);
+        }
+        synchronized (this) {
+            awaitIndex();
+            return sensors.activeCount(sensorType) + (pending == null ? 0 : pending.activeCountByType[sensorType.ordinal()]);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sensorsLoaded() {
+        return sensorsLoaded;
+    }
+
+    /**
+     * Writes the current sensor set to preferences if anything changed since the last write, first
+     * waiting for the background load if it is still running. Nothing is written if the load failed.
+     */
+    @Override
+    public void flush() {
+        if(!awaitSensors()) {
+            return; //never replace the stored sensors with the few that were loaded
+        }
+        synchronized (flushLock) {
+            byte[] snapshot;
+            synchronized (this) {
+                if(!dirty) {
+                    return;
+                }
+                snapshot = encodeSensors();
+                dirty = false;
+                pendingWrites = 0;
+            }
+            persist(snapshot);
+        }
+    }
+
+    /**
+     * Stops the background flusher, if any, and writes out all pending changes.
+     */
+    @Override
+    public void close() {
+        if(flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Records how long each snapshot takes to write to preferences, under {@code repository.persist}.
+     * In write-behind mode these writes happen on the flusher, where a repository decorator can't see them.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        persistTimer = metrics.timer("repository.persist");
+    }
+
+    private void persist(byte[] snapshot) {
+        Timer timer = persistTimer;
+        long start = timer.start();
+        try {
+            writeSensorSnapshot(snapshot);
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    /**
+     * Internal method that records a sensor change and leaves it for the flusher, if it's running.
+     * Callers must hold the lock on this, and {@link #flush()} once they have released it if this
+     * returns true, so the write is ordered against any flush already under way.
+     * @return Whether the change has to be written through
+     */
+    private boolean sensorsChanged() {
+        dirty = true;
+        if(pending != null) {
+            return false; //the store is incomplete until loading finishes, which then writes it
+        }
+        if(flusher == null || flusher.isShutdown()) {
+            return true;
+        }
+        if(++pendingWrites == maxPendingWrites) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                return true; //closed in the meantime
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Internal method that reads and indexes the stored snapshot, then has the loader move its sensors
+     * into the store.
+     */
+    private void indexSensors(Executor loader) {
+        long start = System.nanoTime();
+        PendingSensors stored = null;
+        try {
+            byte[] snapshot = readSensorSnapshot();
+            if(snapshot != null) {
+                stored = new PendingSensors(SensorSnapshotCodec.Index.of(snapshot));
+            }
+        } catch (IOException ioe) {
+            log.log(System.Logger.Level.ERROR, "Stored sensors are unreadable, starting without sensors", ioe);
+        } catch (RuntimeException e) {
+            loadFailed(e);
+            return;
+        } catch (Error e) {
+            synchronized (this) {
+                indexed = true;
+                notifyAll();
+            }
+            sensorsLoaded.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            pending = stored;
+            indexed = true;
+            notifyAll();
+        }
+        long indexedAt = System.nanoTime();
+        loader.execute(() -> loadIndexedSensors(start, indexedAt));
+    }
+
+    /**
+     * Internal method that moves the indexed sensors into the store in batches, letting other threads
+     * in between, and then writes any changes made meanwhile.
+     */
+    private void loadIndexedSensors(long start, long indexedAt) {
+        try {
+            PendingSensors stored;
+            synchronized (this) {
+                stored = pending;
+            }
+            if(stored != null) {
+                int size = stored.index.size();
+                for(int first = 0; first < size; first += LOAD_BATCH) {
+                    synchronized (this) {
+                        for(int record = first; record < Math.min(size, first + LOAD_BATCH); record++) {
+                            load(record);
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            loadFailed(e);
+            return;
+        } catch (Error e) {
+            sensorsLoaded.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            pending = null;
+        }
+        sensorsLoaded.complete(null);
+        log.log(System.Logger.Level.INFO, "Loaded {0} sensors in {1} ms, {2} ms of it reading and indexing",
+                sensors.size(), (System.nanoTime() - start) / 1_000_000, (indexedAt - start) / 1_000_000);
+        flush();
+    }
+
+    /**
+     * Internal method that carries on as if nothing was stored after loading failed, for instance on a
+     * malformed pointer key or preferences that can't be read.
+     */
+    private void loadFailed(RuntimeException e) {
+        log.log(System.Logger.Level.ERROR, "Loading stored sensors failed, starting without sensors", e);
+        synchronized (this) {
+            sensors.clear();
+            pending = null;
+            dirty = false;
+            indexed = true;
+            notifyAll();
+        }
+        sensorsLoaded.complete(null);
+    }
+
+    /**
+     * Internal method that waits for the sensors to be loaded.
+     * @return Whether they were; false only if loading died with an error
+     */
+    private boolean awaitSensors() {
+        try {
+            sensorsLoaded.join();
+            return true;
+        } catch (CompletionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Internal method that waits until the stored snapshot has been indexed. Callers must hold the lock on this.
+     */
+    private void awaitIndex() {
+        boolean interrupted = false;
+        while(!indexed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Internal method that moves the stored sensor with the given id into the store, if it is still
+     * waiting to be loaded. Callers must hold the lock on this.
+     * @return The sensor with the given id, or null if there isn't one
+     */
+    private Sensor pageIn(UUID sensorId) {
+        awaitIndex();
+        if(pending != null) {
+            int record = pending.index.find(sensorId);
+            if(record >= 0) {
+                load(record);
+            }
+        }
+        return sensors.get(sensorId);
+    }
+
+    /**
+     * Internal method that moves one stored sensor into the store unless it is already there.
+     * Callers must hold the lock on this.
+     */
+    private void load(int record) {
+        if(pending.loaded.get(record)) {
+            return;
+        }
+        pending.loaded.set(record);
+        Sensor sensor;
+        try {
+            sensor = pending.index.sensorAt(record);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe); //every record was checked while counting
+        }
+        if(sensor.getActive()) {
+            pending.activeCount--;
+            pending.activeCountByType[sensor.getSensorType().ordinal()]--;
+        }
+        sensors.add(sensor);
+    }
+
+    /**
+     * Stored sensors that haven't been moved into the store yet, with their active counts.
+     */
+    private static class PendingSensors {
+        private final SensorSnapshotCodec.Index index;
+        private final BitSet loaded;
+        private final int[] activeCountByType = new int[SensorType.values().length];
+        private int activeCount;
+
+        PendingSensors(SensorSnapshotCodec.Index index) throws IOException {
+            this.index = index;
+            loaded = new BitSet(index.size());
+            for(int record = 0; record < index.size(); record++) {
+                SensorType sensorType = index.sensorTypeAt(record);
+                if(index.isActive(record)) {
+                    activeCount++;
+                    activeCountByType[sensorType.ordinal()]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Internal method that reads the stored binary snapshot, migrating sensors saved as JSON by earlier versions.
+     * @return The snapshot, or null if no sensors were ever stored
+     */
+    private static byte[] readSensorSnapshot() {
+        //a write going on at the same time would drop the chunks being read
+        synchronized (prefs) {
+            String current = prefs.get(SENSOR_SNAPSHOT, null);
+            if(current != null) {
+                String[] pointer = current.split(":");
+                ByteArrayOutputStream snapshot = new ByteArrayOutputStream(Integer.parseInt(pointer[1]) * CHUNK_SIZE);
+                for(int i = 0; i < Integer.parseInt(pointer[1]); i++) {
+                    snapshot.writeBytes(prefs.getByteArray(chunkKey(pointer[0], i), new byte[0]));
+                }
+                return snapshot.toByteArray();
+            }
+        }
+
+        String sensorString = prefs.get(SENSORS, null);
+        if(sensorString == null) {
+            return null;
+        }
+        Type type = new TypeToken<Set<Sensor>>() {
+        }.getType();
+        byte[] snapshot = encode(gson.<Set<Sensor>>fromJson(sensorString, type));
+        writeSensorSnapshot(snapshot);
+        prefs.remove(SENSORS);
+        return snapshot;
+    }
+
+    /**
+     * Internal method that encodes the current state. Callers must hold the lock on this.
+     */
+    private byte[] encodeSensors() {
+        return encode(sensors);
+    }
+
+    private static byte[] encode(Collection<Sensor> sensors) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            SensorSnapshotCodec.write(out, AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString())),
+                    ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString())), sensors);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe); //not thrown by a ByteArrayOutputStream
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Internal method that stores a snapshot under the generation not currently in use, switches the
+     * pointer to it and then drops the old generation's chunks.
+     */
+    private static void writeSensorSnapshot(byte[] snapshot) {
+        synchronized (prefs) {
+            String current = prefs.get(SENSOR_SNAPSHOT, null);
+            String[] previous = current == null ? null : current.split(":");
+            String generation = previous != null && previous[0].equals("0") ? "1" : "0";
+            int chunks = (snapshot.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            for(int i = 0; i < chunks; i++) {
+                prefs.putByteArray(chunkKey(generation, i),
+                        Arrays.copyOfRange(snapshot, i * CHUNK_SIZE, Math.min(snapshot.length, (i + 1) * CHUNK_SIZE)));
+            }
+            prefs.put(SENSOR_SNAPSHOT, generation + ":" + chunks);
+            //the chunks of a malformed pointer, which loading gave up on, can't be found and are left behind
+            if(previous != null && previous.length == 2 && previous[1].matches("[0-9]{1,9}")) {
+                for(int i = 0; i < Integer.parseInt(previous[1]); i++) {
+                    prefs.remove(chunkKey(previous[0], i));
+                }
+            }
+        }
+    }
+
+    private static String chunkKey(String generation, int chunk) {
+        return SENSOR_SNAPSHOT + "_" + generation + "_" + chunk;
+    }
 }
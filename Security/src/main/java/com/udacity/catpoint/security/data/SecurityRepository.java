@@ -1,6 +1,9 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -15,5 +18,49 @@ public interface SecurityRepository {
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * @return The sensor with the given id, or null if there isn't one
+     */
+    default Sensor getSensor(UUID sensorId) {
+        return getSensors().stream().filter(s -> sensorId.equals(s.getSensorId())).findFirst().orElse(null);
+    }
+
+    /**
+     * Stores the current state of several sensors. Implementations should override this to persist the
+     * whole batch in one write.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    /**
+     * @return Number of active sensors. Implementations that keep a live count should override this scan.
+     */
+    default int getActiveSensorCount() {
+        return (int) getSensors().stream().filter(s -> Boolean.TRUE.equals(s.getActive())).count();
+    }
+
+    /**
+     * @return Number of active sensors of the given type. Implementations that keep a live count should override this scan.
+     */
+    default int getActiveSensorCount(SensorType sensorType) {
+        return (int) getSensors().stream()
+                .filter(s -> s.getSensorType() == sensorType && Boolean.TRUE.equals(s.getActive()))
+                .count();
+    }
+
+    /**
+     * Writes any buffered changes to the backing store. Write-through implementations have nothing to do.
+     */
+    default void flush() {
+    }
+
+    /**
+     * @return Completes once every stored sensor has been loaded, so {@link #getSensors()} no longer waits.
+     * Repositories that load everything up front return a completed future.
+     */
+    default CompletableFuture<Void> sensorsLoaded() {
+        return CompletableFuture.completedFuture(null);
+    }
 
 }
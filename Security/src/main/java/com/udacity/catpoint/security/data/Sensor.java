@@ -1,15 +1,27 @@
 package com.udacity.catpoint.security.data;
 
-
-import com.google.common.collect.ComparisonChain;
-
-import java.util.Objects;
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
  * Sensor POJO. Needs to know how to sort itself for display purposes.
+ *
+ * Equality, hashing and ordering go through the getters, so a {@link SensorTable} can hand out
+ * subclasses that read their state from the table instead of these fields.
  */
 public class Sensor implements Comparable<Sensor> {
+
+    //position of each type when types are ordered by name, as the display order requires
+    private static final int[] TYPE_ORDER = new int[SensorType.values().length];
+
+    static {
+        SensorType[] byName = SensorType.values().clone();
+        Arrays.sort(byName, (a, b) -> a.toString().compareTo(b.toString()));
+        for(int i = 0; i < byName.length; i++) {
+            TYPE_ORDER[byName[i].ordinal()] = i;
+        }
+    }
+
     private UUID sensorId;
     private String name;
     private Boolean active;
@@ -27,14 +39,14 @@ public class Sensor implements Comparable<Sensor> {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Sensor)) return false;
         Sensor sensor = (Sensor) o;
-        return sensorId.equals(sensor.sensorId);
+        return getSensorId().equals(sensor.getSensorId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(sensorId);
+        return getSensorId().hashCode();
     }
 
     public String getName() {
@@ -71,10 +83,13 @@ public class Sensor implements Comparable<Sensor> {
 
     @Override
     public int compareTo(Sensor o) {
-        return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.toString(), o.sensorType.toString())
-                .compare(this.sensorId, o.sensorId)
-                .result();
+        int result = getName().compareTo(o.getName());
+        if(result == 0) {
+            result = Integer.compare(TYPE_ORDER[getSensorType().ordinal()], TYPE_ORDER[o.getSensorType().ordinal()]);
+        }
+        if(result == 0) {
+            result = getSensorId().compareTo(o.getSensorId());
+        }
+        return result;
     }
 }
@@ -0,0 +1,488 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Compact binary snapshot of the system status and the sensor set, written and read as a stream so
+ * neither side has to hold the encoded form in memory.
+ *
+ * Layout, big-endian, with varints as unsigned LEB128:
+ * <pre>
+ * [int magic][byte version][byte oldest version that can read this]
+ * [varint header length][byte alarm status][byte arming status][varint sensor count]...
+ * sensor count times: [varint record length][long id msb][long id lsb][byte flags][byte type][varint name length + 1][utf-8 name]...
+ * [int crc32c of everything before it]
+ * </pre>
+ * Statuses and types are enum ordinals and bit 0 of the flags is the active state; a name length of
+ * 0 means no name. The header and every record are length-prefixed, so a newer writer can append
+ * fields that this reader skips. A writer only raises the oldest readable version when it changes
+ * the meaning of existing fields, and readers refuse snapshots that need a newer reader.
+ *
+ * Counts and lengths are read before the checksum can be checked, so readers never size anything
+ * from them: a record may be at most {@link #MAX_RECORD_LENGTH} bytes and is only buffered as far
+ * as the stream actually goes.
+ */
+public final class SensorSnapshotCodec {
+
+    public static final int MAGIC = 0xCA7905E3;
+    public static final int VERSION = 1;
+    /** Longest header or sensor record a reader accepts, far more than any name needs. */
+    public static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private static final int OLDEST_READABLE_VERSION = 1;
+    private static final byte ACTIVE = 1;
+    private static final int HEADER_LENGTH = 3 * Byte.BYTES; //statuses and the shortest sensor count
+    private static final int RECORD_LENGTH = 2 * Long.BYTES + 3 * Byte.BYTES; //id, flags, type and the shortest name length
+
+    private SensorSnapshotCodec() {
+    }
+
+    /**
+     * Writes a complete snapshot to the stream, leaving the stream open.
+     */
+    public static void write(OutputStream out, AlarmStatus alarmStatus, ArmingStatus armingStatus, Collection<Sensor> sensors) throws IOException {
+        Writer writer = new Writer(out, alarmStatus, armingStatus, sensors.size());
+        for(Sensor sensor : sensors) {
+            writer.write(sensor);
+        }
+        writer.finish();
+    }
+
+    /**
+     * Reads the rest of a snapshot, checking its checksum.
+     * @param reader Reader whose header has been read; its getters give the statuses
+     */
+    public static List<Sensor> readAll(Reader reader) throws IOException {
+        //not presized: the count hasn't been checksummed yet
+        List<Sensor> sensors = new ArrayList<>();
+        Sensor sensor;
+        while((sensor = reader.next()) != null) {
+            sensors.add(sensor);
+        }
+        return sensors;
+    }
+
+    /**
+     * Writes a snapshot one sensor at a time. Exactly the announced number of sensors must be written
+     * before {@link #finish()}.
+     */
+    public static class Writer {
+        private final OutputStream out;
+        private final Checksum checksum = new CRC32C();
+        private final int sensorCount;
+        private final byte[] prefix = new byte[5];
+        private ByteBuffer record = ByteBuffer.allocate(256);
+        private int written;
+
+        /**
+         * Writes the header. The stream is buffered internally and left open by {@link #finish()}.
+         */
+        public Writer(OutputStream out, AlarmStatus alarmStatus, ArmingStatus armingStatus, int sensorCount) throws IOException {
+            this.out = new BufferedOutputStream(out, 64 * 1024);
+            this.sensorCount = sensorCount;
+            record.putInt(MAGIC).put((byte) VERSION).put((byte) OLDEST_READABLE_VERSION);
+            emit(record.array(), 0, record.position());
+            record.clear();
+            record.put((byte) alarmStatus.ordinal()).put((byte) armingStatus.ordinal());
+            putVarint(record, sensorCount);
+            emitRecord();
+        }
+
+        public void write(Sensor sensor) throws IOException {
+            if(written == sensorCount) {
+                throw new IllegalStateException("All " + sensorCount + " sensors have already been written");
+            }
+            byte[] name = sensor.getName() == null ? null : sensor.getName().getBytes(StandardCharsets.UTF_8);
+            int length = 2 * Long.BYTES + 2 * Byte.BYTES + 5 + (name == null ? 0 : name.length);
+            if(record.capacity() < length) {
+                record = ByteBuffer.allocate(Math.max(length, record.capacity() * 2));
+            }
+            UUID sensorId = sensor.getSensorId();
+            record.putLong(sensorId.getMostSignificantBits());
+            record.putLong(sensorId.getLeastSignificantBits());
+            record.put(Boolean.TRUE.equals(sensor.getActive()) ? ACTIVE : 0);
+            record.put((byte) sensor.getSensorType().ordinal());
+            if(name == null) {
+                putVarint(record, 0);
+            } else {
+                putVarint(record, name.length + 1);
+                record.put(name);
+            }
+            emitRecord();
+            written++;
+        }
+
+        /**
+         * Writes the checksum and flushes everything to the underlying stream.
+         */
+        public void finish() throws IOException {
+            if(written != sensorCount) {
+                throw new IllegalStateException("Announced " + sensorCount + " sensors but wrote " + written);
+            }
+            record.clear();
+            record.putInt((int) checksum.getValue());
+            out.write(record.array(), 0, Integer.BYTES);
+            out.flush();
+        }
+
+        private void emitRecord() throws IOException {
+            ByteBuffer length = ByteBuffer.wrap(prefix);
+            putVarint(length, record.position());
+            emit(prefix, 0, length.position());
+            emit(record.array(), 0, record.position());
+            record.clear();
+        }
+
+        private void emit(byte[] bytes, int offset, int length) throws IOException {
+            checksum.update(bytes, offset, length);
+            out.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Reads a snapshot one sensor at a time. The checksum is checked once the last sensor has been read,
+     * so sensors returned before that should not be trusted until {@link #next()} has returned null.
+     */
+    public static class Reader {
+        private final InputStream in;
+        private final Checksum checksum = new CRC32C();
+        private final int version;
+        private final AlarmStatus alarmStatus;
+        private final ArmingStatus armingStatus;
+        private final int sensorCount;
+        private ByteBuffer record = ByteBuffer.allocate(256);
+        private int read;
+
+        /**
+         * Reads and checks the header. The stream is buffered internally, so it may be read past the end of the snapshot.
+         * @throws IOException if the stream isn't a snapshot or needs a newer reader
+         */
+        public Reader(InputStream in) throws IOException {
+            this.in = new BufferedInputStream(in, 64 * 1024);
+            ByteBuffer start = readFully(Integer.BYTES + 2 * Byte.BYTES);
+            if(start.getInt() != MAGIC) {
+                throw new IOException("Not a sensor snapshot");
+            }
+            version = Byte.toUnsignedInt(start.get());
+            int oldestReadableVersion = Byte.toUnsignedInt(start.get());
+            if(oldestReadableVersion > VERSION) {
+                throw new IOException("Sensor snapshot version " + version + " needs a reader for version " + oldestReadableVersion);
+            }
+            ByteBuffer header = readFully(readLength(HEADER_LENGTH));
+            alarmStatus = ordinal(AlarmStatus.values(), header.get());
+            armingStatus = ordinal(ArmingStatus.values(), header.get());
+            sensorCount = getVarint(header);
+        }
+
+        /**
+         * @return The next sensor, or null once all have been read and the checksum matched
+         * @throws IOException if the snapshot is truncated, corrupt or fails its checksum
+         */
+        public Sensor next() throws IOException {
+            if(read >= sensorCount) {
+                if(read++ == sensorCount) {
+                    int expected = (int) checksum.getValue();
+                    if(readUnchecked(Integer.BYTES).getInt() != expected) {
+                        throw new IOException("Sensor snapshot failed its checksum");
+                    }
+                }
+                return null;
+            }
+            //the whole record is read, so fields a newer writer appended are skipped
+            Sensor sensor = decode(readFully(readLength(RECORD_LENGTH)));
+            read++;
+            return sensor;
+        }
+
+        /**
+         * Reads a header or record length and checks it is between the given minimum and {@link #MAX_RECORD_LENGTH}.
+         */
+        private int readLength(int minimum) throws IOException {
+            int value = 0;
+            for(int shift = 0; shift < 35; shift += 7) {
+                int b = in.read();
+                if(b < 0) {
+                    throw new EOFException("Sensor snapshot is truncated");
+                }
+                checksum.update(b);
+                value |= (b & 0x7F) << shift;
+                if((b & 0x80) == 0) {
+                    if(value < minimum || value > MAX_RECORD_LENGTH) {
+                        throw new IOException("Malformed length " + Integer.toUnsignedString(value) + " in sensor snapshot");
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("Malformed length in sensor snapshot");
+        }
+
+        /**
+         * @return A buffer over the next length bytes, added to the checksum, valid until the next read
+         */
+        private ByteBuffer readFully(int length) throws IOException {
+            ByteBuffer bytes = readUnchecked(length);
+            checksum.update(bytes.array(), 0, length);
+            return bytes;
+        }
+
+        private ByteBuffer readUnchecked(int length) throws IOException {
+            byte[] bytes = record.array();
+            int n = 0;
+            while(n < length) {
+                if(n == bytes.length) {
+                    //grown as the bytes arrive, so a corrupt length costs no more than the stream holds
+                    bytes = Arrays.copyOf(bytes, Math.min(length, bytes.length * 2));
+                    record = ByteBuffer.wrap(bytes);
+                }
+                int count = in.read(bytes, n, Math.min(length, bytes.length) - n);
+                if(count < 0) {
+                    throw new EOFException("Sensor snapshot is truncated");
+                }
+                n += count;
+            }
+            record.clear().limit(length);
+            return record;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        public ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+
+        public int getSensorCount() {
+            return sensorCount;
+        }
+    }
+
+    /**
+     * Random access to a complete snapshot held in memory. The records are located in one pass that
+     * decodes nothing but their ids; after that a sensor can be found by id and decoded on its own.
+     * Instances are immutable and safe to share between threads.
+     */
+    public static final class Index {
+        private final byte[] snapshot;
+        private final ByteBuffer bytes; //only read with absolute gets, which leave it unchanged
+        private final int version;
+        private final AlarmStatus alarmStatus;
+        private final ArmingStatus armingStatus;
+        private final int[] offsets; //start of each record's fields
+        private final int[] slots; //open addressing by id, record number + 1, 0 when empty
+
+        private Index(byte[] snapshot, int version, AlarmStatus alarmStatus, ArmingStatus armingStatus, int[] offsets) {
+            this.snapshot = snapshot;
+            bytes = ByteBuffer.wrap(snapshot);
+            this.version = version;
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+            this.offsets = offsets;
+            slots = new int[Integer.highestOneBit(Math.max(2, offsets.length) * 2 - 1) * 2];
+            for(int record = 0; record < offsets.length; record++) {
+                int slot = slot(getLong(offsets[record]), getLong(offsets[record] + Long.BYTES));
+                while(slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = record + 1;
+            }
+        }
+
+        /**
+         * Checks the snapshot and locates its records. The array is kept, not copied, so it must not be changed afterwards.
+         * @throws IOException if the snapshot is truncated, corrupt, fails its checksum or needs a newer reader
+         */
+        public static Index of(byte[] snapshot) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            if(snapshot.length < Integer.BYTES + 2 * Byte.BYTES + Integer.BYTES) {
+                throw new EOFException("Sensor snapshot is truncated");
+            }
+            if(buffer.getInt() != MAGIC) {
+                throw new IOException("Not a sensor snapshot");
+            }
+            int version = Byte.toUnsignedInt(buffer.get());
+            int oldestReadableVersion = Byte.toUnsignedInt(buffer.get());
+            if(oldestReadableVersion > VERSION) {
+                throw new IOException("Sensor snapshot version " + version + " needs a reader for version " + oldestReadableVersion);
+            }
+            int end = snapshot.length - Integer.BYTES;
+            Checksum checksum = new CRC32C();
+            checksum.update(snapshot, 0, end);
+            if(buffer.getInt(end) != (int) checksum.getValue()) {
+                throw new IOException("Sensor snapshot failed its checksum");
+            }
+
+            buffer.limit(end);
+            int headerEnd = skip(buffer);
+            if(headerEnd - buffer.position() < HEADER_LENGTH) {
+                throw new IOException("Malformed header in sensor snapshot");
+            }
+            AlarmStatus alarmStatus = ordinal(AlarmStatus.values(), buffer.get());
+            ArmingStatus armingStatus = ordinal(ArmingStatus.values(), buffer.get());
+            int sensorCount = getVarint(buffer);
+            if(sensorCount > (end - headerEnd) / (1 + RECORD_LENGTH)) {
+                throw new IOException("Sensor count " + sensorCount + " doesn't fit in sensor snapshot");
+            }
+            int[] offsets = new int[sensorCount];
+            buffer.position(headerEnd);
+            for(int record = 0; record < offsets.length; record++) {
+                int recordEnd = skip(buffer);
+                if(recordEnd - buffer.position() < RECORD_LENGTH) {
+                    throw new IOException("Malformed sensor record in sensor snapshot");
+                }
+                offsets[record] = buffer.position();
+                buffer.position(recordEnd);
+            }
+            if(buffer.hasRemaining()) {
+                throw new IOException("Unexpected data after the sensors in sensor snapshot");
+            }
+            return new Index(snapshot, version, alarmStatus, armingStatus, offsets);
+        }
+
+        /**
+         * Reads a record length and checks the record fits.
+         * @return The position just past the record
+         */
+        private static int skip(ByteBuffer buffer) throws IOException {
+            int length = getVarint(buffer);
+            if(length < 0 || length > buffer.remaining()) {
+                throw new EOFException("Sensor snapshot is truncated");
+            }
+            return buffer.position() + length;
+        }
+
+        /**
+         * @return The record number of the sensor, or -1 if it isn't in the snapshot
+         */
+        public int find(UUID sensorId) {
+            long msb = sensorId.getMostSignificantBits();
+            long lsb = sensorId.getLeastSignificantBits();
+            for(int slot = slot(msb, lsb); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                int offset = offsets[slots[slot] - 1];
+                if(getLong(offset) == msb && getLong(offset + Long.BYTES) == lsb) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return A new sensor decoded from the given record
+         */
+        public Sensor sensorAt(int record) throws IOException {
+            int offset = offsets[record];
+            return decode(ByteBuffer.wrap(snapshot, offset, snapshot.length - Integer.BYTES - offset));
+        }
+
+        public boolean isActive(int record) {
+            return (snapshot[offsets[record] + 2 * Long.BYTES] & ACTIVE) != 0;
+        }
+
+        public SensorType sensorTypeAt(int record) throws IOException {
+            return ordinal(SensorType.values(), snapshot[offsets[record] + 2 * Long.BYTES + 1]);
+        }
+
+        public int size() {
+            return offsets.length;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        public ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+
+        private int slot(long msb, long lsb) {
+            long hilo = msb ^ lsb;
+            int h = ((int) (hilo >> 32)) ^ (int) hilo; //UUID.hashCode()
+            return (h ^ (h >>> 16)) & (slots.length - 1);
+        }
+
+        private long getLong(int offset) {
+            return bytes.getLong(offset);
+        }
+    }
+
+    /**
+     * Decodes the fields of one sensor record, ignoring anything after them.
+     */
+    private static Sensor decode(ByteBuffer fields) throws IOException {
+        if(fields.remaining() < RECORD_LENGTH) {
+            throw new IOException("Malformed sensor record in sensor snapshot");
+        }
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(fields.getLong(), fields.getLong()));
+        sensor.setActive((fields.get() & ACTIVE) != 0);
+        sensor.setSensorType(ordinal(SensorType.values(), fields.get()));
+        int nameLength = getVarint(fields) - 1;
+        if(nameLength >= 0) {
+            if(nameLength > fields.remaining()) {
+                throw new IOException("Malformed name in sensor snapshot");
+            }
+            sensor.setName(new String(fields.array(), fields.position(), nameLength, StandardCharsets.UTF_8));
+        }
+        return sensor;
+    }
+
+    private static <E> E ordinal(E[] values, byte ordinal) throws IOException {
+        return ordinal(values, ordinal, "sensor snapshot");
+    }
+
+    /**
+     * @param source What the ordinal was read from, for the error message
+     * @throws IOException if the unsigned ordinal is out of range
+     */
+    static <E> E ordinal(E[] values, byte ordinal, String source) throws IOException {
+        int index = Byte.toUnsignedInt(ordinal);
+        if(index >= values.length) {
+            throw new IOException("Unknown " + values[0].getClass().getSimpleName() + " " + index + " in " + source);
+        }
+        return values[index];
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            if(!buffer.hasRemaining()) {
+                break;
+            }
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                //every varint is a count or a length, and the writer never writes one past Integer.MAX_VALUE
+                if(value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in sensor snapshot");
+    }
+}
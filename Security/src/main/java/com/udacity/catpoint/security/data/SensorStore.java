@@ -0,0 +1,255 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * In-memory set of sensors indexed by sensor id. Lookups, updates and activation changes are
+ * O(1) hash operations instead of tree operations on {@link Sensor#compareTo(Sensor)}.
+ *
+ * The store also offers a few secondary views. The sorted and by-type views are rebuilt lazily the
+ * first time they are asked for after a sensor is added, removed, renamed or retyped; the active
+ * view is kept up to date on every update, so toggling a sensor never invalidates the others.
+ * Active counts, overall and per sensor type, are maintained the same way and can be read in O(1).
+ *
+ * Writes are synchronized; reads and iteration are lock-free and weakly consistent.
+ */
+public class SensorStore extends AbstractSet<Sensor> implements IndexedSensorSet {
+
+    private final Map<UUID, Entry> index = new ConcurrentHashMap<>();
+    private final Set<Sensor> activeSensors = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicIntegerArray activeCountByType = new AtomicIntegerArray(SensorType.values().length);
+
+    //lazily built views, null when stale
+    private volatile List<Sensor> sortedView;
+    private volatile Map<SensorType, Set<Sensor>> typeView;
+
+    /**
+     * The sensor along with the state the secondary views were last built from, so an update can
+     * tell which views it actually affects.
+     */
+    private static class Entry {
+        private Sensor sensor;
+        private String name;
+        private SensorType sensorType;
+        private boolean active;
+
+        private Entry(Sensor sensor) {
+            record(sensor);
+        }
+
+        private void record(Sensor sensor) {
+            this.sensor = sensor;
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType();
+            this.active = Boolean.TRUE.equals(sensor.getActive());
+        }
+    }
+
+    public SensorStore() {
+    }
+
+    public SensorStore(Collection<Sensor> sensors) {
+        addAll(sensors);
+    }
+
+    @Override
+    public synchronized boolean add(Sensor sensor) {
+        if(index.containsKey(sensor.getSensorId())) {
+            return false;
+        }
+        Entry entry = new Entry(sensor);
+        index.put(sensor.getSensorId(), entry);
+        if(entry.active) {
+            activeSensors.add(sensor);
+            countActive(entry.sensorType, 1);
+        }
+        invalidateViews();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if(!(o instanceof Sensor)) {
+            return false;
+        }
+        Entry entry = index.remove(((Sensor) o).getSensorId());
+        if(entry == null) {
+            return false;
+        }
+        if(entry.active) {
+            activeSensors.remove(entry.sensor);
+            countActive(entry.sensorType, -1);
+        }
+        invalidateViews();
+        return true;
+    }
+
+    /**
+     * Stores the current state of the sensor, adding it if it isn't known yet. Only views that depend
+     * on something that actually changed are touched, so an activation change is O(1).
+     * @param sensor The sensor to update
+     */
+    @Override
+    public synchronized void update(Sensor sensor) {
+        Entry entry = index.get(sensor.getSensorId());
+        if(entry == null) {
+            add(sensor);
+            return;
+        }
+        boolean viewsChanged = entry.sensor != sensor
+                || !Objects.equals(entry.name, sensor.getName())
+                || entry.sensorType != sensor.getSensorType();
+        if(entry.active) {
+            activeSensors.remove(entry.sensor);
+            countActive(entry.sensorType, -1);
+        }
+        entry.record(sensor);
+        if(entry.active) {
+            activeSensors.add(sensor);
+            countActive(entry.sensorType, 1);
+        }
+        if(viewsChanged) {
+            invalidateViews();
+        }
+    }
+
+    /**
+     * @return The sensor with the given id, or null if there isn't one
+     */
+    @Override
+    public Sensor get(UUID sensorId) {
+        Entry entry = index.get(sensorId);
+        return entry == null ? null : entry.sensor;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Sensor && index.containsKey(((Sensor) o).getSensorId());
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public Iterator<Sensor> iterator() {
+        Iterator<Entry> entries = index.values().iterator();
+        return new Iterator<>() {
+            private Sensor current;
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Sensor next() {
+                current = entries.next().sensor;
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if(current == null) {
+                    throw new IllegalStateException();
+                }
+                SensorStore.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    /**
+     * @return All sensors in their natural display order. The list is shared and must not be modified.
+     */
+    @Override
+    public List<Sensor> sortedByName() {
+        List<Sensor> view = sortedView;
+        if(view == null) {
+            synchronized (this) {
+                view = sortedView;
+                if(view == null) {
+                    Sensor[] sorted = index.values().stream().map(e -> e.sensor).toArray(Sensor[]::new);
+                    Arrays.sort(sorted);
+                    view = Collections.unmodifiableList(Arrays.asList(sorted));
+                    sortedView = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    /**
+     * @return All sensors of the given type. The set is shared and must not be modified.
+     */
+    @Override
+    public Set<Sensor> byType(SensorType sensorType) {
+        Map<SensorType, Set<Sensor>> view = typeView;
+        if(view == null) {
+            synchronized (this) {
+                view = typeView;
+                if(view == null) {
+                    Map<SensorType, Set<Sensor>> built = new EnumMap<>(SensorType.class);
+                    for(SensorType type : SensorType.values()) {
+                        built.put(type, new HashSet<>());
+                    }
+                    index.values().forEach(e -> built.get(e.sensorType).add(e.sensor));
+                    built.replaceAll((type, sensors) -> Collections.unmodifiableSet(sensors));
+                    view = built;
+                    typeView = view;
+                }
+            }
+        }
+        return view.get(sensorType);
+    }
+
+    /**
+     * @return A live, read-only view of the sensors that are currently active
+     */
+    @Override
+    public Set<Sensor> active() {
+        return Collections.unmodifiableSet(activeSensors);
+    }
+
+    /**
+     * @return Number of sensors that are currently active
+     */
+    @Override
+    public int activeCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return Number of sensors of the given type that are currently active
+     */
+    @Override
+    public int activeCount(SensorType sensorType) {
+        return activeCountByType.get(sensorType.ordinal());
+    }
+
+    @Override
+    public synchronized void clear() {
+        index.clear();
+        activeSensors.clear();
+        activeCount.set(0);
+        for(int i = 0; i < activeCountByType.length(); i++) {
+            activeCountByType.set(i, 0);
+        }
+        invalidateViews();
+    }
+
+    private void countActive(SensorType sensorType, int delta) {
+        activeCount.addAndGet(delta);
+        activeCountByType.addAndGet(sensorType.ordinal(), delta);
+    }
+
+    private void invalidateViews() {
+        sortedView = null;
+        typeView = null;
+    }
+}
@@ -0,0 +1,539 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.*;
+
+/**
+ * Sensor set for large fleets that keeps its sensors as columns of primitives instead of one
+ * object graph per sensor: ids as two {@code long[]}, activation as a bitset, types as ordinals
+ * in a {@code byte[]} and names shared through a pool. An open-addressing {@code int[]} maps ids
+ * to rows without creating {@link UUID} objects.
+ *
+ * Sensors added to the table are copied in. What the table hands back are flyweight views: Sensor
+ * subclasses that read and write their row, created the first time a row is asked for and reused
+ * afterwards, so setting a sensor active and updating it allocates nothing. A view keeps working
+ * after its sensor is removed, as a plain sensor holding the state it had at removal.
+ *
+ * Every access takes the table's lock. Views of removed rows are detached and the rows reused.
+ */
+public class SensorTable extends AbstractSet<Sensor> implements IndexedSensorSet {
+
+    private static final SensorType[] TYPES = SensorType.values();
+    private static final int INITIAL_CAPACITY = 8;
+
+    //columns, one row per sensor
+    private long[] mostSignificantBits = new long[INITIAL_CAPACITY];
+    private long[] leastSignificantBits = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] activeBits = new long[words(INITIAL_CAPACITY)];
+    private long[] usedBits = new long[words(INITIAL_CAPACITY)];
+    private View[] views = new View[INITIAL_CAPACITY];
+
+    //row + 1 for each id, 0 for an empty slot; linear probing over a power-of-two table
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+    private int rowLimit; //rows at or above this have never been used
+    private int[] freeRows = new int[0];
+    private int freeRowCount;
+    private int size;
+
+    private final Map<String, String> namePool = new HashMap<>();
+    private int activeCount;
+    private final int[] activeCountByType = new int[TYPES.length];
+
+    //lazily built views, null when stale
+    private List<Sensor> sortedView;
+    private Map<SensorType, Set<Sensor>> typeView;
+
+    /**
+     * Reads and writes one row of the table, or its own fields once the row is removed.
+     */
+    private final class View extends Sensor {
+        private int row;
+
+        private View(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String getName() {
+            synchronized (SensorTable.this) {
+                return row < 0 ? super.getName() : names[row];
+            }
+        }
+
+        @Override
+        public void setName(String name) {
+            synchronized (SensorTable.this) {
+                if(row < 0) {
+                    super.setName(name);
+                } else {
+                    names[row] = intern(name);
+                    invalidateViews();
+                }
+            }
+        }
+
+        @Override
+        public Boolean getActive() {
+            synchronized (SensorTable.this) {
+                return row < 0 ? super.getActive() : isRowActive(row);
+            }
+        }
+
+        @Override
+        public void setActive(Boolean active) {
+            synchronized (SensorTable.this) {
+                if(row < 0) {
+                    super.setActive(active);
+                } else {
+                    setRowActive(row, Boolean.TRUE.equals(active));
+                }
+            }
+        }
+
+        @Override
+        public SensorType getSensorType() {
+            synchronized (SensorTable.this) {
+                return row < 0 ? super.getSensorType() : TYPES[types[row]];
+            }
+        }
+
+        @Override
+        public void setSensorType(SensorType sensorType) {
+            synchronized (SensorTable.this) {
+                if(row < 0) {
+                    super.setSensorType(sensorType);
+                    return;
+                }
+                boolean active = isRowActive(row);
+                setRowActive(row, false);
+                types[row] = (byte) sensorType.ordinal();
+                setRowActive(row, active);
+                invalidateViews();
+            }
+        }
+
+        @Override
+        public UUID getSensorId() {
+            synchronized (SensorTable.this) {
+                return row < 0 ? super.getSensorId() : new UUID(mostSignificantBits[row], leastSignificantBits[row]);
+            }
+        }
+
+        @Override
+        public void setSensorId(UUID sensorId) {
+            synchronized (SensorTable.this) {
+                if(row < 0) {
+                    super.setSensorId(sensorId);
+                    return;
+                }
+                int existing = find(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+                if(existing == row) {
+                    return; //already its id
+                }
+                if(existing >= 0) {
+                    throw new IllegalArgumentException("Another sensor already has id " + sensorId);
+                }
+                unindex(row);
+                mostSignificantBits[row] = sensorId.getMostSignificantBits();
+                leastSignificantBits[row] = sensorId.getLeastSignificantBits();
+                insertIndex(row);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            synchronized (SensorTable.this) {
+                if(row < 0) {
+                    return super.hashCode();
+                }
+                long bits = mostSignificantBits[row] ^ leastSignificantBits[row];
+                return (int) (bits >> 32) ^ (int) bits; //as UUID.hashCode
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(o instanceof View && ((View) o).owner() == SensorTable.this) {
+                synchronized (SensorTable.this) {
+                    View other = (View) o;
+                    if(row >= 0 && other.row >= 0) {
+                        return row == other.row;
+                    }
+                }
+            }
+            return super.equals(o);
+        }
+
+        private SensorTable owner() {
+            return SensorTable.this;
+        }
+
+        /**
+         * Copies the row into this sensor's own fields before the row is reused.
+         */
+        private void detach() {
+            super.setSensorId(new UUID(mostSignificantBits[row], leastSignificantBits[row]));
+            super.setName(names[row]);
+            super.setSensorType(TYPES[types[row]]);
+            super.setActive(isRowActive(row));
+            row = -1;
+        }
+    }
+
+    public SensorTable() {
+    }
+
+    public SensorTable(Collection<Sensor> sensors) {
+        addAll(sensors);
+    }
+
+    /**
+     * Copies a sensor into the table. Later changes to that object aren't seen until it is passed to
+     * {@link #update(Sensor)}; use the view from {@link #get(UUID)} to change the stored sensor directly.
+     */
+    @Override
+    public synchronized boolean add(Sensor sensor) {
+        UUID sensorId = sensor.getSensorId();
+        if(find(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits()) >= 0) {
+            return false;
+        }
+        int row = allocateRow();
+        mostSignificantBits[row] = sensorId.getMostSignificantBits();
+        leastSignificantBits[row] = sensorId.getLeastSignificantBits();
+        names[row] = intern(sensor.getName());
+        types[row] = (byte) sensor.getSensorType().ordinal();
+        usedBits[row >>> 6] |= 1L << row;
+        setRowActive(row, Boolean.TRUE.equals(sensor.getActive()));
+        insertIndex(row);
+        size++;
+        invalidateViews();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if(!(o instanceof Sensor)) {
+            return false;
+        }
+        int row = rowOf((Sensor) o);
+        if(row < 0) {
+            return false;
+        }
+        if(views[row] != null) {
+            views[row].detach();
+            views[row] = null;
+        }
+        setRowActive(row, false);
+        unindex(row);
+        names[row] = null;
+        usedBits[row >>> 6] &= ~(1L << row);
+        if(freeRowCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, Math.max(8, freeRows.length * 2));
+        }
+        freeRows[freeRowCount++] = row;
+        size--;
+        invalidateViews();
+        return true;
+    }
+
+    /**
+     * Copies the sensor's state into its row, adding it if it isn't known yet. Views of this table
+     * have already written their changes, so updating one does nothing.
+     */
+    @Override
+    public synchronized void update(Sensor sensor) {
+        if(sensor instanceof View && ((View) sensor).owner() == this && ((View) sensor).row >= 0) {
+            return;
+        }
+        int row = rowOf(sensor);
+        if(row < 0) {
+            add(sensor);
+            return;
+        }
+        String name = intern(sensor.getName());
+        byte type = (byte) sensor.getSensorType().ordinal();
+        if(!Objects.equals(name, names[row]) || type != types[row]) {
+            setRowActive(row, false);
+            names[row] = name;
+            types[row] = type;
+            invalidateViews();
+        }
+        setRowActive(row, Boolean.TRUE.equals(sensor.getActive()));
+    }
+
+    /**
+     * @return The view of the sensor with the given id, or null if there isn't one
+     */
+    @Override
+    public synchronized Sensor get(UUID sensorId) {
+        int row = find(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+        return row < 0 ? null : view(row);
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return o instanceof Sensor && rowOf((Sensor) o) >= 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over a snapshot of the views taken when the iterator is created.
+     */
+    @Override
+    public synchronized Iterator<Sensor> iterator() {
+        Iterator<Sensor> snapshot = snapshot(usedBits).iterator();
+        return new Iterator<>() {
+            private Sensor current;
+
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public Sensor next() {
+                current = snapshot.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if(current == null) {
+                    throw new IllegalStateException();
+                }
+                SensorTable.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    @Override
+    public synchronized List<Sensor> sortedByName() {
+        if(sortedView == null) {
+            Sensor[] sorted = snapshot(usedBits).toArray(new Sensor[0]);
+            Arrays.sort(sorted);
+            sortedView = Collections.unmodifiableList(Arrays.asList(sorted));
+        }
+        return sortedView;
+    }
+
+    @Override
+    public synchronized Set<Sensor> byType(SensorType sensorType) {
+        if(typeView == null) {
+            Map<SensorType, Set<Sensor>> built = new EnumMap<>(SensorType.class);
+            for(SensorType type : TYPES) {
+                built.put(type, new HashSet<>());
+            }
+            for(Sensor sensor : snapshot(usedBits)) {
+                built.get(sensor.getSensorType()).add(sensor);
+            }
+            built.replaceAll((type, sensors) -> Collections.unmodifiableSet(sensors));
+            typeView = built;
+        }
+        return typeView.get(sensorType);
+    }
+
+    /**
+     * @return A live, read-only view of the active sensors; iterating it works on a snapshot
+     */
+    @Override
+    public Set<Sensor> active() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Sensor> iterator() {
+                synchronized (SensorTable.this) {
+                    return Collections.unmodifiableList(snapshot(activeBits)).iterator();
+                }
+            }
+
+            @Override
+            public int size() {
+                return activeCount();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                synchronized (SensorTable.this) {
+                    if(!(o instanceof Sensor)) {
+                        return false;
+                    }
+                    int row = rowOf((Sensor) o);
+                    return row >= 0 && isRowActive(row);
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized int activeCount() {
+        return activeCount;
+    }
+
+    @Override
+    public synchronized int activeCount(SensorType sensorType) {
+        return activeCountByType[sensorType.ordinal()];
+    }
+
+    @Override
+    public synchronized void clear() {
+        for(int row = 0; row < rowLimit; row++) {
+            if(views[row] != null) {
+                views[row].detach();
+                views[row] = null;
+            }
+        }
+        Arrays.fill(names, 0, rowLimit, null);
+        Arrays.fill(activeBits, 0L);
+        Arrays.fill(usedBits, 0L);
+        Arrays.fill(index, 0);
+        Arrays.fill(activeCountByType, 0);
+        activeCount = 0;
+        rowLimit = 0;
+        freeRowCount = 0;
+        size = 0;
+        namePool.clear();
+        invalidateViews();
+    }
+
+    private Sensor view(int row) {
+        View view = views[row];
+        if(view == null) {
+            view = new View(row);
+            views[row] = view;
+        }
+        return view;
+    }
+
+    private List<Sensor> snapshot(long[] bits) {
+        List<Sensor> sensors = new ArrayList<>(bits == activeBits ? activeCount : size);
+        for(int word = 0; word < words(rowLimit); word++) {
+            long remaining = bits[word];
+            while(remaining != 0) {
+                sensors.add(view(word * 64 + Long.numberOfTrailingZeros(remaining)));
+                remaining &= remaining - 1;
+            }
+        }
+        return sensors;
+    }
+
+    private boolean isRowActive(int row) {
+        return (activeBits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void setRowActive(int row, boolean active) {
+        if(isRowActive(row) == active) {
+            return;
+        }
+        int delta = active ? 1 : -1;
+        activeBits[row >>> 6] ^= 1L << row;
+        activeCount += delta;
+        activeCountByType[types[row]] += delta;
+    }
+
+    private String intern(String name) {
+        if(name == null) {
+            return null;
+        }
+        String pooled = namePool.putIfAbsent(name, name);
+        return pooled == null ? name : pooled;
+    }
+
+    private int rowOf(Sensor sensor) {
+        if(sensor instanceof View && ((View) sensor).owner() == this) {
+            return ((View) sensor).row;
+        }
+        UUID sensorId = sensor.getSensorId();
+        return find(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+    }
+
+    private int allocateRow() {
+        if(freeRowCount > 0) {
+            return freeRows[--freeRowCount];
+        }
+        if(rowLimit == views.length) {
+            int capacity = views.length * 2;
+            mostSignificantBits = Arrays.copyOf(mostSignificantBits, capacity);
+            leastSignificantBits = Arrays.copyOf(leastSignificantBits, capacity);
+            types = Arrays.copyOf(types, capacity);
+            names = Arrays.copyOf(names, capacity);
+            views = Arrays.copyOf(views, capacity);
+            activeBits = Arrays.copyOf(activeBits, words(capacity));
+            usedBits = Arrays.copyOf(usedBits, words(capacity));
+            rehash(capacity * 2);
+        }
+        return rowLimit++;
+    }
+
+    private static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    private static int slot(long mostSignificantBits, long leastSignificantBits, int mask) {
+        long h = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    /**
+     * @return The row holding the id, or -1
+     */
+    private int find(long msb, long lsb) {
+        int mask = index.length - 1;
+        for(int slot = slot(msb, lsb, mask); index[slot] != 0; slot = (slot + 1) & mask) {
+            int row = index[slot] - 1;
+            if(mostSignificantBits[row] == msb && leastSignificantBits[row] == lsb) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private void insertIndex(int row) {
+        int mask = index.length - 1;
+        int slot = slot(mostSignificantBits[row], leastSignificantBits[row], mask);
+        while(index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = row + 1;
+    }
+
+    /**
+     * Removes a row from the index, shifting later entries of its probe run back so lookups never
+     * stop early at the hole.
+     */
+    private void unindex(int row) {
+        int mask = index.length - 1;
+        int hole = slot(mostSignificantBits[row], leastSignificantBits[row], mask);
+        while(index[hole] != row + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for(int slot = (hole + 1) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int moved = index[slot] - 1;
+            int home = slot(mostSignificantBits[moved], leastSignificantBits[moved], mask);
+            //move the entry back unless its home lies cyclically between the hole and its slot
+            if(((slot - home) & mask) >= ((slot - hole) & mask)) {
+                index[hole] = index[slot];
+                hole = slot;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        index = new int[capacity];
+        for(int row = 0; row < rowLimit; row++) {
+            if((usedBits[row >>> 6] & (1L << row)) != 0) {
+                insertIndex(row);
+            }
+        }
+    }
+
+    private void invalidateViews() {
+        sortedView = null;
+        typeView = null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.udacity.catpoint.security.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free event counter. Counters handed out by a disabled {@link MetricsRegistry} ignore every update.
+ */
+public class Counter {
+
+    private final boolean enabled;
+    private final LongAdder value = new LongAdder();
+
+    Counter(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void increment() {
+        if(enabled) {
+            value.increment();
+        }
+    }
+
+    public void add(long amount) {
+        if(enabled) {
+            value.add(amount);
+        }
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
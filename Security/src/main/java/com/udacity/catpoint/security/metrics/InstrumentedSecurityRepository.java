@@ -0,0 +1,128 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.security.data.*;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Repository decorator that times every write to the wrapped repository, under
+ * {@code repository.<method>}. Writes that throw are timed as well and also counted under
+ * {@code repository.errors}. Reads are passed straight through.
+ *
+ * Repositories that write in the background, like the write-behind preferences repository, do most
+ * of their work outside these calls; their time is only seen here when {@link #flush()} is called.
+ * The preferences repository times its own writes when given the registry with
+ * {@link PretendDatabaseSecurityRepositoryImpl#setMetrics(MetricsRegistry)}.
+ */
+public class InstrumentedSecurityRepository implements SecurityRepository {
+
+    private final SecurityRepository delegate;
+    private final Timer addSensorTimer;
+    private final Timer removeSensorTimer;
+    private final Timer updateSensorTimer;
+    private final Timer updateSensorsTimer;
+    private final Timer setAlarmStatusTimer;
+    private final Timer setArmingStatusTimer;
+    private final Timer flushTimer;
+    private final Counter errors;
+
+    public InstrumentedSecurityRepository(SecurityRepository delegate, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.addSensorTimer = metrics.timer("repository.addSensor");
+        this.removeSensorTimer = metrics.timer("repository.removeSensor");
+        this.updateSensorTimer = metrics.timer("repository.updateSensor");
+        this.updateSensorsTimer = metrics.timer("repository.updateSensors");
+        this.setAlarmStatusTimer = metrics.timer("repository.setAlarmStatus");
+        this.setArmingStatusTimer = metrics.timer("repository.setArmingStatus");
+        this.flushTimer = metrics.timer("repository.flush");
+        this.errors = metrics.counter("repository.errors");
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        timed(addSensorTimer, () -> delegate.addSensor(sensor));
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        timed(removeSensorTimer, () -> delegate.removeSensor(sensor));
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        timed(updateSensorTimer, () -> delegate.updateSensor(sensor));
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        timed(updateSensorsTimer, () -> delegate.updateSensors(sensors));
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        timed(setAlarmStatusTimer, () -> delegate.setAlarmStatus(alarmStatus));
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        timed(setArmingStatusTimer, () -> delegate.setArmingStatus(armingStatus));
+    }
+
+    @Override
+    public void flush() {
+        timed(flushTimer, () -> delegate.flush());
+    }
+
+    /**
+     * Runs the write, stopping the timer even if it throws, so failed writes show up in the histogram.
+     */
+    private void timed(Timer timer, Runnable write) {
+        long start = timer.start();
+        try {
+            write.run();
+        } catch (RuntimeException | Error e) {
+            errors.increment();
+            throw e;
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sensorsLoaded() {
+        return delegate.sensorsLoaded();
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return delegate.getSensor(sensorId);
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return delegate.getActiveSensorCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return delegate.getActiveSensorCount(sensorType);
+    }
+}
@@ -0,0 +1,88 @@
+package com.udacity.catpoint.security.metrics;
+
+import javax.management.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only JMX view of a {@link MetricsRegistry}. Each counter is an attribute of its own name;
+ * each timer appears as {@code name.count}, {@code name.meanMicros}, {@code name.p50Micros},
+ * {@code name.p99Micros}, {@code name.p999Micros} and {@code name.maxMicros}. Instruments created
+ * after registration show up the next time a JMX client reads the attribute list.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private static final String[] TIMER_ATTRIBUTES = {"count", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros"};
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Counter counter = registry.getCounters().get(attribute);
+        if(counter != null) {
+            return counter.get();
+        }
+        int dot = attribute.lastIndexOf('.');
+        Timer timer = dot < 0 ? null : registry.getTimers().get(attribute.substring(0, dot));
+        if(timer == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        LatencyHistogram h = timer.getHistogram();
+        switch (attribute.substring(dot + 1)) {
+            case "count": return h.getCount();
+            case "meanMicros": return h.getMean() / 1e3;
+            case "p50Micros": return h.getValueAtPercentile(50) / 1e3;
+            case "p99Micros": return h.getValueAtPercentile(99) / 1e3;
+            case "p999Micros": return h.getValueAtPercentile(99.9) / 1e3;
+            case "maxMicros": return h.getMax() / 1e3;
+            default: throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for(String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException ignored) {
+                //leave it out, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        registry.getCounters().keySet().forEach(name ->
+                attributes.add(new MBeanAttributeInfo(name, "long", "Counter", true, false, false)));
+        registry.getTimers().keySet().forEach(name -> {
+            for(String suffix : TIMER_ATTRIBUTES) {
+                String type = suffix.equals("count") ? "long" : "double";
+                attributes.add(new MBeanAttributeInfo(name + "." + suffix, type, "Latency", true, false, false));
+            }
+        });
+        return new MBeanInfo(MetricsRegistry.class.getName(), "Catpoint metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
@@ -0,0 +1,130 @@
+package com.udacity.catpoint.security.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Named counters and timers for the hot paths of the system. Components ask the registry for
+ * their instruments once and update them directly, so recording never looks anything up.
+ *
+ * A disabled registry hands out instruments that ignore updates without reading the clock, which
+ * leaves only a predictable branch at each instrumented call. {@link #disabled()} is the default
+ * everywhere; {@link #fromSystemProperties()} turns metrics on with {@code -Dcatpoint.metrics=true}.
+ */
+public class MetricsRegistry {
+
+    private static final System.Logger log = System.getLogger(MetricsRegistry.class.getName());
+    private static final MetricsRegistry DISABLED = new MetricsRegistry(false);
+
+    private final boolean enabled;
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService reporter;
+
+    public MetricsRegistry() {
+        this(true);
+    }
+
+    private MetricsRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return A shared registry whose instruments record nothing
+     */
+    public static MetricsRegistry disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Returns an enabled registry, registered with JMX as {@code com.udacity.catpoint:type=Metrics}, if
+     * the {@code catpoint.metrics} system property is true, or the disabled registry otherwise. When
+     * {@code catpoint.metrics.reportSeconds} is set, a snapshot is also written to the log at that interval.
+     */
+    public static MetricsRegistry fromSystemProperties() {
+        if(!Boolean.getBoolean("catpoint.metrics")) {
+            return DISABLED;
+        }
+        MetricsRegistry registry = new MetricsRegistry();
+        try {
+            registry.registerMBean("com.udacity.catpoint:type=Metrics");
+        } catch (JMException e) {
+            log.log(System.Logger.Level.WARNING, "Could not register metrics with JMX", e);
+        }
+        long reportSeconds = Long.getLong("catpoint.metrics.reportSeconds", 0);
+        if(reportSeconds > 0) {
+            registry.startReporting(Duration.ofSeconds(reportSeconds));
+        }
+        return registry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter(enabled));
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer(enabled));
+    }
+
+    Map<String, Counter> getCounters() {
+        return counters;
+    }
+
+    Map<String, Timer> getTimers() {
+        return timers;
+    }
+
+    /**
+     * @return Every counter and timer, one per line. Latencies are in microseconds.
+     */
+    public String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        counters.forEach((name, counter) -> sb.append(name).append(' ').append(counter.get()).append('\n'));
+        timers.forEach((name, timer) -> {
+            LatencyHistogram h = timer.getHistogram();
+            sb.append(String.format("%s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                    name, h.getCount(), h.getMean() / 1e3, h.getValueAtPercentile(50) / 1e3,
+                    h.getValueAtPercentile(99) / 1e3, h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3));
+        });
+        return sb.toString();
+    }
+
+    /**
+     * Exposes the registry through the platform MBean server.
+     * @param objectName For example {@code com.udacity.catpoint:type=Metrics}
+     */
+    public void registerMBean(String objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), new ObjectName(objectName));
+    }
+
+    /**
+     * Writes a snapshot to the log at a fixed interval on a daemon thread.
+     */
+    public synchronized void startReporting(Duration interval) {
+        if(reporter != null) {
+            reporter.shutdown();
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> log.log(System.Logger.Level.INFO, "Metrics:\n" + snapshot()),
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if(reporter != null) {
+            reporter.shutdown();
+            reporter = null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.udacity.catpoint.security.metrics;
+
+/**
+ * Records how long an operation takes into a {@link LatencyHistogram}. Used as
+ * <pre>
+ *     long start = timer.start();
+ *     ...
+ *     timer.stop(start);
+ * </pre>
+ * Timers handed out by a disabled {@link MetricsRegistry} don't read the clock at all.
+ */
+public class Timer {
+
+    private final boolean enabled;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Timer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(long start) {
+        if(enabled) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
@@ -0,0 +1,193 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sits between a camera and the SecurityService. Frames are queued here and handed to
+ * {@link SecurityService#processImage(BufferedImage)} one at a time by a dispatcher thread, so a
+ * camera that produces frames faster than they can be classified never blocks and never builds up
+ * an unbounded backlog. What happens to surplus frames is decided by the {@link Policy}.
+ */
+public class FrameScheduler implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(FrameScheduler.class.getName());
+
+    /**
+     * Ways to deal with frames arriving faster than they can be classified.
+     */
+    public enum Policy {
+        /** Keep up to the queue capacity, discarding the oldest waiting frame to make room. */
+        DROP_OLDEST,
+        /** Keep only the most recent frame; a new frame replaces the one waiting. */
+        LATEST_ONLY,
+        /** Accept only every Nth frame, then queue like DROP_OLDEST. */
+        SAMPLE_EVERY_N
+    }
+
+    private static class QueuedFrame {
+        private final BufferedImage image;
+        private final long submittedNanos;
+
+        private QueuedFrame(BufferedImage image, long submittedNanos) {
+            this.image = image;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+
+    private final SecurityService securityService;
+    private final Policy policy;
+    private final int capacity;
+    private final int sampleEvery;
+    private final Thread dispatcher;
+
+    //guarded by queue
+    private final Deque<QueuedFrame> queue = new ArrayDeque<>();
+    private long framesSeen;
+    private boolean closed;
+
+    private final LongAdder submittedFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder processedFrames = new LongAdder();
+    private final LongAdder failedFrames = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+
+    /**
+     * @param securityService Service that classifies the frames
+     * @param policy What to do with frames that arrive while the service is busy
+     * @param capacity Most frames that may wait. Ignored by LATEST_ONLY, which always keeps one.
+     * @param sampleEvery For SAMPLE_EVERY_N, accept one frame out of this many. Ignored by the other policies.
+     */
+    public FrameScheduler(SecurityService securityService, Policy policy, int capacity, int sampleEvery) {
+        if(capacity < 1 || sampleEvery < 1) {
+            throw new IllegalArgumentException("capacity and sampleEvery must be at least 1");
+        }
+        this.securityService = securityService;
+        this.policy = policy;
+        this.capacity = policy == Policy.LATEST_ONLY ? 1 : capacity;
+        this.sampleEvery = policy == Policy.SAMPLE_EVERY_N ? sampleEvery : 1;
+        this.dispatcher = new Thread(this::dispatch, "frame-scheduler");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Offers a frame for classification. Never blocks.
+     * @param frame The camera frame
+     * @return false if the frame was skipped by sampling or the scheduler is closed
+     */
+    public boolean submit(BufferedImage frame) {
+        submittedFrames.increment();
+        synchronized (queue) {
+            if(closed || framesSeen++ % sampleEvery != 0) {
+                droppedFrames.increment();
+                return false;
+            }
+            if(queue.size() >= capacity) {
+                queue.pollFirst();
+                droppedFrames.increment();
+            }
+            queue.addLast(new QueuedFrame(frame, System.nanoTime()));
+            queue.notify();
+        }
+        return true;
+    }
+
+    private void dispatch() {
+        while(true) {
+            QueuedFrame frame;
+            synchronized (queue) {
+                while(queue.isEmpty() && !closed) {
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if(closed) {
+                    return;
+                }
+                frame = queue.pollFirst();
+            }
+            try {
+                securityService.processImage(frame.image);
+            } catch (RuntimeException e) {
+                //one bad frame or a flaky image service mustn't stop the camera
+                failedFrames.increment();
+                log.log(System.Logger.Level.WARNING, "Could not classify frame", e);
+                continue;
+            }
+            recordLatency(System.nanoTime() - frame.submittedNanos);
+        }
+    }
+
+    private void recordLatency(long latencyNanos) {
+        processedFrames.increment();
+        totalLatencyNanos.add(latencyNanos);
+        lastLatencyNanos = latencyNanos;
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * Stops the dispatcher. Frames still waiting are discarded.
+     */
+    @Override
+    public void close() {
+        synchronized (queue) {
+            closed = true;
+            droppedFrames.add(queue.size());
+            queue.clear();
+            queue.notifyAll();
+        }
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public long getSubmittedFrames() {
+        return submittedFrames.sum();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long getProcessedFrames() {
+        return processedFrames.sum();
+    }
+
+    /**
+     * @return Frames whose classification threw. They count towards neither processed frames nor latency.
+     */
+    public long getFailedFrames() {
+        return failedFrames.sum();
+    }
+
+    /**
+     * @return Time from submission until the verdict was applied, for the most recent frame
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    public long getAverageLatencyNanos() {
+        long processed = processedFrames.sum();
+        return processed == 0 ? 0 : totalLatencyNanos.sum() / processed;
+    }
+}
@@ -0,0 +1,221 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs image analyses on a bounded pool of worker threads and applies their results strictly in
+ * the order the frames were submitted, even when the analyses finish out of order. A result that
+ * finishes early waits until every older frame has either been applied or dropped.
+ *
+ * When superseded frames are cancelled, submitting a frame cancels every older frame that hasn't
+ * been applied yet. A cancelled frame that hasn't started is never analyzed; one that is already
+ * running finishes, but its result is discarded. Either way it no longer holds up newer frames.
+ *
+ * Submissions beyond the queue capacity fail immediately with a {@link RejectedExecutionException}
+ * instead of blocking the caller.
+ *
+ * Several pipelines can share one pool of workers, for example one pipeline per camera: each keeps
+ * its own frames in order while the pool runs frames from different pipelines in parallel.
+ */
+public class ImageAnalysisPipeline {
+
+    private final Executor workers;
+    private final boolean ownsWorkers;
+    private final Executor resultExecutor;
+    private final boolean cancelSuperseded;
+
+    //frames that haven't been applied yet, by frame number
+    private final Map<Long, Frame> frames = new ConcurrentHashMap<>();
+
+    //guarded by this
+    private long nextFrame = 1;
+    private long nextToApply = 1;
+    private final TreeMap<Long, Frame> finished = new TreeMap<>();
+    private boolean applying;
+
+    private static class Frame {
+        private final FrameResult result = new FrameResult();
+        private final Consumer<Boolean> apply;
+        private Boolean verdict;
+
+        private Frame(Consumer<Boolean> apply) {
+            this.apply = apply;
+        }
+    }
+
+    /**
+     * Result of a frame that can no longer be cancelled once it has been claimed for applying, so a
+     * frame is never both applied and reported as cancelled.
+     */
+    private static class FrameResult extends CompletableFuture<Boolean> {
+        private boolean claimed; //guarded by this
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if(claimed) {
+                    return false;
+                }
+                return super.cancel(mayInterruptIfRunning);
+            }
+        }
+
+        private synchronized boolean claim() {
+            if(isDone()) {
+                return false;
+            }
+            claimed = true;
+            return true;
+        }
+    }
+
+    /**
+     * @param threads Number of analyses that may run at once
+     * @param queueCapacity Number of frames that may wait for a free worker
+     * @param cancelSuperseded Whether a new frame cancels older frames that haven't been applied
+     * @param resultExecutor Where results are applied, e.g. {@code SwingUtilities::invokeLater}. Results are
+     *                       never applied concurrently, whatever executor is used.
+     */
+    public ImageAnalysisPipeline(int threads, int queueCapacity, boolean cancelSuperseded, Executor resultExecutor) {
+        this(newWorkerPool("image-analysis-", threads, queueCapacity), true, cancelSuperseded, resultExecutor);
+    }
+
+    /**
+     * Creates a pipeline that runs its analyses on a pool it doesn't own; {@link #shutdown()} leaves the pool running.
+     * @param workers Pool to run analyses on, e.g. from {@link #newWorkerPool(String, int, int)}
+     * @param cancelSuperseded Whether a new frame cancels older frames that haven't been applied
+     * @param resultExecutor Where results are applied
+     */
+    public ImageAnalysisPipeline(Executor workers, boolean cancelSuperseded, Executor resultExecutor) {
+        this(workers, false, cancelSuperseded, resultExecutor);
+    }
+
+    private ImageAnalysisPipeline(Executor workers, boolean ownsWorkers, boolean cancelSuperseded, Executor resultExecutor) {
+        this.workers = workers;
+        this.ownsWorkers = ownsWorkers;
+        this.cancelSuperseded = cancelSuperseded;
+        this.resultExecutor = resultExecutor;
+    }
+
+    /**
+     * Creates a bounded pool of daemon worker threads that rejects work once its queue is full, so
+     * submitting to a pipeline never blocks.
+     * @param namePrefix Worker threads are named with this prefix and a number
+     */
+    public static ThreadPoolExecutor newWorkerPool(String namePrefix, int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, namePrefix + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Queues an analysis.
+     * @param analysis Work to run on a worker thread, returning whether a cat was seen
+     * @param apply Called with the verdict once every older frame has been applied or dropped
+     * @return Completes with the verdict after it has been applied. Cancelling it drops the frame.
+     */
+    public CompletableFuture<Boolean> submit(Supplier<Boolean> analysis, Consumer<Boolean> apply) {
+        Frame frame = new Frame(apply);
+        long frameNumber;
+        synchronized (this) {
+            frameNumber = nextFrame++;
+            frames.put(frameNumber, frame);
+        }
+        if(cancelSuperseded) {
+            frames.forEach((number, older) -> {
+                if(number < frameNumber) {
+                    older.result.cancel(false);
+                }
+            });
+        }
+        //a frame that is cancelled or fails still has to be marked finished, or it would hold up newer ones
+        frame.result.whenComplete((verdict, error) -> {
+            if(error != null) {
+                finish(frameNumber, frame);
+            }
+        });
+        try {
+            workers.execute(() -> {
+                if(frame.result.isDone()) {
+                    return;
+                }
+                try {
+                    frame.verdict = analysis.get();
+                } catch (RuntimeException e) {
+                    frame.result.completeExceptionally(e);
+                    return;
+                }
+                finish(frameNumber, frame);
+            });
+        } catch (RejectedExecutionException e) {
+            frame.result.completeExceptionally(e);
+        }
+        return frame.result;
+    }
+
+    /**
+     * Stops accepting frames if the pipeline owns its workers. Frames already queued are still analyzed.
+     */
+    public void shutdown() {
+        if(ownsWorkers) {
+            ((ExecutorService) workers).shutdown();
+        }
+    }
+
+    private void finish(long frameNumber, Frame frame) {
+        synchronized (this) {
+            if(frameNumber < nextToApply || finished.containsKey(frameNumber)) {
+                return;
+            }
+            finished.put(frameNumber, frame);
+        }
+        resultExecutor.execute(this::applyFinished);
+    }
+
+    /**
+     * Internal method that applies every finished frame that is next in line. Which frame is next is
+     * decided under the lock, but frames are applied outside it; only one thread applies at a time.
+     */
+    private void applyFinished() {
+        synchronized (this) {
+            if(applying) {
+                //the thread that is applying picks up the new frames too
+                return;
+            }
+            applying = true;
+        }
+        while(true) {
+            Frame frame;
+            synchronized (this) {
+                if(finished.isEmpty() || finished.firstKey() != nextToApply) {
+                    applying = false;
+                    return;
+                }
+                frame = finished.pollFirstEntry().getValue();
+                frames.remove(nextToApply);
+                nextToApply++;
+            }
+            if(!frame.result.claim()) {
+                continue;
+            }
+            try {
+                frame.apply.accept(frame.verdict);
+            } catch (RuntimeException e) {
+                frame.result.completeExceptionally(e);
+                continue;
+            }
+            frame.result.complete(frame.verdict);
+        }
+    }
+}
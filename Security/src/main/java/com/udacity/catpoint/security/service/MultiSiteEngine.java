@@ -0,0 +1,163 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FramePreFilter;
+import com.udacity.catpoint.image.service.ImageServiceInterface;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Hosts many independent sites in one JVM, each with its own arming status, alarm status and
+ * sensors in an in-memory repository. Sites are spread over a fixed number of shards by a hash of
+ * the site id, and each shard owns its sites outright: every call for a site runs on its shard's
+ * single thread, so sites never lock against each other and a busy site only delays its own shard.
+ *
+ * Since each site's service is confined to one thread, it is built with a single sensor lock rather
+ * than the usual 64 stripes, which keeps an empty site under a kilobyte of heap; see the
+ * SiteFootprintReport in the Benchmarks module.
+ * Calls return futures that complete on the shard thread; don't block on them from a shard.
+ */
+public class MultiSiteEngine implements AutoCloseable {
+
+    private final ImageServiceInterface imageService;
+    private final Shard[] shards;
+    private final AtomicInteger siteCount = new AtomicInteger();
+
+    private static class Shard {
+        private final ExecutorService thread;
+        private final Map<String, SecurityService> sites = new HashMap<>(); //only touched by the shard thread
+
+        private Shard(int index) {
+            thread = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "site-shard-" + index);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * @param shardCount Number of shard threads, usually the number of cores
+     * @param imageService Image service shared by every site
+     */
+    public MultiSiteEngine(int shardCount, ImageServiceInterface imageService) {
+        if(shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        this.imageService = imageService;
+        this.shards = new Shard[shardCount];
+        for(int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    /**
+     * @return The shard that owns the site
+     */
+    public int shardOf(String siteId) {
+        int h = siteId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getSiteCount() {
+        return siteCount.get();
+    }
+
+    /**
+     * Adds an empty, disarmed site. Adding a site that already exists leaves it as it is.
+     */
+    public CompletableFuture<Void> addSite(String siteId) {
+        Shard shard = shards[shardOf(siteId)];
+        return CompletableFuture.runAsync(() -> shard.sites.computeIfAbsent(siteId, id -> {
+            siteCount.incrementAndGet();
+            return new SecurityService(new InMemorySecurityRepositoryImpl(), imageService, FramePreFilter.NONE, 1);
+        }), shard.thread);
+    }
+
+    public CompletableFuture<Void> removeSite(String siteId) {
+        Shard shard = shards[shardOf(siteId)];
+        return CompletableFuture.runAsync(() -> {
+            if(shard.sites.remove(siteId) != null) {
+                siteCount.decrementAndGet();
+            }
+        }, shard.thread);
+    }
+
+    /**
+     * Runs an action against a site's service on the site's shard thread.
+     * @param siteId Site to act on
+     * @param action Work to do with the site's service. It must not keep the service for use from other threads.
+     * @return The action's result, or an IllegalArgumentException if there is no such site
+     */
+    public <T> CompletableFuture<T> submit(String siteId, Function<SecurityService, T> action) {
+        Shard shard = shards[shardOf(siteId)];
+        return CompletableFuture.supplyAsync(() -> {
+            SecurityService site = shard.sites.get(siteId);
+            if(site == null) {
+                throw new IllegalArgumentException("Unknown site " + siteId);
+            }
+            return action.apply(site);
+        }, shard.thread);
+    }
+
+    public CompletableFuture<Void> addSensor(String siteId, Sensor sensor) {
+        return submit(siteId, site -> {
+            site.addSensor(sensor);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> setArmingStatus(String siteId, ArmingStatus armingStatus) {
+        return submit(siteId, site -> {
+            site.setArmingStatus(armingStatus);
+            return null;
+        });
+    }
+
+    /**
+     * @param activations Desired activation status by sensor id; see {@link SecurityService#changeSensorActivationStatuses(Map)}
+     */
+    public CompletableFuture<Void> changeSensorActivationStatuses(String siteId, Map<UUID, Boolean> activations) {
+        return submit(siteId, site -> {
+            site.changeSensorActivationStatuses(activations);
+            return null;
+        });
+    }
+
+    public CompletableFuture<AlarmStatus> getAlarmStatus(String siteId) {
+        return submit(siteId, SecurityService::getAlarmStatus);
+    }
+
+    /**
+     * Lets every shard finish the calls already queued, then stops the shard threads.
+     */
+    @Override
+    public void close() {
+        for(Shard shard : shards) {
+            shard.thread.shutdown();
+        }
+        for(Shard shard : shards) {
+            try {
+                shard.thread.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
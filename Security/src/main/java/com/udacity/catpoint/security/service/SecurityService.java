@@ -1,16 +1,30 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.service.CatDetection;
+import com.udacity.catpoint.image.service.FramePreFilter;
 import com.udacity.catpoint.image.service.ImageServiceInterface;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.IndexedSensorSet;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.metrics.Counter;
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import com.udacity.catpoint.security.metrics.Timer;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -18,70 +32,312 @@ import java.util.concurrent.ConcurrentSkipListSet;
  *
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ *
+ * The service is safe to call from many threads at once. Every alarm status change is a
+ * read-decide-write step made under a single alarm lock, so concurrent sensor events can't
+ * overwrite each other's transitions. Changes to the same sensor are serialized by a lock striped
+ * on the sensor id, and the sensor update itself is made under that stripe alone; a sensor event
+ * only takes the alarm lock when it changes the alarm status. Arming takes every stripe, so the
+ * arming status can't change under a sensor event. Listeners are
+ * reached through a {@link StatusEventBus}, so each can be given its own executor and a slow one
+ * doesn't hold up sensor handling.
+ *
+ * Any number of named cameras can feed images in. Each keeps its own latest verdict and pre-filter,
+ * and a cat seen by any camera counts as a cat for the alarm rules. Asynchronous analyses for
+ * different cameras run in parallel on a shared, bounded worker pool, while each camera's verdicts
+ * are applied in the order its frames arrived. The methods without a camera id use {@link #DEFAULT_CAMERA}.
+ *
+ * Sensor events, alarm transitions and the time spent in each entry point, in the image service and
+ * in listeners can be recorded by a {@link MetricsRegistry}; see {@link #setMetrics(MetricsRegistry)}.
  */
 public class SecurityService {
 
+    public static final String DEFAULT_CAMERA = "default";
+
     private ImageServiceInterface imageService;
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
-    private Boolean catDetection = false;
+    private final StatusEventBus statusEventBus = new StatusEventBus();
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+    private volatile boolean catDetection = false; //whether any camera sees a cat; written under the alarm lock
+    private ImageAnalysisPipeline imageAnalysisPipeline;
+    private ExecutorService cameraWorkers;
+    private volatile Instruments instruments = DISABLED_INSTRUMENTS;
+
+    //lock ordering: sensor stripes, in ascending index order, before the alarm lock
+    private final ReentrantLock alarmLock = new ReentrantLock();
+    private final ReentrantLock[] sensorLocks;
+
+    private static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+    private static final int SENSOR_LOCK_STRIPES = 64;
+
+    private static class Camera {
+        private final FramePreFilter framePreFilter;
+        private volatile boolean catDetected;
+        private ImageAnalysisPipeline pipeline; //guarded by the service; the default camera uses imageAnalysisPipeline
+        private CompletableFuture<Boolean> lastAnalysis; //guarded by this; the latest frame sent to the image service
+
+        private Camera(FramePreFilter framePreFilter) {
+            this.framePreFilter = framePreFilter;
+        }
+    }
+
+    private static class Instruments {
+        private final boolean enabled;
+        private final Counter sensorEvents;
+        private final Counter alarmTransitions;
+        private final Timer changeSensorActivationStatus;
+        private final Timer changeSensorActivationStatuses;
+        private final Timer setArmingStatus;
+        private final Timer setAlarmStatus;
+        private final Timer processImage;
+        private final Timer imageContainsCat;
+        private final Timer detectCats;
+
+        private Instruments(MetricsRegistry metrics) {
+            enabled = metrics.isEnabled();
+            sensorEvents = metrics.counter("security.sensorEvents");
+            alarmTransitions = metrics.counter("security.alarmTransitions");
+            changeSensorActivationStatus = metrics.timer("security.changeSensorActivationStatus");
+            changeSensorActivationStatuses = metrics.timer("security.changeSensorActivationStatuses");
+            setArmingStatus = metrics.timer("security.setArmingStatus");
+            setAlarmStatus = metrics.timer("security.setAlarmStatus");
+            processImage = metrics.timer("security.processImage");
+            imageContainsCat = metrics.timer("image.imageContainsCat");
+            detectCats = metrics.timer("image.detectCats");
+        }
+    }
+
+    private static final Instruments DISABLED_INSTRUMENTS = new Instruments(MetricsRegistry.disabled());
 
     public SecurityService(SecurityRepository securityRepository, ImageServiceInterface imageService) {
+        this(securityRepository, imageService, FramePreFilter.NONE);
+    }
+
+    /**
+     * @param framePreFilter Checked before each image is sent to the image service. Images it reports as
+     *                       unchanged reuse the previous verdict instead.
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageServiceInterface imageService, FramePreFilter framePreFilter) {
+        this(securityRepository, imageService, framePreFilter, SENSOR_LOCK_STRIPES);
+    }
+
+    /**
+     * @param sensorLockStripes Number of locks that changes to sensors are spread over, a power of two.
+     *                          1 is enough for a service only ever called from one thread.
+     */
+    SecurityService(SecurityRepository securityRepository, ImageServiceInterface imageService, FramePreFilter framePreFilter, int sensorLockStripes) {
+        if(Integer.bitCount(sensorLockStripes) != 1) {
+            throw new IllegalArgumentException("sensorLockStripes must be a power of two");
+        }
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        cameras.put(DEFAULT_CAMERA, new Camera(framePreFilter));
+        sensorLocks = new ReentrantLock[sensorLockStripes];
+        for(int i = 0; i < sensorLocks.length; i++) {
+            sensorLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Replaces the pipeline used by {@link #processImageAsync(BufferedImage)}. If none is set, a small
+     * pipeline that applies results on its worker threads is created on first use.
+     * @param imageAnalysisPipeline
+     */
+    public synchronized void setImageAnalysisPipeline(ImageAnalysisPipeline imageAnalysisPipeline) {
+        if(this.imageAnalysisPipeline != null) {
+            this.imageAnalysisPipeline.shutdown();
+        }
+        this.imageAnalysisPipeline = imageAnalysisPipeline;
+    }
+
+    /**
+     * Records this service's metrics in the given registry. Wrap the repository in an
+     * {@link com.udacity.catpoint.security.metrics.InstrumentedSecurityRepository} to time its writes too.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        instruments = new Instruments(metrics);
+        statusEventBus.setDispatchTimer(metrics.timer("listener.dispatch"));
+    }
+
+    private synchronized ImageAnalysisPipeline getImageAnalysisPipeline() {
+        if(imageAnalysisPipeline == null) {
+            imageAnalysisPipeline = new ImageAnalysisPipeline(2, 8, true, Runnable::run);
+        }
+        return imageAnalysisPipeline;
+    }
+
+    /**
+     * Internal method that returns the pipeline for a camera, creating it on the shared camera workers if needed.
+     */
+    private synchronized ImageAnalysisPipeline getImageAnalysisPipeline(String cameraId, Camera camera) {
+        if(DEFAULT_CAMERA.equals(cameraId)) {
+            return getImageAnalysisPipeline();
+        }
+        if(camera.pipeline == null) {
+            if(cameraWorkers == null) {
+                int threads = Runtime.getRuntime().availableProcessors();
+                cameraWorkers = ImageAnalysisPipeline.newWorkerPool("camera-analysis-", threads, threads * 4);
+            }
+            camera.pipeline = new ImageAnalysisPipeline(cameraWorkers, true, Runnable::run);
+        }
+        return camera.pipeline;
+    }
+
+    /**
+     * Registers a camera with its own pre-filter. Cameras that send images without being added are
+     * registered on first use without a pre-filter.
+     * @param cameraId Name of the camera
+     * @param framePreFilter Pre-filter for this camera's frames only, since filters compare each frame with the previous one
+     */
+    public void addCamera(String cameraId, FramePreFilter framePreFilter) {
+        cameras.put(cameraId, new Camera(framePreFilter));
+    }
+
+    /**
+     * Stops tracking a camera. Its verdict no longer counts towards whether a cat is seen.
+     */
+    public void removeCamera(String cameraId) {
+        alarmLock.lock();
+        try {
+            Camera camera = cameras.remove(cameraId);
+            if(camera != null && camera.catDetected) {
+                applyCatDetection(anyCameraSeesCat());
+            }
+        } finally {
+            alarmLock.unlock();
+        }
+    }
+
+    /**
+     * @return The latest verdict of each camera
+     */
+    public Map<String, Boolean> getCameraVerdicts() {
+        Map<String, Boolean> verdicts = new TreeMap<>();
+        cameras.forEach((cameraId, camera) -> verdicts.put(cameraId, camera.catDetected));
+        return verdicts;
+    }
+
+    private Camera camera(String cameraId) {
+        return cameras.computeIfAbsent(cameraId, id -> new Camera(FramePreFilter.NONE));
+    }
+
+    private boolean anyCameraSeesCat() {
+        for(Camera camera : cameras.values()) {
+            if(camera.catDetected) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Sets the current arming status for the system. Changing the arming status
-     * may update both the alarm status.
+     * may update both the alarm status and the sensors. The change is one critical section
+     * over every sensor and the alarm, so sensor events land either before it, and are reset
+     * by arming, or after it, and see the new arming status.
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if(catDetection && armingStatus == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
+        Timer timer = instruments.setArmingStatus;
+        long start = timer.start();
+        for(ReentrantLock sensorLock : sensorLocks) {
+            sensorLock.lock();
         }
-        if(armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        } else {
-            ConcurrentSkipListSet<Sensor> sensorSet = new ConcurrentSkipListSet<>(getSensors());
-            sensorSet.forEach(sensor -> changeSensorActivationStatus(sensor, false));
+        alarmLock.lock();
+        try {
+            securityRepository.setArmingStatus(armingStatus);
+            if(catDetection && armingStatus == ArmingStatus.ARMED_HOME) {
+                setAlarmStatus(AlarmStatus.ALARM);
+            }
+            if(armingStatus == ArmingStatus.DISARMED) {
+                setAlarmStatus(AlarmStatus.NO_ALARM);
+            } else {
+                updateSensorActivations(activeSensorsSetTo(false));
+            }
+        } finally {
+            alarmLock.unlock();
+            for(ReentrantLock sensorLock : sensorLocks) {
+                sensorLock.unlock();
+            }
         }
-        securityRepository.setArmingStatus(armingStatus);
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        statusEventBus.publishSensorStatusChanged();
+        timer.stop(start);
     }
+
     /**
-     * Internal method that returns all sensor states.
+     * Returns true if no sensor is currently active. Backed by the repository's live count, so this
+     * doesn't scan the sensors.
      */
-    private boolean sensorsStatus (boolean status) {
-        return getSensors().stream().allMatch(s -> s.getActive() == status);
+    public boolean allSensorsInactive() {
+        return getActiveSensorCount() == 0;
+    }
+
+    public int getActiveSensorCount() {
+        return securityRepository.getActiveSensorCount();
+    }
+
+    public int getActiveSensorCount(SensorType sensorType) {
+        return securityRepository.getActiveSensorCount(sensorType);
+    }
+
+    /**
+     * Internal method that records a camera's verdict and re-evaluates the alarm over all cameras.
+     * @param cat True if the camera sees a cat, otherwise false.
+     */
+    private void catDetected(String cameraId, boolean cat) {
+        alarmLock.lock();
+        try {
+            Camera camera = cameras.get(cameraId);
+            if(camera == null) {
+                return; //removed while its frame was being analyzed
+            }
+            camera.catDetected = cat;
+            applyCatDetection(cat || anyCameraSeesCat());
+        } finally {
+            alarmLock.unlock();
+        }
     }
 
     /**
      * Internal method that handles alarm status changes based on whether
-     * the camera currently shows a cat.
+     * any camera currently shows a cat.
      * @param cat True if a cat is detected, otherwise false.
      */
-    private void catDetected(Boolean cat) {
+    private void applyCatDetection(boolean cat) {
         catDetection = cat;
-        if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!cat && sensorsStatus(false)) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        }
+        transitionAlarm(current -> {
+            if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
+                return AlarmStatus.ALARM;
+            } else if (!cat && allSensorsInactive()) {
+                return AlarmStatus.NO_ALARM;
+            }
+            return current;
+        });
 
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        statusEventBus.publishCatDetected(cat);
     }
 
     /**
-     * Register the StatusListener for alarm system updates from within the SecurityService.
+     * Register the StatusListener for alarm system updates from within the SecurityService. The listener
+     * is called on whichever thread makes the change.
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        addStatusListener(statusListener, Runnable::run);
+    }
+
+    /**
+     * Register the StatusListener for alarm system updates, delivered on the given executor. Events that
+     * pile up before the executor gets to them are coalesced to the latest state.
+     * @param statusListener
+     * @param executor Where the listener is called, e.g. {@code SwingUtilities::invokeLater}
+     */
+    public void addStatusListener(StatusListener statusListener, Executor executor) {
+        statusEventBus.subscribe(statusListener, executor);
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        statusEventBus.unsubscribe(statusListener);
     }
 
     /**
@@ -89,33 +345,65 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
-        securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        Instruments instruments = this.instruments;
+        long start = instruments.setAlarmStatus.start();
+        alarmLock.lock();
+        try {
+            if(instruments.enabled && securityRepository.getAlarmStatus() != status) {
+                instruments.alarmTransitions.increment();
+            }
+            securityRepository.setAlarmStatus(status);
+            statusEventBus.publishAlarmStatus(status);
+        } finally {
+            alarmLock.unlock();
+        }
+        instruments.setAlarmStatus.stop(start);
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Internal method that atomically reads the alarm status, works out the next one and stores it if it
+     * differs. Listeners are notified before the lock is released, so they see transitions in order.
+     * @param transition Computes the next alarm status from the current one
      */
-    private void handleSensorActivated() {
-        if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
-        }
-        switch(securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+    private void transitionAlarm(UnaryOperator<AlarmStatus> transition) {
+        alarmLock.lock();
+        try {
+            AlarmStatus current = securityRepository.getAlarmStatus();
+            AlarmStatus next = transition.apply(current);
+            if(next != current) {
+                setAlarmStatus(next);
+            }
+        } finally {
+            alarmLock.unlock();
         }
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Internal method that works out the alarm status after a single sensor changes state.
+     * @param current The alarm status before the change
+     * @param armingStatus The current arming status
+     * @param wasActive Whether the sensor was active before the change
+     * @param active Whether the sensor is active after the change
      */
-    private void handleSensorDeactivated() {
-        if (securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-
-            //removed - if a sensor goes inactive it shouldn't turn off the alarm
-            //case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+    private static AlarmStatus nextAlarmStatus(AlarmStatus current, ArmingStatus armingStatus, boolean wasActive, boolean active) {
+        if(current == AlarmStatus.ALARM) {
+            return current; //an active alarm is only cleared by disarming
+        }
+        if(active) {
+            if(armingStatus == ArmingStatus.DISARMED) {
+                return current; //no problem if the system is disarmed
+            }
+            if(current == AlarmStatus.NO_ALARM) {
+                return AlarmStatus.PENDING_ALARM;
+            }
+            if(current == AlarmStatus.PENDING_ALARM) {
+                return AlarmStatus.ALARM;
+            }
+        } else if(wasActive && current == AlarmStatus.PENDING_ALARM) {
+            //if a sensor goes inactive it shouldn't turn off a full alarm, only a pending one
+            return AlarmStatus.NO_ALARM;
         }
+        return current;
     }
 
     /**
@@ -124,19 +412,162 @@ public class SecurityService {
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        AlarmStatus currentAlarmStatus = securityRepository.getAlarmStatus();
+        Instruments instruments = this.instruments;
+        long start = instruments.changeSensorActivationStatus.start();
+        instruments.sensorEvents.increment();
+        ReentrantLock sensorLock = sensorLock(sensor);
+        sensorLock.lock();
+        try {
+            boolean wasActive = sensor.getActive();
+            ArmingStatus armingStatus = securityRepository.getArmingStatus();
+            AlarmStatus seen = securityRepository.getAlarmStatus();
+            if(nextAlarmStatus(seen, armingStatus, wasActive, active) != seen) {
+                //same as transitionAlarm, spelled out so a single sensor event allocates nothing.
+                //The alarm may have moved since it was read, so the rules are applied again
+                alarmLock.lock();
+                try {
+                    AlarmStatus current = securityRepository.getAlarmStatus();
+                    AlarmStatus next = nextAlarmStatus(current, armingStatus, wasActive, active);
+                    if(next != current) {
+                        setAlarmStatus(next);
+                    }
+                } finally {
+                    alarmLock.unlock();
+                }
+            }
+            sensor.setActive(active);
+            securityRepository.updateSensor(sensor);
+        } finally {
+            sensorLock.unlock();
+        }
+        instruments.changeSensorActivationStatus.stop(start);
+    }
+
+    private ReentrantLock sensorLock(Sensor sensor) {
+        return sensorLocks[sensorLockIndex(sensor)];
+    }
+
+    private int sensorLockIndex(Sensor sensor) {
+        int h = sensor.hashCode(); //the id's hash, without making table-backed sensors create their UUID
+        return (h ^ (h >>> 16)) & (sensorLocks.length - 1);
+    }
+
+    /**
+     * Change the activation status of several sensors at once. The alarm rules are applied to each change in
+     * iteration order, exactly as if {@link #changeSensorActivationStatus(Sensor, Boolean)} were called for each,
+     * but the sensors are persisted in one repository write and listeners hear about the result once.
+     * @param activations Desired activation status by sensor id. Ids of unknown sensors are ignored.
+     */
+    public void changeSensorActivationStatuses(Map<UUID, Boolean> activations) {
+        Instruments instruments = this.instruments;
+        long start = instruments.changeSensorActivationStatuses.start();
+        instruments.sensorEvents.add(activations.size());
+        Map<Sensor, Boolean> batch = new LinkedHashMap<>();
+        activations.forEach((sensorId, active) -> {
+            Sensor sensor = securityRepository.getSensor(sensorId);
+            if(sensor != null) {
+                batch.put(sensor, active);
+            }
+        });
+        applySensorActivations(batch);
+        if(!batch.isEmpty()) {
+            statusEventBus.publishSensorStatusChanged();
+        }
+        instruments.changeSensorActivationStatuses.stop(start);
+    }
+
+    /**
+     * Deactivate every active sensor as a single batch.
+     */
+    public void deactivateAllSensors() {
+        Map<Sensor, Boolean> batch = activeSensorsSetTo(false);
+        applySensorActivations(batch);
+        if(!batch.isEmpty()) {
+            statusEventBus.publishSensorStatusChanged();
+        }
+    }
 
-        if (currentAlarmStatus != AlarmStatus.ALARM) {
-            if(!sensor.getActive() && active) {
-                handleSensorActivated();
-            } else if (sensor.getActive() && !active) {
-                handleSensorDeactivated();
-            } else if (sensor.getActive() && active) {
-                handleSensorActivated();
+    private Map<Sensor, Boolean> activeSensorsSetTo(boolean active) {
+        Set<Sensor> sensors = getSensors();
+        Collection<Sensor> activeSensors = sensors instanceof IndexedSensorSet
+                ? ((IndexedSensorSet) sensors).active()
+                : sensors.stream().filter(s -> Boolean.TRUE.equals(s.getActive())).collect(Collectors.toList());
+        Map<Sensor, Boolean> batch = new LinkedHashMap<>();
+        activeSensors.forEach(sensor -> batch.put(sensor, active));
+        return batch;
+    }
+
+    /**
+     * Internal method that runs a batch of activation changes through the alarm rules, persists the
+     * sensors once and sets the resulting alarm status once if it changed.
+     */
+    private void applySensorActivations(Map<Sensor, Boolean> batch) {
+        if(batch.isEmpty()) {
+            return;
+        }
+        //take every stripe the batch touches, in index order so batches can't deadlock each other
+        BitSet stripes = new BitSet(sensorLocks.length);
+        batch.keySet().forEach(sensor -> stripes.set(sensorLockIndex(sensor)));
+        stripes.stream().forEach(i -> sensorLocks[i].lock());
+        try {
+            AlarmStatus seen = securityRepository.getAlarmStatus();
+            if(alarmStatusAfter(batch, seen) != seen) {
+                alarmLock.lock();
+                try {
+                    applyAlarmRules(batch);
+                } finally {
+                    alarmLock.unlock();
+                }
             }
+            setSensorActivations(batch);
+        } finally {
+            stripes.stream().forEach(i -> sensorLocks[i].unlock());
         }
-        sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
+    }
+
+    /**
+     * Internal method that does the work of {@link #applySensorActivations(Map)} for a caller that already
+     * holds the stripes of every sensor in the batch and the alarm lock.
+     */
+    private void updateSensorActivations(Map<Sensor, Boolean> batch) {
+        if(batch.isEmpty()) {
+            return;
+        }
+        applyAlarmRules(batch);
+        setSensorActivations(batch);
+    }
+
+    /**
+     * Internal method that sets the alarm status the batch leads to, if it differs. The caller must hold the
+     * stripes of every sensor in the batch and the alarm lock.
+     */
+    private void applyAlarmRules(Map<Sensor, Boolean> batch) {
+        AlarmStatus current = securityRepository.getAlarmStatus();
+        AlarmStatus next = alarmStatusAfter(batch, current);
+        if(next != current) {
+            setAlarmStatus(next);
+        }
+    }
+
+    /**
+     * @return The alarm status after running each change of the batch through the alarm rules, in order,
+     *         starting from the given one. The sensors aren't changed.
+     */
+    private AlarmStatus alarmStatusAfter(Map<Sensor, Boolean> batch, AlarmStatus alarmStatus) {
+        ArmingStatus armingStatus = securityRepository.getArmingStatus();
+        for(Map.Entry<Sensor, Boolean> change : batch.entrySet()) {
+            alarmStatus = nextAlarmStatus(alarmStatus, armingStatus, change.getKey().getActive(), change.getValue());
+        }
+        return alarmStatus;
+    }
+
+    /**
+     * Internal method that stores the new activation of every sensor in the batch with one repository write.
+     * The caller must hold the stripes of every sensor in the batch.
+     */
+    private void setSensorActivations(Map<Sensor, Boolean> batch) {
+        batch.forEach(Sensor::setActive);
+        securityRepository.updateSensors(batch.keySet());
     }
 
     /**
@@ -145,7 +576,141 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        processImage(DEFAULT_CAMERA, currentCameraImage);
+    }
+
+    /**
+     * Like {@link #processImage(BufferedImage)}, for the named camera.
+     * @param cameraId Camera the image came from
+     * @param currentCameraImage
+     */
+    public void processImage(String cameraId, BufferedImage currentCameraImage) {
+        Timer timer = instruments.processImage;
+        long start = timer.start();
+        Camera camera = camera(cameraId);
+        try {
+            if(!camera.framePreFilter.hasSignificantChange(currentCameraImage)) {
+                catDetected(cameraId, camera.catDetected); //nothing changed, so neither has the verdict
+            } else {
+                catDetected(cameraId, imageContainsCat(currentCameraImage));
+            }
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    /**
+     * Classifies the latest frame from each of several cameras with a single batch call to the image
+     * service, then applies all the verdicts at once. Frames their camera's pre-filter reports as
+     * unchanged keep the camera's previous verdict and aren't sent, and so do frames the service reports as
+     * {@link CatDetection#unknown()}.
+     * @param framesByCamera Latest frame of each camera, by camera id
+     */
+    public void processImages(Map<String, BufferedImage> framesByCamera) {
+        Instruments instruments = this.instruments;
+        long start = instruments.processImage.start();
+        List<String> changedCameras = new ArrayList<>();
+        List<BufferedImage> changedFrames = new ArrayList<>();
+        framesByCamera.forEach((cameraId, frame) -> {
+            if(camera(cameraId).framePreFilter.hasSignificantChange(frame)) {
+                changedCameras.add(cameraId);
+                changedFrames.add(frame);
+            }
+        });
+
+        try {
+            List<CatDetection> detections = List.of();
+            if(!changedFrames.isEmpty()) {
+                long detectStart = instruments.detectCats.start();
+                try {
+                    detections = imageService.detectCats(changedFrames, CAT_CONFIDENCE_THRESHOLD);
+                } finally {
+                    instruments.detectCats.stop(detectStart);
+                }
+            }
+
+            alarmLock.lock();
+            try {
+                for(int i = 0; i < changedCameras.size(); i++) {
+                    Camera camera = cameras.get(changedCameras.get(i));
+                    //a frame no service could classify leaves the camera's previous verdict in place
+                    if(camera != null && detections.get(i).isKnown()) {
+                        camera.catDetected = detections.get(i).containsCat();
+                    }
+                }
+                applyCatDetection(anyCameraSeesCat());
+            } finally {
+                alarmLock.unlock();
+            }
+        } finally {
+            instruments.processImage.stop(start);
+        }
+    }
+
+    private boolean imageContainsCat(BufferedImage image) {
+        Timer timer = instruments.imageContainsCat;
+        long start = timer.start();
+        try {
+            return imageService.imageContainsCat(image, CAT_CONFIDENCE_THRESHOLD);
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    /**
+     * Like {@link #processImage(BufferedImage)}, but the image is analyzed on a worker thread so the caller
+     * never waits on the image service. Verdicts update the alarm status in the order the images were
+     * submitted; an image that is superseded before its verdict is applied may be dropped.
+     * @param currentCameraImage
+     * @return Completes with the verdict once it has been applied to the alarm status
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        return processImageAsync(DEFAULT_CAMERA, currentCameraImage);
+    }
+
+    /**
+     * Like {@link #processImageAsync(BufferedImage)}, for the named camera. Images from different cameras
+     * are analyzed in parallel; each camera's verdicts are applied in the order its images were submitted,
+     * and a new image only supersedes older images from the same camera.
+     * @param cameraId Camera the image came from
+     * @param currentCameraImage
+     * @return Completes with the verdict once it has been applied to the alarm status
+     */
+    public CompletableFuture<Boolean> processImageAsync(String cameraId, BufferedImage currentCameraImage) {
+        Camera camera = camera(cameraId);
+        ImageAnalysisPipeline pipeline = getImageAnalysisPipeline(cameraId, camera);
+        //filter on the caller's thread so the background model sees frames in order
+        synchronized (camera) {
+            if(camera.framePreFilter.hasSignificantChange(currentCameraImage)) {
+                camera.lastAnalysis = pipeline.submit(() -> imageContainsCat(currentCameraImage), cat -> catDetected(cameraId, cat));
+                return camera.lastAnalysis;
+            }
+            if(camera.lastAnalysis != null && !camera.lastAnalysis.isDone()) {
+                //nothing changed since a frame that is still being analyzed, so this frame gets its verdict.
+                //It must not go through the pipeline, where it would supersede that analysis
+                return sameVerdict(camera.lastAnalysis);
+            }
+            return pipeline.submit(() -> camera.catDetected, cat -> catDetected(cameraId, cat));
+        }
+    }
+
+    /**
+     * A future that completes the same way as the given analysis. If that analysis is superseded the
+     * copy is cancelled too, rather than failing with a wrapped CancellationException.
+     */
+    private static CompletableFuture<Boolean> sameVerdict(CompletableFuture<Boolean> analysis) {
+        CompletableFuture<Boolean> verdict = new CompletableFuture<>();
+        analysis.whenComplete((cat, failure) -> {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if(cause == null) {
+                verdict.complete(cat);
+            } else if(cause instanceof CancellationException) {
+                verdict.cancel(false);
+            } else {
+                verdict.completeExceptionally(cause);
+            }
+        });
+        return verdict;
     }
 
     public AlarmStatus getAlarmStatus() {
@@ -156,6 +721,31 @@ public class SecurityService {
         return securityRepository.getSensors();
     }
 
+    /**
+     * @return Completes once the repository has loaded every sensor, after which {@link #getSensors()} doesn't wait
+     */
+    public CompletableFuture<Void> sensorsLoaded() {
+        return securityRepository.sensorsLoaded();
+    }
+
+    /**
+     * @return The sensor with the given id, or null if there is none
+     */
+    public Sensor getSensor(UUID sensorId) {
+        return securityRepository.getSensor(sensorId);
+    }
+
+    /**
+     * Returns all sensors in display order. Uses the repository's cached sorted view when it keeps one.
+     */
+    public List<Sensor> getSortedSensors() {
+        Set<Sensor> sensors = getSensors();
+        if(sensors instanceof IndexedSensorSet) {
+            return ((IndexedSensorSet) sensors).sortedByName();
+        }
+        return sensors.stream().sorted().collect(Collectors.toList());
+    }
+
     public void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
     }
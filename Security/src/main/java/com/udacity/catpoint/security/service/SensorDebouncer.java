@@ -0,0 +1,317 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Filters chattering sensors before their changes reach the SecurityService. A new state has to
+ * hold for the dwell time of the sensor's type before it is passed on; a sensor that flips back
+ * within that time produces no change at all, and repeats of a state the sensor already has or
+ * is already waiting for are dropped. Changes that come due together are passed on as one batch
+ * through {@link SecurityService#changeSensorActivationStatuses(Map)}.
+ *
+ * Waiting changes are kept in a hashed timer wheel advanced by a single thread, so the cost of
+ * a change doesn't grow with the number of sensors being watched. Dwell times are rounded up to
+ * whole ticks. A type with a zero dwell time passes changes straight through, still dropping repeats.
+ *
+ * Changes are passed on outside the lock, one at a time per sensor: while a sensor's change is being
+ * passed on, repeats are judged against that change, and a zero-dwell change that arrives meanwhile
+ * is passed on by the same thread once the first has been applied.
+ */
+public class SensorDebouncer implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(SensorDebouncer.class.getName());
+
+    private static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static class PendingChange {
+        private final UUID sensorId;
+        private boolean active;
+        private long remainingRounds;
+        private boolean cancelled;
+        //state to pass on once this change has been applied, while it is being forwarded
+        private Boolean followUp;
+
+        private PendingChange(UUID sensorId, boolean active, long remainingRounds) {
+            this.sensorId = sensorId;
+            this.active = active;
+            this.remainingRounds = remainingRounds;
+        }
+
+        private boolean latest() {
+            return followUp != null ? followUp : active;
+        }
+    }
+
+    private final SecurityService securityService;
+    private final EnumMap<SensorType, Long> dwellTicks = new EnumMap<>(SensorType.class);
+    private final long tickNanos;
+    private final Thread ticker;
+    private volatile boolean closed;
+
+    //guarded by this
+    private final List<PendingChange>[] wheel;
+    private final Map<UUID, PendingChange> pending = new HashMap<>();
+    private final Map<UUID, PendingChange> forwarding = new HashMap<>();
+    private long currentTick;
+
+    private final LongAdder receivedEvents = new LongAdder();
+    private final LongAdder suppressedEvents = new LongAdder();
+    private final LongAdder forwardedChanges = new LongAdder();
+    private final LongAdder failedTicks = new LongAdder();
+
+    /**
+     * Dwell times that suit typical hardware: contacts on doors and windows bounce for a few tens of
+     * milliseconds, while motion sensors tend to flicker for much longer.
+     */
+    public static Map<SensorType, Duration> defaultDwellTimes() {
+        EnumMap<SensorType, Duration> dwellTimes = new EnumMap<>(SensorType.class);
+        dwellTimes.put(SensorType.DOOR, Duration.ofMillis(100));
+        dwellTimes.put(SensorType.WINDOW, Duration.ofMillis(100));
+        dwellTimes.put(SensorType.MOTION, Duration.ofMillis(500));
+        return dwellTimes;
+    }
+
+    /**
+     * @param securityService Service that receives the settled changes
+     * @param dwellTimes How long a new state must hold, by sensor type. Missing types are passed straight through.
+     */
+    public SensorDebouncer(SecurityService securityService, Map<SensorType, Duration> dwellTimes) {
+        this(securityService, dwellTimes, DEFAULT_TICK, DEFAULT_WHEEL_SIZE, true);
+    }
+
+    /**
+     * @param securityService Service that receives the settled changes
+     * @param dwellTimes How long a new state must hold, by sensor type. Missing types are passed straight through.
+     * @param tick Resolution of the timer wheel
+     * @param wheelSize Number of slots in the timer wheel. Dwell times longer than a full turn still work,
+     *                  but their changes are looked at once per turn while they wait.
+     */
+    public SensorDebouncer(SecurityService securityService, Map<SensorType, Duration> dwellTimes, Duration tick, int wheelSize) {
+        this(securityService, dwellTimes, tick, wheelSize, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    SensorDebouncer(SecurityService securityService, Map<SensorType, Duration> dwellTimes, Duration tick, int wheelSize, boolean startTicker) {
+        if(tick.isNegative() || tick.isZero() || wheelSize < 1) {
+            throw new IllegalArgumentException("tick must be positive and wheelSize at least 1");
+        }
+        this.securityService = securityService;
+        this.tickNanos = tick.toNanos();
+        dwellTimes.forEach((type, dwell) -> dwellTicks.put(type, (dwell.toNanos() + tickNanos - 1) / tickNanos));
+        this.wheel = new List[wheelSize];
+        for(int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        if(startTicker) {
+            ticker = new Thread(this::runTicker, "sensor-debouncer");
+            ticker.setDaemon(true);
+            ticker.start();
+        } else {
+            ticker = null;
+        }
+    }
+
+    /**
+     * Reports a state seen on a sensor.
+     * @param sensor The sensor
+     * @param active State the sensor reported
+     */
+    public void submit(Sensor sensor, boolean active) {
+        receivedEvents.increment();
+        long ticks = dwellTicks.getOrDefault(sensor.getSensorType(), 0L);
+        PendingChange change;
+        synchronized (this) {
+            PendingChange waiting = pending.get(sensor.getSensorId());
+            if(waiting != null) {
+                if(waiting.active == active) {
+                    suppressedEvents.increment();
+                } else {
+                    //flipped back before the dwell time passed: neither edge gets through
+                    waiting.cancelled = true;
+                    pending.remove(sensor.getSensorId());
+                    suppressedEvents.add(2);
+                }
+                return;
+            }
+            //a change that is being passed on counts as the sensor's state, even before it is applied
+            PendingChange forwarded = forwarding.get(sensor.getSensorId());
+            Boolean current = forwarded != null ? Boolean.valueOf(forwarded.latest()) : sensor.getActive();
+            if(Boolean.valueOf(active).equals(current)) {
+                suppressedEvents.increment();
+                return;
+            }
+            if(ticks > 0) {
+                long due = currentTick + ticks;
+                change = new PendingChange(sensor.getSensorId(), active, (ticks - 1) / wheel.length);
+                pending.put(sensor.getSensorId(), change);
+                wheel[(int) (due % wheel.length)].add(change);
+                return;
+            }
+            if(forwarded != null) {
+                //the thread passing on this sensor's last change passes this one on after it
+                if(forwarded.followUp != null) {
+                    forwarded.followUp = null;
+                    suppressedEvents.add(2);
+                } else {
+                    forwarded.followUp = active;
+                }
+                return;
+            }
+            change = new PendingChange(sensor.getSensorId(), active, 0);
+            forwarding.put(sensor.getSensorId(), change);
+        }
+        List<PendingChange> changes = List.of(change);
+        try {
+            while(!changes.isEmpty()) {
+                forwardedChanges.increment();
+                securityService.changeSensorActivationStatus(sensor, change.active);
+                changes = followUps(changes);
+            }
+        } finally {
+            stopForwarding(changes);
+        }
+    }
+
+    /**
+     * Reports a state seen on a sensor, identified by id. Events for unknown sensors are ignored.
+     */
+    public void submit(UUID sensorId, boolean active) {
+        Sensor sensor = securityService.getSensor(sensorId);
+        if(sensor != null) {
+            submit(sensor, active);
+        }
+    }
+
+    private void runTicker() {
+        long nextTick = System.nanoTime() + tickNanos;
+        while(!closed) {
+            long wait = nextTick - System.nanoTime();
+            if(wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                //the changes that came due are lost, but later ones must still get through
+                failedTicks.increment();
+                log.log(System.Logger.Level.ERROR, "Could not pass on debounced sensor changes", e);
+            }
+            nextTick += tickNanos;
+        }
+    }
+
+    /**
+     * Advances the wheel by one slot and passes on every change that has come due.
+     */
+    void tick() {
+        List<PendingChange> due = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            Iterator<PendingChange> it = wheel[(int) (currentTick % wheel.length)].iterator();
+            while(it.hasNext()) {
+                PendingChange change = it.next();
+                if(change.cancelled) {
+                    it.remove();
+                } else if(change.remainingRounds > 0) {
+                    change.remainingRounds--;
+                } else {
+                    it.remove();
+                    pending.remove(change.sensorId);
+                    forwarding.put(change.sensorId, change);
+                    due.add(change);
+                }
+            }
+        }
+        try {
+            while(!due.isEmpty()) {
+                Map<UUID, Boolean> activations = new LinkedHashMap<>();
+                due.forEach(change -> activations.put(change.sensorId, change.active));
+                forwardedChanges.add(activations.size());
+                securityService.changeSensorActivationStatuses(activations);
+                due = followUps(due);
+            }
+        } finally {
+            stopForwarding(due);
+        }
+    }
+
+    /**
+     * Internal method called once changes have been applied. Changes with a follow-up state take it on
+     * and are returned to be passed on again; the rest are no longer being forwarded.
+     */
+    private synchronized List<PendingChange> followUps(List<PendingChange> applied) {
+        List<PendingChange> again = new ArrayList<>();
+        for(PendingChange change : applied) {
+            if(change.followUp != null) {
+                change.active = change.followUp;
+                change.followUp = null;
+                again.add(change);
+            } else {
+                forwarding.remove(change.sensorId, change);
+            }
+        }
+        return again;
+    }
+
+    private synchronized void stopForwarding(List<PendingChange> changes) {
+        changes.forEach(change -> forwarding.remove(change.sensorId, change));
+    }
+
+    /**
+     * Stops the timer. Changes still waiting are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if(ticker != null) {
+            LockSupport.unpark(ticker);
+            try {
+                ticker.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            pending.clear();
+            forwarding.clear();
+            for(List<PendingChange> slot : wheel) {
+                slot.clear();
+            }
+        }
+    }
+
+    public long getReceivedEvents() {
+        return receivedEvents.sum();
+    }
+
+    /**
+     * @return Events dropped as repeats or as part of a flip that reverted within the dwell time
+     */
+    public long getSuppressedEvents() {
+        return suppressedEvents.sum();
+    }
+
+    public long getForwardedChanges() {
+        return forwardedChanges.sum();
+    }
+
+    /**
+     * @return Ticks whose changes the SecurityService threw on. Those changes are dropped.
+     */
+    public long getFailedTicks() {
+        return failedTicks.sum();
+    }
+
+    public synchronized int getPendingChanges() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,130 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import com.udacity.catpoint.security.metrics.Timer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers status events from the SecurityService to its listeners. Each listener has its own
+ * executor, for example {@code SwingUtilities::invokeLater} for Swing panels, and its own pending
+ * events. Publishing only records the event and schedules a delivery if none is scheduled yet,
+ * so it never waits on a listener.
+ *
+ * Pending events are coalesced: a listener that falls behind is only told the latest alarm status,
+ * the latest cat verdict and, once, that sensors changed. Each listener therefore has at most three
+ * events waiting no matter how fast they are published, and a slow listener only delays itself.
+ * Listeners registered with a direct executor ({@code Runnable::run}) are called on the publishing
+ * thread, as before.
+ */
+public class StatusEventBus {
+
+    private static final System.Logger log = System.getLogger(StatusEventBus.class.getName());
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile Timer dispatchTimer = MetricsRegistry.disabled().timer("listener.dispatch");
+
+    private class Subscription {
+        private final StatusListener listener;
+        private final Executor executor;
+
+        private final AtomicReference<AlarmStatus> pendingAlarmStatus = new AtomicReference<>();
+        private final AtomicReference<Boolean> pendingCatDetected = new AtomicReference<>();
+        private final AtomicBoolean pendingSensorStatusChanged = new AtomicBoolean();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Subscription(StatusListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        private void schedule() {
+            if(scheduled.compareAndSet(false, true)) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        /**
+         * Hands every pending event to the listener. Events published during delivery are picked up by
+         * the same run, or by a new one if they arrive just after it finishes.
+         */
+        private void deliver() {
+            do {
+                AlarmStatus alarmStatus = pendingAlarmStatus.getAndSet(null);
+                if(alarmStatus != null) {
+                    dispatch(() -> listener.notify(alarmStatus));
+                }
+                Boolean catDetected = pendingCatDetected.getAndSet(null);
+                if(catDetected != null) {
+                    dispatch(() -> listener.catDetected(catDetected));
+                }
+                if(pendingSensorStatusChanged.getAndSet(false)) {
+                    dispatch(listener::sensorStatusChanged);
+                }
+                scheduled.set(false);
+            } while(hasPending() && scheduled.compareAndSet(false, true));
+        }
+
+        private boolean hasPending() {
+            return pendingAlarmStatus.get() != null || pendingCatDetected.get() != null || pendingSensorStatusChanged.get();
+        }
+
+        private void dispatch(Runnable event) {
+            Timer timer = dispatchTimer;
+            long start = timer.start();
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                //one broken listener mustn't stop the others from hearing about the event
+                log.log(System.Logger.Level.ERROR, "Status listener " + listener + " failed", e);
+            }
+            timer.stop(start);
+        }
+    }
+
+    /**
+     * @param dispatchTimer Records how long each listener call takes
+     */
+    public void setDispatchTimer(Timer dispatchTimer) {
+        this.dispatchTimer = dispatchTimer;
+    }
+
+    /**
+     * @param listener Listener to add
+     * @param executor Where the listener's events are delivered
+     */
+    public void subscribe(StatusListener listener, Executor executor) {
+        subscriptions.add(new Subscription(listener, executor));
+    }
+
+    public void unsubscribe(StatusListener listener) {
+        subscriptions.removeIf(s -> s.listener == listener);
+    }
+
+    public void publishAlarmStatus(AlarmStatus status) {
+        for(Subscription subscription : subscriptions) {
+            subscription.pendingAlarmStatus.set(status);
+            subscription.schedule();
+        }
+    }
+
+    public void publishCatDetected(boolean catDetected) {
+        for(Subscription subscription : subscriptions) {
+            subscription.pendingCatDetected.set(catDetected);
+            subscription.schedule();
+        }
+    }
+
+    public void publishSensorStatusChanged() {
+        for(Subscription subscription : subscriptions) {
+            subscription.pendingSensorStatusChanged.set(true);
+            subscription.schedule();
+        }
+    }
+}
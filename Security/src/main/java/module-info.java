@@ -3,6 +3,7 @@ module com.udacity.catpoint.security {
     requires java.desktop;
     requires com.google.gson;
     requires java.prefs;
+    requires java.management;
     requires transitive com.udacity.catpoint.image;
     requires com.google.common;
     opens com.udacity.catpoint.security.data to com.google.gson;
@@ -0,0 +1,262 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+public class SensorEventServerTest
+{
+    private static void putEvent(ByteBuffer buffer, UUID sensorId, boolean active, long timestamp) {
+        buffer.putLong(sensorId.getMostSignificantBits());
+        buffer.putLong(sensorId.getLeastSignificantBits());
+        buffer.put((byte) (active ? 1 : 0));
+        buffer.putLong(timestamp);
+    }
+
+    private static void awaitBatches(SensorEventServer server, long batches) throws InterruptedException {
+        await(server::getBatchesApplied, batches);
+    }
+
+    private static void await(LongSupplier counter, long target) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(counter.getAsLong() < target) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "only got to " + counter.getAsLong() + " of " + target);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void sendOverTcp(SensorEventServer server, ByteBuffer events) throws Exception {
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            events.flip();
+            while(events.hasRemaining()) {
+                client.write(events);
+            }
+        }
+    }
+
+    @Test
+    public void tcpEventsSplitAcrossWritesActivateSensorsAndRaiseAlarm () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        securityService.addSensor(door);
+        securityService.addSensor(window);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, false);
+             SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 * SensorEventServer.EVENT_SIZE);
+            putEvent(buffer, door.getSensorId(), true, 1);
+            putEvent(buffer, window.getSensorId(), true, 1);
+            buffer.flip();
+            //send the second event in two pieces to exercise reassembly
+            buffer.limit(SensorEventServer.EVENT_SIZE + 10);
+            client.write(buffer);
+            awaitBatches(server, 1);
+            buffer.limit(buffer.capacity());
+            client.write(buffer);
+            awaitBatches(server, 2);
+        }
+
+        Assertions.assertTrue(repository.getSensor(door.getSensorId()).getActive());
+        Assertions.assertTrue(repository.getSensor(window.getSensorId()).getActive());
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void partialEventsOnDifferentConnectionsAreKeptApart () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        securityService.addSensor(door);
+        securityService.addSensor(window);
+
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, false);
+             SocketChannel doorClient = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+             SocketChannel windowClient = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer doorEvent = ByteBuffer.allocate(SensorEventServer.EVENT_SIZE);
+            putEvent(doorEvent, door.getSensorId(), true, 1);
+            ByteBuffer windowEvent = ByteBuffer.allocate(SensorEventServer.EVENT_SIZE);
+            putEvent(windowEvent, window.getSensorId(), true, 1);
+            doorEvent.flip().limit(7);
+            windowEvent.flip().limit(11);
+
+            //both connections are left partway through an event, then finish it
+            doorClient.write(doorEvent);
+            windowClient.write(windowEvent);
+            doorEvent.limit(doorEvent.capacity());
+            windowEvent.limit(windowEvent.capacity());
+            windowClient.write(windowEvent);
+            doorClient.write(doorEvent);
+            await(server::getEventsReceived, 2);
+        }
+
+        Assertions.assertTrue(repository.getSensor(door.getSensorId()).getActive());
+        Assertions.assertTrue(repository.getSensor(window.getSensorId()).getActive());
+    }
+
+    @Test
+    public void udpEventsOlderThanTheLastAppliedAreDiscarded () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        securityService.addSensor(motion);
+
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, false);
+             DatagramChannel client = DatagramChannel.open().connect(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer buffer = ByteBuffer.allocate(SensorEventServer.EVENT_SIZE);
+            putEvent(buffer, motion.getSensorId(), true, 200);
+            client.write(buffer.flip());
+            awaitBatches(server, 1);
+
+            buffer.clear();
+            putEvent(buffer, motion.getSensorId(), false, 100);
+            client.write(buffer.flip());
+            await(server::getStaleEvents, 1);
+
+            Assertions.assertEquals(1, server.getBatchesApplied());
+        }
+        Assertions.assertTrue(repository.getSensor(motion.getSensorId()).getActive());
+    }
+
+    @Test
+    public void unknownSensorsAreRegisteredWhenEnabled () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        UUID sensorId = UUID.randomUUID();
+
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, true);
+             SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer buffer = ByteBuffer.allocate(SensorEventServer.EVENT_SIZE);
+            putEvent(buffer, sensorId, true, 1);
+            client.write(buffer.flip());
+            awaitBatches(server, 1);
+        }
+
+        Sensor sensor = repository.getSensor(sensorId);
+        Assertions.assertNotNull(sensor);
+        Assertions.assertTrue(sensor.getActive());
+    }
+
+    @Test
+    public void everyEventOfABurstGoesThroughTheAlarmRules () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        securityService.addSensor(motion);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, false)) {
+            ByteBuffer buffer = ByteBuffer.allocate(3 * SensorEventServer.EVENT_SIZE);
+            putEvent(buffer, motion.getSensorId(), true, 1);
+            putEvent(buffer, motion.getSensorId(), false, 2);
+            putEvent(buffer, motion.getSensorId(), true, 3);
+            sendOverTcp(server, buffer);
+            awaitBatches(server, 3);
+        }
+
+        Assertions.assertTrue(repository.getSensor(motion.getSensorId()).getActive());
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void activationInsideABurstIsNotLost () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        securityService.addSensor(motion);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        //only the last event would leave the sensor as it was, but the activation in between escalates the alarm
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, false)) {
+            ByteBuffer buffer = ByteBuffer.allocate(3 * SensorEventServer.EVENT_SIZE);
+            putEvent(buffer, motion.getSensorId(), false, 1);
+            putEvent(buffer, motion.getSensorId(), true, 2);
+            putEvent(buffer, motion.getSensorId(), false, 3);
+            sendOverTcp(server, buffer);
+            awaitBatches(server, 3);
+        }
+
+        Assertions.assertFalse(repository.getSensor(motion.getSensorId()).getActive());
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void failingBatchIsDroppedAndTheServerKeepsGoing () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        Sensor broken = new Sensor("Broken", SensorType.DOOR);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        SecurityService securityService = new SecurityService(repository, new FakeImageService()) {
+            @Override
+            public void changeSensorActivationStatuses(Map<UUID, Boolean> activations) {
+                if(activations.containsKey(broken.getSensorId())) {
+                    throw new IllegalStateException("repository unavailable");
+                }
+                super.changeSensorActivationStatuses(activations);
+            }
+        };
+        securityService.addSensor(broken);
+        securityService.addSensor(motion);
+
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, false)) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 * SensorEventServer.EVENT_SIZE);
+            putEvent(buffer, broken.getSensorId(), true, 1);
+            putEvent(buffer, broken.getSensorId(), true, 2);
+            sendOverTcp(server, buffer);
+            await(server::getFailedBatches, 2);
+
+            buffer.clear();
+            putEvent(buffer, motion.getSensorId(), true, 1);
+            sendOverTcp(server, buffer);
+            awaitBatches(server, 1);
+
+            Assertions.assertEquals(2, server.getFailedBatches());
+            Assertions.assertTrue(server.isRunning());
+        }
+        Assertions.assertTrue(repository.getSensor(motion.getSensorId()).getActive());
+    }
+
+    @Test
+    public void eventsForUnknownSensorsAreNotRemembered () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        securityService.addSensor(motion);
+
+        try (SensorEventServer server = new SensorEventServer(securityService, 0, false)) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 * SensorEventServer.EVENT_SIZE);
+            putEvent(buffer, motion.getSensorId(), true, 200);
+            putEvent(buffer, UUID.randomUUID(), true, 200);
+            sendOverTcp(server, buffer);
+            awaitBatches(server, 1);
+
+            //once removed and added back, the sensor's old timestamp no longer counts
+            securityService.removeSensor(motion);
+            buffer.clear();
+            putEvent(buffer, motion.getSensorId(), false, 300);
+            sendOverTcp(server, buffer);
+            await(server::getEventsReceived, 3);
+            securityService.addSensor(motion);
+
+            buffer.clear();
+            putEvent(buffer, motion.getSensorId(), true, 100);
+            sendOverTcp(server, buffer);
+            awaitBatches(server, 2);
+            Assertions.assertEquals(0, server.getStaleEvents());
+        }
+    }
+}
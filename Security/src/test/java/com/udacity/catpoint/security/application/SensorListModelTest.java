@@ -0,0 +1,122 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class SensorListModelTest
+{
+    private final List<String> events = new ArrayList<>();
+    private final SensorListModel model = new SensorListModel((sensor, active) -> events.add("clicked " + sensor.getName() + " " + active));
+    private List<Sensor> sensors;
+
+    @BeforeEach
+    void init() {
+        sensors = new ArrayList<>();
+        for(int i = 0; i < 6; i++) {
+            sensors.add(new Sensor("S" + i, SensorType.DOOR));
+        }
+        model.refresh(sensors);
+        model.addTableModelListener(e -> events.add(describe(e)));
+    }
+
+    private static String describe(TableModelEvent e) {
+        if(e.getLastRow() == Integer.MAX_VALUE) {
+            return "all";
+        }
+        return e.getFirstRow() + "-" + e.getLastRow();
+    }
+
+    @Test
+    public void unchangedSensorsReportNothing () {
+        Assertions.assertFalse(model.refresh(sensors));
+        //the same sensors in a new list are still compared row by row
+        Assertions.assertFalse(model.refresh(new ArrayList<>(sensors)));
+        Assertions.assertEquals(List.of(), events);
+    }
+
+    @Test
+    public void changedRowsAreReportedInRuns () {
+        sensors.get(1).setActive(true);
+        sensors.get(2).setName("renamed");
+        sensors.get(4).setSensorType(SensorType.WINDOW);
+        sensors.get(5).setActive(true);
+
+        Assertions.assertFalse(model.refresh(sensors));
+        Assertions.assertEquals(List.of("1-2", "4-5"), events);
+        Assertions.assertEquals(true, model.getValueAt(1, SensorListModel.ACTIVE_COLUMN));
+        Assertions.assertEquals("renamed", model.getValueAt(2, SensorListModel.NAME_COLUMN));
+        Assertions.assertEquals(SensorType.WINDOW, model.getValueAt(4, SensorListModel.TYPE_COLUMN));
+        Assertions.assertEquals(false, model.getValueAt(3, SensorListModel.ACTIVE_COLUMN));
+
+        //rows keep what the sensor looked like at the last refresh
+        sensors.get(0).setActive(true);
+        Assertions.assertEquals(false, model.getValueAt(0, SensorListModel.ACTIVE_COLUMN));
+        events.clear();
+        model.refresh(sensors);
+        Assertions.assertEquals(List.of("0-0"), events);
+    }
+
+    @Test
+    public void addedRemovedOrReorderedSensorsRefreshTheWholeTable () {
+        List<Sensor> added = new ArrayList<>(sensors);
+        added.add(new Sensor("S6", SensorType.MOTION));
+        Assertions.assertTrue(model.refresh(added));
+        Assertions.assertEquals(7, model.getRowCount());
+
+        List<Sensor> removed = new ArrayList<>(sensors.subList(1, 6));
+        Assertions.assertTrue(model.refresh(removed));
+        Assertions.assertSame(removed.get(0), model.getSensorAt(0));
+
+        List<Sensor> reordered = new ArrayList<>(removed);
+        reordered.add(0, reordered.remove(4));
+        Assertions.assertTrue(model.refresh(reordered));
+        Assertions.assertEquals("S5", model.getValueAt(0, SensorListModel.NAME_COLUMN));
+        Assertions.assertEquals(List.of("all", "all", "all"), events);
+    }
+
+    @Test
+    public void selectionIsRestoredAfterAFullRefresh () {
+        JTable table = new JTable(model);
+        ListSelectionModel selection = table.getSelectionModel();
+        selection.addSelectionInterval(1, 1);
+        selection.addSelectionInterval(4, 4);
+
+        //an update keeps the selection as it is
+        sensors.get(1).setActive(true);
+        Assertions.assertFalse(model.refresh(sensors));
+        Assertions.assertArrayEquals(new int[] {1, 4}, table.getSelectedRows());
+
+        Set<Sensor> selected = Set.of(sensors.get(1), sensors.get(4));
+        List<Sensor> current = new ArrayList<>(sensors);
+        current.remove(0);
+        current.remove(2); //S3
+        Assertions.assertTrue(model.refresh(current));
+        Assertions.assertEquals(0, table.getSelectedRowCount());
+
+        model.selectRows(selection, selected);
+        Assertions.assertArrayEquals(new int[] {0, 2}, table.getSelectedRows());
+        Assertions.assertSame(sensors.get(4), model.getSensorAt(2));
+
+        //sensors that were removed are left out
+        model.refresh(List.of(sensors.get(4)));
+        model.selectRows(selection, selected);
+        Assertions.assertArrayEquals(new int[] {0}, table.getSelectedRows());
+    }
+
+    @Test
+    public void clickingTheActiveCheckboxAsksForTheChange () {
+        Assertions.assertTrue(model.isCellEditable(2, SensorListModel.ACTIVE_COLUMN));
+        Assertions.assertFalse(model.isCellEditable(2, SensorListModel.NAME_COLUMN));
+        model.setValueAt(true, 2, SensorListModel.ACTIVE_COLUMN);
+        Assertions.assertEquals(List.of("clicked S2 true"), events);
+    }
+}
@@ -0,0 +1,146 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+public class JournalSecurityRepositoryImplTest
+{
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    public void replaysLogAcrossSnapshots () {
+        JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(journalDirectory, 3, 64);
+        Sensor door = new Sensor("DOOR", SensorType.DOOR);
+        Sensor window = new Sensor("WINDOW", SensorType.WINDOW);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.removeSensor(window);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.flush();
+
+        JournalSecurityRepositoryImpl reloaded = new JournalSecurityRepositoryImpl(journalDirectory, 3, 64);
+        Assertions.assertEquals(1, reloaded.getSensors().size());
+        Sensor reloadedDoor = reloaded.getSensors().iterator().next();
+        Assertions.assertEquals(door.getSensorId(), reloadedDoor.getSensorId());
+        Assertions.assertEquals(true, reloadedDoor.getActive());
+        Assertions.assertEquals(ArmingStatus.ARMED_AWAY, reloaded.getArmingStatus());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, reloaded.getAlarmStatus());
+    }
+
+    @Test
+    public void corruptLastRecordIsDiscarded () throws IOException {
+        JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(journalDirectory);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.flush();
+
+        //spoil the checksum of the last record, as a torn write would
+        try (RandomAccessFile log = new RandomAccessFile(journalDirectory.resolve("security.journal").toFile(), "rw")) {
+            byte[] contents = new byte[(int) log.length()];
+            log.readFully(contents);
+            int last = contents.length - 1;
+            while(contents[last] == 0) {
+                last--;
+            }
+            log.seek(last);
+            log.write(0);
+        }
+
+        JournalSecurityRepositoryImpl recovered = new JournalSecurityRepositoryImpl(journalDirectory);
+        Assertions.assertEquals(ArmingStatus.ARMED_HOME, recovered.getArmingStatus());
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, recovered.getAlarmStatus());
+
+        recovered.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        recovered.flush();
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, new JournalSecurityRepositoryImpl(journalDirectory).getAlarmStatus());
+    }
+
+    @Test
+    public void intactRecordWithAnUnknownStatusIsDiscarded () throws IOException {
+        JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(journalDirectory);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.flush();
+
+        //rewrite the last record's status with a byte no enum has, and give it a matching checksum
+        try (RandomAccessFile log = new RandomAccessFile(journalDirectory.resolve("security.journal").toFile(), "rw")) {
+            ByteBuffer contents = ByteBuffer.allocate((int) log.length());
+            log.readFully(contents.array());
+            int start = Integer.BYTES;
+            int last = start;
+            while(contents.getInt(start) != 0) {
+                last = start;
+                start += 2 * Integer.BYTES + Byte.BYTES + contents.getInt(start);
+            }
+            contents.put(last + Integer.BYTES + Byte.BYTES, (byte) 0xF0);
+            CRC32 crc = new CRC32();
+            crc.update(contents.array(), last + Integer.BYTES, Byte.BYTES + 1);
+            contents.putInt(last + Integer.BYTES + Byte.BYTES + 1, (int) crc.getValue());
+            log.seek(0);
+            log.write(contents.array());
+        }
+
+        JournalSecurityRepositoryImpl recovered = new JournalSecurityRepositoryImpl(journalDirectory);
+        Assertions.assertEquals(ArmingStatus.ARMED_HOME, recovered.getArmingStatus());
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, recovered.getAlarmStatus());
+        recovered.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        recovered.flush();
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, new JournalSecurityRepositoryImpl(journalDirectory).getAlarmStatus());
+    }
+
+    @Test
+    public void truncatedLastRecordIsDiscarded () throws IOException {
+        JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(journalDirectory);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor door = new Sensor("DOOR", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.flush();
+
+        //cut the file off part way through the last record, as a crash part way through an append would
+        try (RandomAccessFile log = new RandomAccessFile(journalDirectory.resolve("security.journal").toFile(), "rw")) {
+            byte[] contents = new byte[(int) log.length()];
+            log.readFully(contents);
+            int end = contents.length;
+            while(contents[end - 1] == 0) {
+                end--;
+            }
+            log.setLength(end - 6);
+        }
+
+        JournalSecurityRepositoryImpl recovered = new JournalSecurityRepositoryImpl(journalDirectory);
+        Assertions.assertEquals(ArmingStatus.ARMED_AWAY, recovered.getArmingStatus());
+        Assertions.assertEquals(0, recovered.getSensors().size());
+
+        recovered.addSensor(door);
+        recovered.flush();
+        Assertions.assertEquals(1, new JournalSecurityRepositoryImpl(journalDirectory).getSensors().size());
+    }
+
+    @Test
+    public void snapshotClearsTheLogInPlace () throws IOException {
+        JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(journalDirectory, 1_000, 64);
+        for(int i = 0; i < 50; i++) {
+            repository.addSensor(new Sensor("S" + i, SensorType.WINDOW));
+        }
+        long size = journalDirectory.resolve("security.journal").toFile().length();
+        repository.snapshot();
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.flush();
+
+        Assertions.assertEquals(size, journalDirectory.resolve("security.journal").toFile().length());
+        JournalSecurityRepositoryImpl reloaded = new JournalSecurityRepositoryImpl(journalDirectory, 1_000, 64);
+        Assertions.assertEquals(50, reloaded.getSensors().size());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, reloaded.getAlarmStatus());
+    }
+}
@@ -0,0 +1,229 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.Preferences;
+
+/**
+ * The repository keeps its state in the user preferences of its package, so each test saves them
+ * first, starts from empty preferences and puts the saved ones back afterwards.
+ */
+public class PretendDatabaseSecurityRepositoryImplTest
+{
+    private final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+    private byte[] savedPrefs;
+
+    @BeforeEach
+    void init() throws Exception {
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        prefs.exportNode(saved);
+        savedPrefs = saved.toByteArray();
+        prefs.clear();
+    }
+
+    @AfterEach
+    void restore() throws Exception {
+        prefs.clear();
+        Preferences.importPreferences(new ByteArrayInputStream(savedPrefs));
+    }
+
+    //lazy loads only go ahead when the test runs them: first the indexing, then the batches
+    private final List<Runnable> loads = new ArrayList<>();
+
+    private void runLoad() {
+        loads.remove(0).run();
+    }
+
+    private static void awaitWaiters(CompletableFuture<?> future, int waiters) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(future.getNumberOfDependents() < waiters) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "nothing waited on the load");
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Stores a door and a motion sensor, both active, and a window.
+     */
+    private static List<Sensor> seed() {
+        List<Sensor> seeded = List.of(new Sensor("DOOR", SensorType.DOOR), new Sensor("WINDOW", SensorType.WINDOW),
+                new Sensor("MOTION", SensorType.MOTION));
+        seeded.get(0).setActive(true);
+        seeded.get(2).setActive(true);
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+        seeded.forEach(repository::addSensor);
+        return seeded;
+    }
+
+    private static long writes(MetricsRegistry metrics) {
+        return metrics.timer("repository.persist").getHistogram().getCount();
+    }
+
+    @Test
+    public void backgroundWritesAreTimed () {
+        MetricsRegistry metrics = new MetricsRegistry();
+        try(PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(60_000, 3)) {
+            repository.setMetrics(metrics);
+            for(int i = 0; i < 3; i++) {
+                repository.addSensor(new Sensor("S" + i, SensorType.DOOR));
+            }
+            repository.flush(); //either this or the flush the third change queued writes, never both
+            Assertions.assertEquals(1, writes(metrics));
+        }
+    }
+
+    @Test
+    public void changesWithinAnIntervalAreWrittenOnce () throws InterruptedException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        try(PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(50, Integer.MAX_VALUE)) {
+            repository.setMetrics(metrics);
+            synchronized (repository) { //keeps the flusher from writing halfway through
+                for(int i = 0; i < 100; i++) {
+                    repository.addSensor(new Sensor("S" + i, SensorType.DOOR));
+                }
+            }
+            Assertions.assertEquals(0, writes(metrics));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while(writes(metrics) == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(200); //several more intervals with nothing to write
+            Assertions.assertEquals(1, writes(metrics));
+            Assertions.assertEquals(100, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+        }
+    }
+
+    @Test
+    public void changesAreWrittenOncePerBatch () {
+        MetricsRegistry metrics = new MetricsRegistry();
+        try(PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(60_000, 10)) {
+            repository.setMetrics(metrics);
+            for(int i = 0; i < 100; i++) {
+                repository.addSensor(new Sensor("S" + i, SensorType.DOOR));
+            }
+            repository.flush();
+            //a queued flush may find its batch already written by the one before it
+            Assertions.assertTrue(writes(metrics) >= 1 && writes(metrics) <= 10, "writes " + writes(metrics));
+            Assertions.assertEquals(100, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+        }
+    }
+
+    @Test
+    public void flushAndClosePersistPendingChanges () {
+        MetricsRegistry metrics = new MetricsRegistry();
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(60_000, Integer.MAX_VALUE);
+        repository.setMetrics(metrics);
+        Sensor door = new Sensor("DOOR", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.addSensor(new Sensor("WINDOW", SensorType.WINDOW));
+        Assertions.assertEquals(0, writes(metrics));
+        Assertions.assertEquals(0, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+
+        repository.flush();
+        Assertions.assertEquals(1, writes(metrics));
+        Assertions.assertEquals(2, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+        repository.flush();
+        Assertions.assertEquals(1, writes(metrics)); //nothing new to write
+
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.close();
+        Assertions.assertEquals(2, writes(metrics));
+        Assertions.assertEquals(1, new PretendDatabaseSecurityRepositoryImpl().getActiveSensorCount());
+
+        //after close every change is written through
+        repository.removeSensor(door);
+        Assertions.assertEquals(3, writes(metrics));
+        Assertions.assertEquals(1, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+    }
+
+    @Test
+    public void lazyLoadPagesInWhatIsWrittenAndCountsWhatIsPending () {
+        List<Sensor> seeded = seed();
+        MetricsRegistry metrics = new MetricsRegistry();
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(0, 1, loads::add);
+        repository.setMetrics(metrics);
+        runLoad();
+        Assertions.assertFalse(repository.sensorsLoaded().isDone());
+
+        //nothing is in memory yet, so the counts come from the index
+        Assertions.assertEquals(2, repository.getActiveSensorCount());
+        Assertions.assertEquals(1, repository.getActiveSensorCount(SensorType.MOTION));
+        Assertions.assertEquals("DOOR", repository.getSensor(seeded.get(0).getSensorId()).getName());
+
+        //the window is paged in to be changed, and counted once
+        Sensor window = new Sensor("WINDOW", SensorType.WINDOW);
+        window.setSensorId(seeded.get(1).getSensorId());
+        window.setActive(true);
+        repository.updateSensor(window);
+        Assertions.assertEquals(3, repository.getActiveSensorCount());
+        Assertions.assertEquals(1, repository.getActiveSensorCount(SensorType.WINDOW));
+
+        Sensor motion = repository.getSensor(seeded.get(2).getSensorId());
+        repository.removeSensor(motion);
+        Sensor garage = new Sensor("GARAGE", SensorType.DOOR);
+        repository.addSensor(garage);
+        Assertions.assertEquals(2, repository.getActiveSensorCount());
+        Assertions.assertEquals(0, repository.getActiveSensorCount(SensorType.MOTION));
+
+        //nothing is written until the whole set is in memory
+        Assertions.assertEquals(0, writes(metrics));
+        Assertions.assertEquals(3, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+
+        runLoad();
+        Assertions.assertTrue(repository.sensorsLoaded().isDone());
+        Assertions.assertEquals(1, writes(metrics));
+        Assertions.assertEquals(Set.of(seeded.get(0), window, garage), repository.getSensors());
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl();
+        Assertions.assertEquals(Set.of(seeded.get(0), window, garage), reloaded.getSensors());
+        Assertions.assertEquals(2, reloaded.getActiveSensorCount());
+    }
+
+    @Test
+    public void getSensorsAndFlushWaitForTheLoad () throws Exception {
+        seed();
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(0, 1, loads::add);
+        CompletableFuture<Integer> sensorCount = CompletableFuture.supplyAsync(() -> repository.getSensors().size());
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(repository::flush);
+        runLoad();
+        //both callers are parked on the load, which only finishes with the next batch
+        awaitWaiters(repository.sensorsLoaded(), 2);
+        Assertions.assertFalse(sensorCount.isDone());
+        Assertions.assertFalse(flushed.isDone());
+
+        runLoad();
+        Assertions.assertEquals(3, (int) sensorCount.get(5, TimeUnit.SECONDS));
+        flushed.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void failedLoadStartsWithoutSensors () throws Exception {
+        seed();
+        prefs.put("SENSOR_SNAPSHOT", "0:not a number");
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(0, 1, loads::add);
+        runLoad();
+        Assertions.assertTrue(loads.isEmpty());
+        Assertions.assertTrue(repository.sensorsLoaded().isDone());
+        Assertions.assertFalse(repository.sensorsLoaded().isCompletedExceptionally());
+        Assertions.assertEquals(Set.of(), repository.getSensors());
+        repository.flush();
+
+        //the same goes for the background thread
+        PretendDatabaseSecurityRepositoryImpl lazy = new PretendDatabaseSecurityRepositoryImpl(0, 1, true);
+        lazy.sensorsLoaded().get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, lazy.getActiveSensorCount());
+        lazy.addSensor(new Sensor("DOOR", SensorType.DOOR));
+        Assertions.assertEquals(1, new PretendDatabaseSecurityRepositoryImpl().getSensors().size());
+    }
+}
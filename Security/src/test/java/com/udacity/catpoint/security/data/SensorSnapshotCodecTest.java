@@ -0,0 +1,236 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+public class SensorSnapshotCodecTest
+{
+    private static byte[] encode(Collection<Sensor> sensors) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SensorSnapshotCodec.write(out, AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY, sensors);
+        return out.toByteArray();
+    }
+
+    private static List<Sensor> decode(byte[] snapshot) throws IOException {
+        return SensorSnapshotCodec.readAll(new SensorSnapshotCodec.Reader(new ByteArrayInputStream(snapshot)));
+    }
+
+    //a snapshot of the given bytes after the version, with a matching checksum so only the bytes themselves are wrong
+    private static byte[] withChecksum(int... bytes) {
+        ByteBuffer snapshot = ByteBuffer.allocate(Integer.BYTES + 2 + bytes.length + Integer.BYTES);
+        snapshot.putInt(SensorSnapshotCodec.MAGIC).put((byte) SensorSnapshotCodec.VERSION).put((byte) SensorSnapshotCodec.VERSION);
+        for(int b : bytes) {
+            snapshot.put((byte) b);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(snapshot.array(), 0, snapshot.position());
+        snapshot.putInt((int) crc.getValue());
+        return snapshot.array();
+    }
+
+    private static void assertRejected(byte[] snapshot) {
+        Assertions.assertThrows(IOException.class, () -> decode(snapshot));
+        Assertions.assertThrows(IOException.class, () -> SensorSnapshotCodec.Index.of(snapshot));
+    }
+
+    @Test
+    public void roundTripKeepsEverySensorField () throws IOException {
+        List<Sensor> sensors = new ArrayList<>();
+        Random random = new Random(11);
+        for(int i = 0; i < 2_000; i++) {
+            Sensor sensor = new Sensor("Sensor " + i + " \u00e9\u732b", SensorType.values()[random.nextInt(3)]);
+            sensor.setActive(random.nextBoolean());
+            sensors.add(sensor);
+        }
+        Sensor unnamed = new Sensor();
+        unnamed.setSensorId(UUID.randomUUID());
+        unnamed.setSensorType(SensorType.MOTION);
+        unnamed.setActive(true);
+        sensors.add(unnamed);
+
+        SensorSnapshotCodec.Reader reader = new SensorSnapshotCodec.Reader(new ByteArrayInputStream(encode(sensors)));
+        Assertions.assertEquals(SensorSnapshotCodec.VERSION, reader.getVersion());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, reader.getAlarmStatus());
+        Assertions.assertEquals(ArmingStatus.ARMED_AWAY, reader.getArmingStatus());
+        Assertions.assertEquals(sensors.size(), reader.getSensorCount());
+
+        List<Sensor> decoded = SensorSnapshotCodec.readAll(reader);
+        Assertions.assertEquals(sensors, decoded);
+        for(int i = 0; i < sensors.size(); i++) {
+            Assertions.assertEquals(sensors.get(i).getName(), decoded.get(i).getName());
+            Assertions.assertEquals(sensors.get(i).getSensorType(), decoded.get(i).getSensorType());
+            Assertions.assertEquals(sensors.get(i).getActive(), decoded.get(i).getActive());
+        }
+        Assertions.assertNull(decoded.get(decoded.size() - 1).getName());
+    }
+
+    @Test
+    public void corruptionFailsTheChecksum () throws IOException {
+        byte[] snapshot = encode(List.of(new Sensor("DOOR", SensorType.DOOR), new Sensor("WINDOW", SensorType.WINDOW)));
+        snapshot[snapshot.length - 8] ^= 0x20; //inside the last name
+
+        IOException failure = Assertions.assertThrows(IOException.class, () -> decode(snapshot));
+        Assertions.assertTrue(failure.getMessage().contains("checksum"));
+    }
+
+    @Test
+    public void truncationIsReported () throws IOException {
+        byte[] snapshot = encode(List.of(new Sensor("DOOR", SensorType.DOOR), new Sensor("WINDOW", SensorType.WINDOW)));
+        for(int length : new int[] {3, 10, snapshot.length / 2, snapshot.length - 1}) {
+            byte[] truncated = Arrays.copyOf(snapshot, length);
+            Assertions.assertThrows(EOFException.class, () -> decode(truncated));
+        }
+    }
+
+    @Test
+    public void fieldsFromNewerWritersAreSkipped () throws IOException {
+        UUID sensorId = UUID.randomUUID();
+        ByteBuffer snapshot = ByteBuffer.allocate(256);
+        snapshot.putInt(SensorSnapshotCodec.MAGIC).put((byte) (SensorSnapshotCodec.VERSION + 1)).put((byte) SensorSnapshotCodec.VERSION);
+        //header with an extra trailing field
+        snapshot.put((byte) 5).put((byte) AlarmStatus.ALARM.ordinal()).put((byte) ArmingStatus.ARMED_HOME.ordinal()).put((byte) 1).putShort((short) 42);
+        byte[] name = "PORCH".getBytes(StandardCharsets.UTF_8);
+        //record with an extra trailing field
+        snapshot.put((byte) (2 * Long.BYTES + 3 + name.length + Long.BYTES));
+        snapshot.putLong(sensorId.getMostSignificantBits()).putLong(sensorId.getLeastSignificantBits());
+        snapshot.put((byte) 1).put((byte) SensorType.MOTION.ordinal()).put((byte) (name.length + 1)).put(name);
+        snapshot.putLong(System.currentTimeMillis());
+        CRC32C crc = new CRC32C();
+        crc.update(snapshot.array(), 0, snapshot.position());
+        snapshot.putInt((int) crc.getValue());
+
+        SensorSnapshotCodec.Reader reader = new SensorSnapshotCodec.Reader(
+                new ByteArrayInputStream(snapshot.array(), 0, snapshot.position()));
+        Assertions.assertEquals(SensorSnapshotCodec.VERSION + 1, reader.getVersion());
+        Assertions.assertEquals(AlarmStatus.ALARM, reader.getAlarmStatus());
+        Assertions.assertEquals(ArmingStatus.ARMED_HOME, reader.getArmingStatus());
+
+        List<Sensor> sensors = SensorSnapshotCodec.readAll(reader);
+        Assertions.assertEquals(1, sensors.size());
+        Assertions.assertEquals(sensorId, sensors.get(0).getSensorId());
+        Assertions.assertEquals("PORCH", sensors.get(0).getName());
+        Assertions.assertEquals(SensorType.MOTION, sensors.get(0).getSensorType());
+        Assertions.assertTrue(sensors.get(0).getActive());
+    }
+
+    @Test
+    public void snapshotsNeedingANewerReaderAreRejected () throws IOException {
+        byte[] snapshot = encode(List.of(new Sensor("DOOR", SensorType.DOOR)));
+        snapshot[Integer.BYTES + 1] = (byte) (SensorSnapshotCodec.VERSION + 1);
+
+        IOException failure = Assertions.assertThrows(IOException.class, () -> decode(snapshot));
+        Assertions.assertTrue(failure.getMessage().contains("needs a reader"));
+    }
+
+    @Test
+    public void indexFindsAndDecodesSingleSensors () throws IOException {
+        List<Sensor> sensors = new ArrayList<>();
+        for(int i = 0; i < 3_000; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % 3]);
+            sensor.setActive(i % 7 == 0);
+            sensors.add(sensor);
+        }
+        SensorSnapshotCodec.Index index = SensorSnapshotCodec.Index.of(encode(sensors));
+        Assertions.assertEquals(sensors.size(), index.size());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, index.getAlarmStatus());
+        Assertions.assertEquals(ArmingStatus.ARMED_AWAY, index.getArmingStatus());
+
+        for(Sensor sensor : sensors) {
+            int record = index.find(sensor.getSensorId());
+            Sensor decoded = index.sensorAt(record);
+            Assertions.assertEquals(sensor, decoded);
+            Assertions.assertEquals(sensor.getName(), decoded.getName());
+            Assertions.assertEquals(sensor.getActive(), index.isActive(record));
+            Assertions.assertEquals(sensor.getSensorType(), index.sensorTypeAt(record));
+        }
+        Assertions.assertEquals(-1, index.find(UUID.randomUUID()));
+    }
+
+    @Test
+    public void indexChecksTheWholeSnapshot () throws IOException {
+        byte[] snapshot = encode(List.of(new Sensor("DOOR", SensorType.DOOR), new Sensor("WINDOW", SensorType.WINDOW)));
+        byte[] corrupt = snapshot.clone();
+        corrupt[corrupt.length - 8] ^= 0x20;
+        Assertions.assertThrows(IOException.class, () -> SensorSnapshotCodec.Index.of(corrupt));
+        Assertions.assertThrows(IOException.class, () -> SensorSnapshotCodec.Index.of(Arrays.copyOf(snapshot, snapshot.length - 1)));
+        Assertions.assertEquals(0, SensorSnapshotCodec.Index.of(encode(List.of())).size());
+    }
+
+    @Test
+    public void corruptedHeaderLengthIsRejected () {
+        //too short for the statuses and the count
+        assertRejected(withChecksum(2, 0, 0));
+        //longer than any header
+        assertRejected(withChecksum(0x81, 0x80, 0x04, 0, 0, 0));
+        //negative once decoded
+        assertRejected(withChecksum(0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 0, 0, 0));
+        //unterminated
+        assertRejected(withChecksum(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0, 0, 0));
+    }
+
+    @Test
+    public void corruptedSensorCountIsNotTrusted () throws IOException {
+        byte[] huge = withChecksum(7, 0, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+        SensorSnapshotCodec.Reader reader = new SensorSnapshotCodec.Reader(new ByteArrayInputStream(huge));
+        Assertions.assertEquals(Integer.MAX_VALUE, reader.getSensorCount());
+        //nothing is sized from the count, so reading runs out of records rather than memory
+        Assertions.assertThrows(EOFException.class, () -> SensorSnapshotCodec.readAll(reader));
+        Assertions.assertThrows(IOException.class, () -> SensorSnapshotCodec.Index.of(huge));
+
+        assertRejected(withChecksum(7, 0, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F));
+    }
+
+    @Test
+    public void corruptedRecordLengthIsRejected () {
+        int[] header = {3, 0, 0, 1};
+        //shorter than the id, flags, type and name length
+        assertRejected(withRecord(header, 18));
+        assertRejected(withRecord(header, 0));
+        //longer than any record
+        assertRejected(withRecord(header, 0x81, 0x80, 0x04));
+        //negative once decoded
+        assertRejected(withRecord(header, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F));
+        //as long as a record may be, but the stream ends long before
+        assertRejected(withRecord(header, 0x80, 0x80, 0x04));
+    }
+
+    @Test
+    public void corruptedNameLengthIsRejected () {
+        int[] record = new int[2 * Long.BYTES + 2];
+        assertRejected(withRecord(new int[] {3, 0, 0, 1}, concat(new int[] {record.length + 1}, record, new int[] {9})));
+        assertRejected(withRecord(new int[] {3, 0, 0, 1}, concat(new int[] {record.length + 5}, record, new int[] {0xFF, 0xFF, 0xFF, 0xFF, 0x0F})));
+    }
+
+    private static byte[] withRecord(int[] header, int... record) {
+        //padded so the record has its minimum length after a length prefix
+        return withChecksum(concat(header, record, new int[2 * Long.BYTES + 3]));
+    }
+
+    private static int[] concat(int[]... parts) {
+        int[] all = new int[0];
+        for(int[] part : parts) {
+            int length = all.length;
+            all = Arrays.copyOf(all, length + part.length);
+            System.arraycopy(part, 0, all, length, part.length);
+        }
+        return all;
+    }
+
+    @Test
+    public void writerEnforcesTheAnnouncedCount () throws IOException {
+        SensorSnapshotCodec.Writer writer = new SensorSnapshotCodec.Writer(new ByteArrayOutputStream(),
+                AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, 1);
+        Assertions.assertThrows(IllegalStateException.class, writer::finish);
+        writer.write(new Sensor("DOOR", SensorType.DOOR));
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.write(new Sensor("WINDOW", SensorType.WINDOW)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SensorStoreTest
+{
+    @Test
+    public void activationChangesKeepActiveViewCurrent () {
+        SensorStore store = new SensorStore();
+        Sensor door = new Sensor("DOOR", SensorType.DOOR);
+        store.add(door);
+        List<Sensor> sorted = store.sortedByName();
+
+        door.setActive(true);
+        store.update(door);
+        Assertions.assertTrue(store.active().contains(door));
+        Assertions.assertSame(sorted, store.sortedByName());
+
+        door.setActive(false);
+        store.update(door);
+        Assertions.assertFalse(store.active().contains(door));
+    }
+
+    @Test
+    public void renameAndRetypeRebuildViews () {
+        SensorStore store = new SensorStore();
+        Sensor a = new Sensor("A", SensorType.DOOR);
+        Sensor b = new Sensor("B", SensorType.DOOR);
+        store.add(b);
+        store.add(a);
+        Assertions.assertEquals(List.of(a, b), store.sortedByName());
+
+        a.setName("C");
+        a.setSensorType(SensorType.WINDOW);
+        store.update(a);
+        Assertions.assertEquals(List.of(b, a), store.sortedByName());
+        Assertions.assertTrue(store.byType(SensorType.WINDOW).contains(a));
+        Assertions.assertFalse(store.byType(SensorType.DOOR).contains(a));
+    }
+
+    @Test
+    public void lookupAndRemoveById () {
+        SensorStore store = new SensorStore();
+        Sensor motion = new Sensor("MOTION", SensorType.MOTION);
+        store.add(motion);
+        Assertions.assertSame(motion, store.get(motion.getSensorId()));
+
+        Sensor sameId = new Sensor();
+        sameId.setSensorId(motion.getSensorId());
+        Assertions.assertTrue(store.remove(sameId));
+        Assertions.assertEquals(0, store.size());
+        Assertions.assertNull(store.get(motion.getSensorId()));
+    }
+
+    @Test
+    public void activeCountsFollowActivationAndRetype () {
+        SensorStore store = new SensorStore();
+        Sensor door = new Sensor("DOOR", SensorType.DOOR);
+        Sensor window = new Sensor("WINDOW", SensorType.WINDOW);
+        store.add(door);
+        store.add(window);
+
+        door.setActive(true);
+        store.update(door);
+        window.setActive(true);
+        store.update(window);
+        Assertions.assertEquals(2, store.activeCount());
+        Assertions.assertEquals(1, store.activeCount(SensorType.DOOR));
+
+        door.setSensorType(SensorType.MOTION);
+        store.update(door);
+        Assertions.assertEquals(0, store.activeCount(SensorType.DOOR));
+        Assertions.assertEquals(1, store.activeCount(SensorType.MOTION));
+
+        store.remove(window);
+        Assertions.assertEquals(1, store.activeCount());
+        Assertions.assertEquals(0, store.activeCount(SensorType.WINDOW));
+    }
+}
@@ -0,0 +1,138 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+public class SensorTableTest
+{
+    @Test
+    public void viewsWriteThroughToTheTable () {
+        SensorTable table = new SensorTable();
+        Sensor door = new Sensor("DOOR", SensorType.DOOR);
+        table.add(door);
+
+        Sensor view = table.get(door.getSensorId());
+        Assertions.assertSame(view, table.get(door.getSensorId()));
+        Assertions.assertEquals(door, view);
+        Assertions.assertEquals(door.hashCode(), view.hashCode());
+
+        view.setActive(true);
+        Assertions.assertEquals(1, table.activeCount(SensorType.DOOR));
+        Assertions.assertTrue(table.active().contains(door));
+
+        view.setSensorType(SensorType.WINDOW);
+        Assertions.assertEquals(0, table.activeCount(SensorType.DOOR));
+        Assertions.assertEquals(1, table.activeCount(SensorType.WINDOW));
+        Assertions.assertTrue(table.byType(SensorType.WINDOW).contains(door));
+
+        //the object that was added is a copy source only
+        Assertions.assertFalse(door.getActive());
+    }
+
+    @Test
+    public void settingTheSameIdIsAllowed () {
+        SensorTable table = new SensorTable();
+        Sensor door = new Sensor("DOOR", SensorType.DOOR);
+        Sensor window = new Sensor("WINDOW", SensorType.WINDOW);
+        table.add(door);
+        table.add(window);
+
+        Sensor view = table.get(door.getSensorId());
+        view.setSensorId(door.getSensorId());
+        Assertions.assertSame(view, table.get(door.getSensorId()));
+        Assertions.assertEquals(2, table.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> view.setSensorId(window.getSensorId()));
+    }
+
+    @Test
+    public void updateCopiesPlainSensors () {
+        SensorTable table = new SensorTable();
+        Sensor a = new Sensor("A", SensorType.DOOR);
+        Sensor b = new Sensor("B", SensorType.MOTION);
+        table.add(b);
+        table.add(a);
+        Assertions.assertEquals(List.of(a, b), table.sortedByName());
+
+        a.setName("C");
+        a.setActive(true);
+        table.update(a);
+        Assertions.assertEquals(List.of(b, a), table.sortedByName());
+        Assertions.assertEquals("C", table.get(a.getSensorId()).getName());
+        Assertions.assertEquals(1, table.activeCount());
+    }
+
+    @Test
+    public void sensorsWithoutANameCanBeUpdated () {
+        SensorTable table = new SensorTable();
+        Sensor unnamed = new Sensor(null, SensorType.MOTION);
+        table.add(unnamed);
+
+        unnamed.setActive(true);
+        table.update(unnamed);
+        Assertions.assertNull(table.get(unnamed.getSensorId()).getName());
+        Assertions.assertEquals(1, table.activeCount(SensorType.MOTION));
+
+        unnamed.setName("PORCH");
+        table.update(unnamed);
+        Assertions.assertEquals("PORCH", table.get(unnamed.getSensorId()).getName());
+        unnamed.setName(null);
+        table.update(unnamed);
+        Assertions.assertNull(table.get(unnamed.getSensorId()).getName());
+        Assertions.assertEquals(1, table.activeCount());
+    }
+
+    @Test
+    public void removedViewsKeepTheirLastState () {
+        SensorTable table = new SensorTable();
+        Sensor motion = new Sensor("MOTION", SensorType.MOTION);
+        table.add(motion);
+        Sensor view = table.get(motion.getSensorId());
+        view.setActive(true);
+
+        Assertions.assertTrue(table.remove(view));
+        Assertions.assertEquals(0, table.activeCount());
+        table.add(new Sensor("OTHER", SensorType.DOOR)); //reuses the row
+
+        Assertions.assertEquals("MOTION", view.getName());
+        Assertions.assertTrue(view.getActive());
+        Assertions.assertEquals(motion, view);
+        Assertions.assertNull(table.get(motion.getSensorId()));
+    }
+
+    @Test
+    public void indexStaysConsistentThroughChurn () {
+        SensorTable table = new SensorTable();
+        Map<UUID, Sensor> expected = new HashMap<>();
+        Random random = new Random(7);
+        for(int i = 0; i < 20_000; i++) {
+            if(expected.isEmpty() || random.nextInt(3) > 0) {
+                Sensor sensor = new Sensor("S" + random.nextInt(100), SensorType.values()[random.nextInt(3)]);
+                sensor.setActive(random.nextBoolean());
+                table.add(sensor);
+                expected.put(sensor.getSensorId(), sensor);
+            } else {
+                UUID victim = expected.keySet().iterator().next();
+                Assertions.assertTrue(table.remove(expected.remove(victim)));
+            }
+        }
+        Assertions.assertEquals(expected.size(), table.size());
+        Assertions.assertEquals(new HashSet<>(expected.values()), new HashSet<>(table));
+        long active = expected.values().stream().filter(Sensor::getActive).count();
+        Assertions.assertEquals(active, table.activeCount());
+        expected.values().forEach(sensor -> Assertions.assertEquals(sensor.getName(), table.get(sensor.getSensorId()).getName()));
+    }
+
+    @Test
+    public void orderingMatchesPlainSensors () {
+        List<Sensor> plain = new ArrayList<>();
+        Random random = new Random(3);
+        for(int i = 0; i < 500; i++) {
+            plain.add(new Sensor("S" + random.nextInt(20), SensorType.values()[random.nextInt(3)]));
+        }
+        SensorTable table = new SensorTable(plain);
+        Collections.sort(plain);
+        Assertions.assertEquals(plain, table.sortedByName());
+    }
+}
@@ -0,0 +1,88 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricsRegistryTest
+{
+    @Test
+    public void histogramPercentilesAreWithinBucketPrecision () {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assertions.assertEquals(1000, histogram.getCount());
+        Assertions.assertEquals(1_000_000, histogram.getMax());
+        Assertions.assertEquals(500_500, histogram.getMean());
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        Assertions.assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50 " + p50);
+        Assertions.assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99 " + p99);
+    }
+
+    @Test
+    public void bucketsCoverEveryValueInOrder () {
+        long previous = -1;
+        for(long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 1 << 20, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            Assertions.assertTrue(LatencyHistogram.highestValueIn(bucket) >= value);
+            Assertions.assertTrue(bucket >= previous);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void disabledRegistryRecordsNothing () {
+        MetricsRegistry metrics = MetricsRegistry.disabled();
+        metrics.counter("c").increment();
+        Timer timer = metrics.timer("t");
+        timer.stop(timer.start());
+        Assertions.assertEquals(0, metrics.counter("c").get());
+        Assertions.assertEquals(0, timer.getHistogram().getCount());
+    }
+
+    @Test
+    public void serviceAndRepositoryAreInstrumented () {
+        MetricsRegistry metrics = new MetricsRegistry();
+        SecurityService securityService = new SecurityService(
+                new InstrumentedSecurityRepository(new InMemorySecurityRepositoryImpl(), metrics), new FakeImageService());
+        securityService.setMetrics(metrics);
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        securityService.changeSensorActivationStatus(sensor, true);
+        securityService.changeSensorActivationStatus(sensor, false);
+
+        Assertions.assertEquals(2, metrics.counter("security.sensorEvents").get());
+        Assertions.assertEquals(2, metrics.counter("security.alarmTransitions").get());
+        Assertions.assertEquals(2, metrics.timer("security.changeSensorActivationStatus").getHistogram().getCount());
+        Assertions.assertEquals(2, metrics.timer("repository.updateSensor").getHistogram().getCount());
+        Assertions.assertTrue(metrics.snapshot().contains("repository.updateSensor count=2"));
+    }
+
+    @Test
+    public void failedRepositoryWritesAreTimedAndCounted () {
+        MetricsRegistry metrics = new MetricsRegistry();
+        SecurityRepository failing = new InMemorySecurityRepositoryImpl() {
+            @Override
+            public void flush() {
+                throw new IllegalStateException("disk full");
+            }
+        };
+        SecurityRepository repository = new InstrumentedSecurityRepository(failing, metrics);
+        repository.addSensor(new Sensor("Door", SensorType.DOOR));
+
+        Assertions.assertThrows(IllegalStateException.class, repository::flush);
+        Assertions.assertEquals(1, metrics.timer("repository.flush").getHistogram().getCount());
+        Assertions.assertEquals(1, metrics.timer("repository.addSensor").getHistogram().getCount());
+        Assertions.assertEquals(1, metrics.counter("repository.errors").get());
+    }
+}
@@ -0,0 +1,180 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageServiceInterface;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class FrameSchedulerTest {
+
+    //the detector holds each frame until the test releases it, so the queue can be filled while it is busy
+    private final BlockingQueue<BufferedImage> started = new LinkedBlockingQueue<>();
+    private final Semaphore release = new Semaphore(0);
+    private final List<BufferedImage> failing = new ArrayList<>();
+    private final ImageServiceInterface imageService = (image, confidence) -> {
+        started.add(image);
+        release.acquireUninterruptibly();
+        if(failing.contains(image)) {
+            throw new IllegalStateException("detector failed");
+        }
+        return false;
+    };
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), imageService);
+    private FrameScheduler scheduler;
+
+    @AfterEach
+    void close() {
+        if(scheduler != null) {
+            scheduler.close();
+        }
+        release.release(1_000);
+    }
+
+    private static List<BufferedImage> frames(int count) {
+        List<BufferedImage> frames = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            frames.add(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+        return frames;
+    }
+
+    private BufferedImage nextStarted() throws InterruptedException {
+        BufferedImage frame = started.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(frame, "no frame reached the detector");
+        return frame;
+    }
+
+    private void awaitHandled(long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(scheduler.getProcessedFrames() + scheduler.getFailedFrames() < frames) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "frames were not handled in time");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestFramesUpToCapacity() throws InterruptedException {
+        scheduler = new FrameScheduler(securityService, FrameScheduler.Policy.DROP_OLDEST, 2, 1);
+        List<BufferedImage> frames = frames(5);
+        Assertions.assertTrue(scheduler.submit(frames.get(0)));
+        Assertions.assertSame(frames.get(0), nextStarted());
+
+        for(BufferedImage frame : frames.subList(1, 5)) {
+            Assertions.assertTrue(scheduler.submit(frame));
+        }
+        Assertions.assertEquals(2, scheduler.getQueueDepth());
+        Assertions.assertEquals(2, scheduler.getDroppedFrames());
+        Assertions.assertEquals(5, scheduler.getSubmittedFrames());
+
+        release.release();
+        Assertions.assertSame(frames.get(3), nextStarted());
+        release.release();
+        Assertions.assertSame(frames.get(4), nextStarted());
+        release.release();
+        awaitHandled(3);
+        Assertions.assertEquals(3, scheduler.getProcessedFrames());
+        Assertions.assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void latestOnlyReplacesTheWaitingFrame() throws InterruptedException {
+        scheduler = new FrameScheduler(securityService, FrameScheduler.Policy.LATEST_ONLY, 10, 1);
+        List<BufferedImage> frames = frames(4);
+        scheduler.submit(frames.get(0));
+        Assertions.assertSame(frames.get(0), nextStarted());
+
+        for(BufferedImage frame : frames.subList(1, 4)) {
+            Assertions.assertTrue(scheduler.submit(frame));
+        }
+        Assertions.assertEquals(1, scheduler.getQueueDepth());
+        Assertions.assertEquals(2, scheduler.getDroppedFrames());
+
+        release.release();
+        Assertions.assertSame(frames.get(3), nextStarted());
+        release.release();
+        awaitHandled(2);
+        Assertions.assertEquals(2, scheduler.getProcessedFrames());
+    }
+
+    @Test
+    public void sampleEveryNAcceptsOneFrameInN() throws InterruptedException {
+        scheduler = new FrameScheduler(securityService, FrameScheduler.Policy.SAMPLE_EVERY_N, 10, 3);
+        List<BufferedImage> frames = frames(7);
+        Assertions.assertTrue(scheduler.submit(frames.get(0)));
+        Assertions.assertSame(frames.get(0), nextStarted());
+
+        for(int i = 1; i < frames.size(); i++) {
+            Assertions.assertEquals(i % 3 == 0, scheduler.submit(frames.get(i)));
+        }
+        Assertions.assertEquals(2, scheduler.getQueueDepth());
+        Assertions.assertEquals(4, scheduler.getDroppedFrames());
+
+        release.release();
+        Assertions.assertSame(frames.get(3), nextStarted());
+        release.release();
+        Assertions.assertSame(frames.get(6), nextStarted());
+        release.release();
+        awaitHandled(3);
+        Assertions.assertEquals(3, scheduler.getProcessedFrames());
+    }
+
+    @Test
+    public void latencyCoversTimeSpentWaiting() throws InterruptedException {
+        scheduler = new FrameScheduler(securityService, FrameScheduler.Policy.DROP_OLDEST, 4, 1);
+        List<BufferedImage> frames = frames(2);
+        scheduler.submit(frames.get(0));
+        nextStarted();
+        scheduler.submit(frames.get(1));
+        long submitted = System.nanoTime();
+        //the second frame waits in the queue until the first one is let through
+        release.release();
+        Assertions.assertSame(frames.get(1), nextStarted());
+        long waited = System.nanoTime() - submitted;
+        release.release();
+        awaitHandled(2);
+
+        Assertions.assertTrue(scheduler.getMaxLatencyNanos() >= waited);
+        Assertions.assertTrue(scheduler.getLastLatencyNanos() >= waited);
+        Assertions.assertTrue(scheduler.getAverageLatencyNanos() >= waited / 2);
+        Assertions.assertTrue(scheduler.getMaxLatencyNanos() >= scheduler.getAverageLatencyNanos());
+    }
+
+    @Test
+    public void failedFramesAreCountedAndDispatchContinues() throws InterruptedException {
+        scheduler = new FrameScheduler(securityService, FrameScheduler.Policy.DROP_OLDEST, 4, 1);
+        List<BufferedImage> frames = frames(2);
+        failing.add(frames.get(0));
+        scheduler.submit(frames.get(0));
+        scheduler.submit(frames.get(1));
+        release.release(2);
+        awaitHandled(2);
+
+        Assertions.assertEquals(1, scheduler.getFailedFrames());
+        Assertions.assertEquals(1, scheduler.getProcessedFrames());
+    }
+
+    @Test
+    public void closeDiscardsWaitingFrames() throws InterruptedException {
+        scheduler = new FrameScheduler(securityService, FrameScheduler.Policy.DROP_OLDEST, 4, 1);
+        List<BufferedImage> frames = frames(3);
+        scheduler.submit(frames.get(0));
+        nextStarted();
+        scheduler.submit(frames.get(1));
+        scheduler.submit(frames.get(2));
+
+        scheduler.close();
+        Assertions.assertEquals(0, scheduler.getQueueDepth());
+        Assertions.assertEquals(2, scheduler.getDroppedFrames());
+        Assertions.assertFalse(scheduler.submit(frames.get(0)));
+        Assertions.assertEquals(3, scheduler.getDroppedFrames());
+    }
+}
@@ -0,0 +1,142 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ImageAnalysisPipelineTest {
+
+    //analyses only run when the test says so, in whatever order it picks
+    private final List<Runnable> analyses = new ArrayList<>();
+    private final List<String> applied = new ArrayList<>();
+
+    private ImageAnalysisPipeline pipeline(boolean cancelSuperseded) {
+        return new ImageAnalysisPipeline(analyses::add, cancelSuperseded, Runnable::run);
+    }
+
+    private CompletableFuture<Boolean> submit(ImageAnalysisPipeline pipeline, String frame, boolean cat) {
+        return pipeline.submit(() -> cat, verdict -> applied.add(frame + "=" + verdict));
+    }
+
+    @Test
+    public void outOfOrderCompletionIsAppliedInOrder() {
+        ImageAnalysisPipeline pipeline = pipeline(false);
+        CompletableFuture<Boolean> first = submit(pipeline, "first", true);
+        CompletableFuture<Boolean> second = submit(pipeline, "second", false);
+        CompletableFuture<Boolean> third = submit(pipeline, "third", true);
+
+        analyses.get(2).run();
+        Assertions.assertEquals(List.of(), applied);
+        Assertions.assertFalse(third.isDone());
+
+        analyses.get(0).run();
+        Assertions.assertEquals(List.of("first=true"), applied);
+        Assertions.assertTrue(first.join());
+
+        analyses.get(1).run();
+        Assertions.assertEquals(List.of("first=true", "second=false", "third=true"), applied);
+        Assertions.assertFalse(second.join());
+        Assertions.assertTrue(third.join());
+    }
+
+    @Test
+    public void supersededFramesAreSkipped() {
+        ImageAnalysisPipeline pipeline = pipeline(true);
+        CompletableFuture<Boolean> first = submit(pipeline, "first", true);
+        CompletableFuture<Boolean> second = submit(pipeline, "second", true);
+        CompletableFuture<Boolean> third = submit(pipeline, "third", false);
+        Assertions.assertTrue(first.isCancelled());
+        Assertions.assertTrue(second.isCancelled());
+
+        analyses.forEach(Runnable::run);
+        Assertions.assertEquals(List.of("third=false"), applied);
+        Assertions.assertFalse(third.join());
+    }
+
+    @Test
+    public void supersededFrameThatIsRunningDoesNotHoldUpNewerOnes() {
+        ImageAnalysisPipeline pipeline = pipeline(true);
+        CompletableFuture<Boolean> first = submit(pipeline, "first", true);
+        analyses.get(0).run();
+        Assertions.assertEquals(List.of("first=true"), applied);
+
+        AtomicBoolean analyzing = new AtomicBoolean();
+        CompletableFuture<Boolean> second = pipeline.submit(() -> {
+            analyzing.set(true);
+            return true;
+        }, verdict -> applied.add("second=" + verdict));
+        CompletableFuture<Boolean> third = submit(pipeline, "third", false);
+        analyses.get(2).run();
+        Assertions.assertEquals(List.of("first=true", "third=false"), applied);
+
+        //the superseded frame was never analyzed
+        analyses.get(1).run();
+        Assertions.assertFalse(analyzing.get());
+        Assertions.assertTrue(second.isCancelled());
+        Assertions.assertTrue(first.join());
+        Assertions.assertFalse(third.join());
+    }
+
+    @Test
+    public void frameCannotBeCancelledOnceItIsBeingApplied() {
+        ImageAnalysisPipeline pipeline = pipeline(false);
+        AtomicReference<CompletableFuture<Boolean>> frame = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean(true);
+        frame.set(pipeline.submit(() -> true, verdict -> {
+            cancelled.set(frame.get().cancel(false));
+            applied.add("frame=" + verdict);
+        }));
+
+        analyses.get(0).run();
+        Assertions.assertFalse(cancelled.get());
+        Assertions.assertEquals(List.of("frame=true"), applied);
+        Assertions.assertFalse(frame.get().isCancelled());
+        Assertions.assertTrue(frame.get().join());
+    }
+
+    @Test
+    public void failuresDoNotHoldUpNewerFrames() {
+        ImageAnalysisPipeline pipeline = pipeline(false);
+        CompletableFuture<Boolean> failedAnalysis = pipeline.submit(() -> {
+            throw new IllegalStateException("detector failed");
+        }, verdict -> applied.add("failedAnalysis=" + verdict));
+        CompletableFuture<Boolean> failedApply = pipeline.submit(() -> true, verdict -> {
+            throw new IllegalStateException("listener failed");
+        });
+        CompletableFuture<Boolean> last = submit(pipeline, "last", true);
+
+        analyses.get(2).run();
+        analyses.get(1).run();
+        analyses.get(0).run();
+        Assertions.assertEquals(List.of("last=true"), applied);
+        Assertions.assertTrue(failedAnalysis.isCompletedExceptionally());
+        Assertions.assertTrue(failedApply.isCompletedExceptionally());
+        Assertions.assertTrue(last.join());
+    }
+
+    @Test
+    public void rejectedFramesFailWithoutHoldingUpNewerOnes() {
+        AtomicBoolean full = new AtomicBoolean(true);
+        ImageAnalysisPipeline pipeline = new ImageAnalysisPipeline(task -> {
+            if(full.get()) {
+                throw new RejectedExecutionException("queue full");
+            }
+            analyses.add(task);
+        }, false, Runnable::run);
+
+        CompletableFuture<Boolean> rejected = submit(pipeline, "rejected", true);
+        Assertions.assertTrue(rejected.isCompletedExceptionally());
+
+        full.set(false);
+        CompletableFuture<Boolean> accepted = submit(pipeline, "accepted", false);
+        analyses.get(0).run();
+        Assertions.assertEquals(List.of("accepted=false"), applied);
+        Assertions.assertFalse(accepted.join());
+    }
+}
@@ -0,0 +1,77 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class MultiSiteEngineTest
+{
+    private MultiSiteEngine engine;
+
+    @BeforeEach
+    void init() {
+        engine = new MultiSiteEngine(4, (image, confidence) -> false);
+    }
+
+    @AfterEach
+    void close() {
+        engine.close();
+    }
+
+    @Test
+    public void sitesHaveIndependentState () throws Exception {
+        engine.addSite("north").get(5, TimeUnit.SECONDS);
+        engine.addSite("south").get(5, TimeUnit.SECONDS);
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        engine.addSensor("north", door).get(5, TimeUnit.SECONDS);
+        engine.setArmingStatus("north", ArmingStatus.ARMED_AWAY).get(5, TimeUnit.SECONDS);
+        engine.changeSensorActivationStatuses("north", Map.of(door.getSensorId(), true)).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, engine.getAlarmStatus("north").get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, engine.getAlarmStatus("south").get(5, TimeUnit.SECONDS));
+        int southSensors = engine.submit("south", s -> s.getSensors().size()).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, southSensors);
+    }
+
+    @Test
+    public void everyCallForASiteRunsOnItsShardThread () throws Exception {
+        List<CompletableFuture<Void>> added = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            added.add(engine.addSite("site-" + i));
+        }
+        CompletableFuture.allOf(added.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(100, engine.getSiteCount());
+
+        Set<Integer> shardsUsed = new HashSet<>();
+        for(int i = 0; i < 100; i++) {
+            String siteId = "site-" + i;
+            int shard = engine.shardOf(siteId);
+            Assertions.assertEquals(shard, engine.shardOf(siteId));
+            shardsUsed.add(shard);
+            String thread = engine.submit(siteId, s -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals("site-shard-" + shard, thread);
+        }
+        Assertions.assertEquals(engine.getShardCount(), shardsUsed.size());
+    }
+
+    @Test
+    public void unknownAndRemovedSitesAreRejected () throws Exception {
+        engine.addSite("gone").get(5, TimeUnit.SECONDS);
+        engine.removeSite("gone").get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, engine.getSiteCount());
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> engine.getAlarmStatus("gone").get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,215 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.CatDetection;
+import com.udacity.catpoint.image.service.ImageServiceInterface;
+import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class SecurityServiceCamerasTest
+{
+    //images two pixels wide contain a cat; the height is how long the detector takes, in milliseconds
+    private final ImageServiceInterface imageService = (image, confidence) -> {
+        try {
+            Thread.sleep(image.getHeight());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return image.getWidth() == 2;
+    };
+
+    private SecurityRepository repository;
+    private SecurityService securityService;
+
+    @BeforeEach
+    void init() {
+        repository = new InMemorySecurityRepositoryImpl();
+        securityService = new SecurityService(repository, imageService);
+    }
+
+    private static BufferedImage frame(boolean cat, int delayMillis) {
+        return new BufferedImage(cat ? 2 : 1, Math.max(1, delayMillis), BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    public void catOnAnyCameraRaisesAlarmWhileArmedHome () {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.processImage("front", frame(false, 0));
+        securityService.processImage("garden", frame(true, 0));
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        //disarming clears the alarm; arming again while the garden camera still sees the cat raises it
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.processImage("front", frame(false, 0));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void alarmOnlyClearsOnceNoCameraSeesACat () {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        securityService.processImage("front", frame(true, 0));
+        securityService.processImage("garden", frame(true, 0));
+
+        securityService.processImage("front", frame(false, 0));
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        securityService.processImage("garden", frame(false, 0));
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void removingTheOnlyCameraWithACatClearsDetection () {
+        securityService.processImage("garden", frame(true, 0));
+        Assertions.assertTrue(securityService.getCameraVerdicts().get("garden"));
+        securityService.removeCamera("garden");
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        Assertions.assertFalse(securityService.getCameraVerdicts().containsKey("garden"));
+    }
+
+    @Test
+    public void eachCameraKeepsItsOwnFrameOrder () throws Exception {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        //the slow older frame finishes after the fast newer one but must not overwrite it
+        CompletableFuture<Boolean> slowCat = securityService.processImageAsync("front", frame(true, 150));
+        CompletableFuture<Boolean> fastNoCat = securityService.processImageAsync("front", frame(false, 0));
+        CompletableFuture<Boolean> otherCamera = securityService.processImageAsync("garden", frame(false, 50));
+
+        Assertions.assertFalse(fastNoCat.get(5, TimeUnit.SECONDS));
+        Assertions.assertFalse(otherCamera.get(5, TimeUnit.SECONDS));
+        //the slow frame is either superseded or applied before the newer one; wait for it either way
+        slowCat.handle((cat, failure) -> null).get(5, TimeUnit.SECONDS);
+        Assertions.assertFalse(securityService.getCameraVerdicts().get("front"));
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void unchangedFrameWaitsForTheAnalysisOfTheFrameBefore () throws Exception {
+        Iterator<Boolean> changes = List.of(true, false).iterator();
+        securityService.addCamera("porch", frame -> changes.next());
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        //the second frame looks like the first, so it gets the first one's verdict instead of superseding it
+        CompletableFuture<Boolean> slowCat = securityService.processImageAsync("porch", frame(true, 100));
+        CompletableFuture<Boolean> unchanged = securityService.processImageAsync("porch", frame(false, 0));
+
+        Assertions.assertTrue(unchanged.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(slowCat.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(securityService.getCameraVerdicts().get("porch"));
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void unchangedFrameIsCancelledWithTheAnalysisItWaitsFor () throws Exception {
+        Iterator<Boolean> changes = List.of(true, false, true).iterator();
+        securityService.addCamera("porch", frame -> changes.next());
+
+        CompletableFuture<Boolean> slowCat = securityService.processImageAsync("porch", frame(true, 200));
+        CompletableFuture<Boolean> unchanged = securityService.processImageAsync("porch", frame(false, 0));
+        //a newer changed frame supersedes the slow analysis, and with it the frame waiting on that verdict
+        CompletableFuture<Boolean> newer = securityService.processImageAsync("porch", frame(false, 0));
+
+        Assertions.assertFalse(newer.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(slowCat.isCancelled());
+        Assertions.assertTrue(unchanged.isCancelled());
+    }
+
+    @Test
+    public void batchOfCameraFramesIsClassifiedInOneCall () {
+        int[] batches = new int[1];
+        ImageServiceInterface batchingService = new ImageServiceInterface() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidence) {
+                throw new AssertionError("frames should be sent as a batch");
+            }
+
+            @Override
+            public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+                batches[0]++;
+                return List.of(new CatDetection(false, 10f), new CatDetection(true, 95f));
+            }
+        };
+        securityService = new SecurityService(repository, batchingService);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Map<String, BufferedImage> frames = new LinkedHashMap<>();
+        frames.put("front", frame(false, 0));
+        frames.put("garden", frame(true, 0));
+        securityService.processImages(frames);
+
+        Assertions.assertEquals(1, batches[0]);
+        Assertions.assertFalse(securityService.getCameraVerdicts().get("front"));
+        Assertions.assertTrue(securityService.getCameraVerdicts().get("garden"));
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void unknownVerdictKeepsThatCamerasPreviousVerdict () {
+        Iterator<List<CatDetection>> answers = List.of(
+                List.of(new CatDetection(true, 95f), new CatDetection(false, 10f)),
+                List.of(CatDetection.unknown(), new CatDetection(false, 10f))).iterator();
+        ImageServiceInterface batchingService = new ImageServiceInterface() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidence) {
+                throw new AssertionError("frames should be sent as a batch");
+            }
+
+            @Override
+            public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+                return answers.next();
+            }
+        };
+        securityService = new SecurityService(repository, batchingService);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Map<String, BufferedImage> frames = new LinkedHashMap<>();
+        frames.put("front", frame(true, 0));
+        frames.put("garden", frame(false, 0));
+        securityService.processImages(frames);
+        securityService.processImages(frames);
+
+        //the front camera couldn't be classified the second time, so it still sees the cat
+        Assertions.assertTrue(securityService.getCameraVerdicts().get("front"));
+        Assertions.assertFalse(securityService.getCameraVerdicts().get("garden"));
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void failedBatchLeavesVerdictsAloneAndIsStillTimed () {
+        ImageServiceInterface failingService = new ImageServiceInterface() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidence) {
+                throw new IllegalStateException("service unavailable");
+            }
+
+            @Override
+            public List<CatDetection> detectCats(List<BufferedImage> images, float confidenceThreshhold) {
+                throw new IllegalStateException("service unavailable");
+            }
+        };
+        MetricsRegistry metrics = new MetricsRegistry();
+        securityService = new SecurityService(repository, failingService);
+        securityService.setMetrics(metrics);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> securityService.processImages(Map.of("front", frame(true, 0))));
+        Assertions.assertThrows(IllegalStateException.class, () -> securityService.processImage(frame(true, 0)));
+
+        Assertions.assertEquals(2, metrics.timer("security.processImage").getHistogram().getCount());
+        Assertions.assertEquals(1, metrics.timer("image.detectCats").getHistogram().getCount());
+        Assertions.assertEquals(1, metrics.timer("image.imageContainsCat").getHistogram().getCount());
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+}
@@ -0,0 +1,210 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageServiceInterface;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress tests that fire sensor events at the SecurityService from many threads at once and check
+ * that no alarm transition is lost.
+ */
+public class SecurityServiceConcurrencyTest
+{
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+
+    private final ImageServiceInterface imageService = (image, confidence) -> false;
+
+    private static class CountingListener implements StatusListener {
+        private final Map<AlarmStatus, AtomicInteger> notifications = new ConcurrentHashMap<>();
+
+        @Override
+        public void notify(AlarmStatus status) {
+            notifications.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+
+        private int count(AlarmStatus status) {
+            AtomicInteger count = notifications.get(status);
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    @Test
+    public void concurrentActivationsEscalateThroughEveryAlarmState () throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for(int round = 0; round < ROUNDS; round++) {
+                SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+                repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+                SecurityService securityService = new SecurityService(repository, imageService);
+                CountingListener listener = new CountingListener();
+                securityService.addStatusListener(listener);
+
+                List<Sensor> sensors = new ArrayList<>();
+                for(int i = 0; i < THREADS; i++) {
+                    Sensor sensor = new Sensor("SENSOR " + i, SensorType.MOTION);
+                    securityService.addSensor(sensor);
+                    sensors.add(sensor);
+                }
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> activations = new ArrayList<>();
+                for(Sensor sensor : sensors) {
+                    activations.add(pool.submit(() -> {
+                        start.await();
+                        securityService.changeSensorActivationStatus(sensor, true);
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for(Future<?> activation : activations) {
+                    activation.get(10, TimeUnit.SECONDS);
+                }
+
+                //sequentially, the first activation raises PENDING_ALARM and the second ALARM
+                Assertions.assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+                Assertions.assertEquals(1, listener.count(AlarmStatus.PENDING_ALARM));
+                Assertions.assertEquals(1, listener.count(AlarmStatus.ALARM));
+                Assertions.assertEquals(THREADS, securityService.getActiveSensorCount());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void armingRacingActivationsNeverLosesATransition () throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for(int round = 0; round < ROUNDS; round++) {
+                //storing the arming status is slow, which gives activations a chance to slip in around it
+                SecurityRepository repository = new InMemorySecurityRepositoryImpl() {
+                    @Override
+                    public void setArmingStatus(ArmingStatus armingStatus) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        super.setArmingStatus(armingStatus);
+                    }
+                };
+                SecurityService securityService = new SecurityService(repository, imageService);
+                List<Sensor> sensors = new ArrayList<>();
+                for(int i = 0; i < THREADS - 1; i++) {
+                    Sensor sensor = new Sensor("SENSOR " + i, SensorType.MOTION);
+                    securityService.addSensor(sensor);
+                    sensors.add(sensor);
+                }
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> tasks = new ArrayList<>();
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+                    return null;
+                }));
+                for(Sensor sensor : sensors) {
+                    tasks.add(pool.submit(() -> {
+                        start.await();
+                        securityService.changeSensorActivationStatus(sensor, true);
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for(Future<?> task : tasks) {
+                    task.get(10, TimeUnit.SECONDS);
+                }
+
+                //activations before arming were reset by it; those after it each count towards the alarm
+                int activatedWhileArmed = securityService.getActiveSensorCount();
+                AlarmStatus expected = activatedWhileArmed == 0 ? AlarmStatus.NO_ALARM
+                        : activatedWhileArmed == 1 ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM;
+                Assertions.assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+                Assertions.assertEquals(expected, repository.getAlarmStatus(),
+                        "round " + round + " with " + activatedWhileArmed + " active sensors");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentTogglesOfOneSensorKeepCountsConsistent () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, imageService);
+        Sensor sensor = new Sensor("DOOR", SensorType.DOOR);
+        securityService.addSensor(sensor);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> toggles = new ArrayList<>();
+            for(int i = 0; i < THREADS; i++) {
+                boolean active = i % 2 == 0;
+                toggles.add(pool.submit(() -> {
+                    for(int n = 0; n < 10_000; n++) {
+                        securityService.changeSensorActivationStatus(sensor, active);
+                    }
+                }));
+            }
+            for(Future<?> toggle : toggles) {
+                toggle.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assertions.assertEquals(sensor.getActive() ? 1 : 0, securityService.getActiveSensorCount());
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+    }
+
+    @Test
+    public void sensorEventThatLeavesTheAlarmAloneDoesNotWaitForTheAlarmLock () throws Exception {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, imageService);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(door);
+        CountDownLatch notified = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        //listeners are called under the alarm lock, so this one holds it until the test lets go
+        securityService.addStatusListener(new CountingListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                notified.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        CompletableFuture<Void> alarm = CompletableFuture.runAsync(() -> securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM));
+        try {
+            Assertions.assertTrue(notified.await(5, TimeUnit.SECONDS));
+            //the system is disarmed, so opening the door doesn't change the alarm
+            CompletableFuture.runAsync(() -> securityService.changeSensorActivationStatus(door, true)).get(5, TimeUnit.SECONDS);
+            Assertions.assertTrue(door.getActive());
+            Assertions.assertEquals(1, securityService.getActiveSensorCount());
+        } finally {
+            release.countDown();
+        }
+        alarm.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+    }
+}
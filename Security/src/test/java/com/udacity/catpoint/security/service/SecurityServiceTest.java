@@ -13,6 +13,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyFloat;
 import static org.mockito.Mockito.*;
@@ -154,5 +157,45 @@ public class SecurityServiceTest
         securityService.setArmingStatus(securityService.getArmingStatus());
         verify(securityRepository, times(2)).setAlarmStatus(AlarmStatus.ALARM);
     }
-}
 
+    //Test 13
+    @Test
+    public void catNotIdentifiedWithActiveSensorKeepsAlarmStatus () {
+        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(false);
+        when(securityRepository.getActiveSensorCount()).thenReturn(1);
+        securityService.processImage(mock(BufferedImage.class));
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    //Test 14
+    @Test
+    public void batchActivationAppliesAlarmRulesOnceAndPersistsOnce () {
+        Sensor doorSensor = new Sensor("DOOR", SensorType.DOOR);
+        Sensor windowSensor = new Sensor("WINDOW", SensorType.WINDOW);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        when(securityRepository.getSensor(doorSensor.getSensorId())).thenReturn(doorSensor);
+        when(securityRepository.getSensor(windowSensor.getSensorId())).thenReturn(windowSensor);
+
+        Map<UUID, Boolean> activations = new LinkedHashMap<>();
+        activations.put(doorSensor.getSensorId(), true);
+        activations.put(windowSensor.getSensorId(), true);
+        securityService.changeSensorActivationStatuses(activations);
+
+        verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        verify(securityRepository).updateSensors(any());
+        verify(securityRepository, never()).updateSensor(any());
+        Assertions.assertTrue(doorSensor.getActive());
+        Assertions.assertTrue(windowSensor.getActive());
+    }
+
+    //Test 15
+    @Test
+    public void unchangedFrameReusesPreviousVerdict () {
+        securityService = new SecurityService(securityRepository, imageService, frame -> false);
+        securityService.processImage(mock(BufferedImage.class));
+        verify(imageService, never()).imageContainsCat(any(), anyFloat());
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+    }
+}
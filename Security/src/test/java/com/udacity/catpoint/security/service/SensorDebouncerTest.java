@@ -0,0 +1,197 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+public class SensorDebouncerTest
+{
+    private SecurityRepository repository;
+    private SecurityService securityService;
+    private SensorDebouncer debouncer;
+    private Sensor door;
+    private Sensor motion;
+
+    @BeforeEach
+    void init() {
+        repository = new InMemorySecurityRepositoryImpl();
+        securityService = new SecurityService(repository, new FakeImageService());
+        door = new Sensor("Door", SensorType.DOOR);
+        motion = new Sensor("Motion", SensorType.MOTION);
+        securityService.addSensor(door);
+        securityService.addSensor(motion);
+
+        Map<SensorType, Duration> dwellTimes = new EnumMap<>(SensorType.class);
+        dwellTimes.put(SensorType.DOOR, Duration.ofMillis(30));
+        dwellTimes.put(SensorType.MOTION, Duration.ofMillis(50));
+        //a small wheel so the motion dwell needs more than one turn
+        debouncer = new SensorDebouncer(securityService, dwellTimes, Duration.ofMillis(10), 4, false);
+    }
+
+    private void tick(int times) {
+        for(int i = 0; i < times; i++) {
+            debouncer.tick();
+        }
+    }
+
+    @Test
+    public void changeIsForwardedOnceItHasHeldForTheDwellTime () {
+        debouncer.submit(door, true);
+        tick(2);
+        Assertions.assertFalse(door.getActive());
+        tick(1);
+        Assertions.assertTrue(door.getActive());
+
+        debouncer.submit(motion, true);
+        tick(4);
+        Assertions.assertFalse(motion.getActive());
+        tick(1);
+        Assertions.assertTrue(motion.getActive());
+        Assertions.assertEquals(2, debouncer.getForwardedChanges());
+        Assertions.assertEquals(0, debouncer.getPendingChanges());
+    }
+
+    @Test
+    public void chatterWithinTheDwellTimeNeverReachesTheService () {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        for(int i = 0; i < 5; i++) {
+            debouncer.submit(door, true);
+            debouncer.submit(door, true);
+            tick(1);
+            debouncer.submit(door, false);
+        }
+        tick(10);
+
+        Assertions.assertFalse(door.getActive());
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        Assertions.assertEquals(0, debouncer.getForwardedChanges());
+        Assertions.assertEquals(15, debouncer.getSuppressedEvents());
+    }
+
+    @Test
+    public void repeatsOfTheCurrentStateAreSuppressed () {
+        debouncer.submit(door, false);
+        debouncer.submit(door.getSensorId(), false);
+        tick(5);
+
+        Assertions.assertEquals(2, debouncer.getSuppressedEvents());
+        Assertions.assertEquals(0, debouncer.getPendingChanges());
+    }
+
+    @Test
+    public void changesDueTogetherAreForwardedAsOneBatch () {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        debouncer.submit(motion, true);
+        tick(2);
+        debouncer.submit(door, true);
+        tick(2);
+        Assertions.assertFalse(door.getActive());
+        Assertions.assertFalse(motion.getActive());
+        tick(1);
+
+        Assertions.assertTrue(door.getActive());
+        Assertions.assertTrue(motion.getActive());
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void typesWithoutADwellTimePassStraightThrough () {
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        securityService.addSensor(window);
+        debouncer.submit(window, true);
+        Assertions.assertTrue(window.getActive());
+        debouncer.submit(window, true);
+        Assertions.assertEquals(1, debouncer.getSuppressedEvents());
+    }
+
+    @Test
+    public void reversalWhileAChangeIsBeingForwardedIsNotLost () {
+        SecurityService slowService = new SecurityService(repository, new FakeImageService()) {
+            @Override
+            public void changeSensorActivationStatuses(Map<UUID, Boolean> activations) {
+                //the door closes again after the tick has taken its change, before the change is applied
+                debouncer.submit(door, false);
+                super.changeSensorActivationStatuses(activations);
+            }
+        };
+        Map<SensorType, Duration> dwellTimes = new EnumMap<>(SensorType.class);
+        dwellTimes.put(SensorType.DOOR, Duration.ofMillis(30));
+        debouncer = new SensorDebouncer(slowService, dwellTimes, Duration.ofMillis(10), 4, false);
+
+        debouncer.submit(door, true);
+        tick(3);
+        Assertions.assertTrue(door.getActive());
+        Assertions.assertEquals(1, debouncer.getPendingChanges());
+        tick(3);
+        Assertions.assertFalse(door.getActive());
+        Assertions.assertEquals(2, debouncer.getForwardedChanges());
+    }
+
+    @Test
+    public void changeArrivingWhileAPassThroughIsForwardedIsAppliedAfterIt () {
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        AtomicBoolean first = new AtomicBoolean(true);
+        SecurityService slowService = new SecurityService(repository, new FakeImageService()) {
+            @Override
+            public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+                if(first.getAndSet(false)) {
+                    //the window closes again while its opening is still being applied
+                    debouncer.submit(window, false);
+                    debouncer.submit(window, true);
+                    debouncer.submit(window, false);
+                }
+                super.changeSensorActivationStatus(sensor, active);
+            }
+        };
+        slowService.addSensor(window);
+        debouncer = new SensorDebouncer(slowService, Map.of(), Duration.ofMillis(10), 4, false);
+
+        debouncer.submit(window, true);
+        Assertions.assertFalse(window.getActive());
+        Assertions.assertEquals(2, debouncer.getForwardedChanges());
+        Assertions.assertEquals(2, debouncer.getSuppressedEvents());
+    }
+
+    @Test
+    public void tickerKeepsRunningAfterTheServiceFails () throws InterruptedException {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        SecurityService flakyService = new SecurityService(repository, new FakeImageService()) {
+            @Override
+            public void changeSensorActivationStatuses(Map<UUID, Boolean> activations) {
+                if(failing.getAndSet(false)) {
+                    throw new IllegalStateException("repository unavailable");
+                }
+                super.changeSensorActivationStatuses(activations);
+            }
+        };
+        Map<SensorType, Duration> dwellTimes = new EnumMap<>(SensorType.class);
+        dwellTimes.put(SensorType.DOOR, Duration.ofMillis(2));
+        try (SensorDebouncer ticking = new SensorDebouncer(flakyService, dwellTimes, Duration.ofMillis(1), 8)) {
+            ticking.submit(door, true);
+            awaitUntil(() -> ticking.getFailedTicks() == 1);
+            Assertions.assertFalse(door.getActive());
+
+            ticking.submit(door, true);
+            awaitUntil(() -> securityService.getActiveSensorCount() == 1);
+            Assertions.assertTrue(door.getActive());
+            Assertions.assertEquals(1, ticking.getFailedTicks());
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(1);
+        }
+    }
+}
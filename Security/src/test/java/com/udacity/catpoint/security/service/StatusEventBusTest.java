@@ -0,0 +1,68 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+public class StatusEventBusTest
+{
+    private static class RecordingListener implements StatusListener {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void notify(AlarmStatus status) {
+            events.add("notify " + status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            events.add("cat " + catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            events.add("sensors");
+        }
+    }
+
+    @Test
+    public void pendingEventsAreCoalescedToTheLatest () {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        StatusEventBus bus = new StatusEventBus();
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener, tasks::add);
+
+        bus.publishAlarmStatus(AlarmStatus.PENDING_ALARM);
+        bus.publishSensorStatusChanged();
+        bus.publishAlarmStatus(AlarmStatus.ALARM);
+        bus.publishSensorStatusChanged();
+        bus.publishCatDetected(true);
+
+        Assertions.assertEquals(1, tasks.size());
+        tasks.poll().run();
+        Assertions.assertEquals(List.of("notify ALARM", "cat true", "sensors"), listener.events);
+    }
+
+    @Test
+    public void slowListenerDoesNotDelayOthers () {
+        Queue<Runnable> slowTasks = new ArrayDeque<>();
+        StatusEventBus bus = new StatusEventBus();
+        RecordingListener slow = new RecordingListener();
+        RecordingListener direct = new RecordingListener();
+        bus.subscribe(slow, slowTasks::add);
+        bus.subscribe(direct, Runnable::run);
+
+        bus.publishAlarmStatus(AlarmStatus.PENDING_ALARM);
+        Assertions.assertEquals(List.of("notify PENDING_ALARM"), direct.events);
+        Assertions.assertTrue(slow.events.isEmpty());
+
+        slowTasks.poll().run();
+        Assertions.assertEquals(List.of("notify PENDING_ALARM"), slow.events);
+    }
+}